@@ -0,0 +1,284 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import benchmarks.Workloads;
+
+/**
+ * The code measured by the JMH benchmarks in src/jmh/java/benchmarks. JMH
+ * only runs benchmarks in a named package, and those can't use the classes
+ * of the default package, so the benchmarks call this class through the
+ * Workloads interface.
+ *
+ * Each method sets up its inputs, writing fixture files from a seeded
+ * NetworkGenerator to a temporary directory, and returns a Callable that
+ * runs the measured code once and returns its result for the benchmark to
+ * consume.
+ */
+public class BenchmarkWorkloads implements Workloads {
+    private static final long SEED = 42;
+
+    /**
+     * Parses a network with the given number of nodes and edges per node.
+     */
+    @Override
+    public Callable<Object> readNetwork(int nodes, int degree)
+            throws IOException {
+        final File network = fixture(nodes, degree).network;
+        return () -> new InputReader(network.getPath(), 1.0);
+    }
+
+    /**
+     * One Dijkstra's search from the super-source, with the given frontier
+     * (Dijkstra.HEAP_FRONTIER or Dijkstra.TREESET_FRONTIER).
+     */
+    @Override
+    public Callable<Object> search(int nodes, int degree,
+            String frontier) throws IOException {
+        Fixture fixture = fixture(nodes, degree);
+        InputReader input = new InputReader(fixture.network.getPath(), 1.0);
+        final CSRGraph network = input.network;
+        final Terminals terminals =
+            input.readTerminals(fixture.nodeTypes.getPath(), false, false);
+        final boolean treeSet = frontier.equals(Dijkstra.TREESET_FRONTIER);
+        return () -> Dijkstra.search(network, terminals.edges,
+            terminals.edgeIds, 0, treeSet);
+    }
+
+    /**
+     * Algorithm.run(): both searches, ranking all edges and walking their
+     * paths, writing the results to a channel that drops them. A maxK of
+     * 0 writes every path.
+     */
+    @Override
+    public Callable<Object> run(int nodes, int degree, long maxK)
+            throws IOException {
+        Fixture fixture = fixture(nodes, degree);
+        final InputReader input =
+            new InputReader(fixture.network.getPath(), 1.0);
+        final Terminals terminals =
+            input.readTerminals(fixture.nodeTypes.getPath(), false, false);
+        final long k = maxK > 0 ? maxK : Long.MAX_VALUE;
+        return () -> {
+            Algorithm algorithm = new Algorithm(input, terminals, k, false);
+            OutputWriter output = discardingOutput();
+            algorithm.run(output);
+            output.printToFile();
+            return algorithm;
+        };
+    }
+
+    /**
+     * Ranks the edges with EdgeRanking, over critical path costs computed
+     * from trees that are searched once here, the way Algorithm.run() does
+     * before it walks and writes any path. A maxK of 0 sorts every edge,
+     * another goes through the first maxK edges of a lazy ranking.
+     */
+    @Override
+    public Callable<Object> rank(int nodes, int degree, long maxK)
+            throws IOException {
+        Fixture fixture = fixture(nodes, degree);
+        InputReader input = new InputReader(fixture.network.getPath(), 1.0);
+        CSRGraph network = input.network;
+        Terminals terminals =
+            input.readTerminals(fixture.nodeTypes.getPath(), false, false);
+        ShortestPathTree[] trees = Dijkstra.searchBothWays(network,
+            terminals.edges, terminals.edgeIds, 0, 1, false);
+        final int numEdges = network.numEdges;
+        final double[] totalCosts = new double[numEdges];
+        for (int a = 0; a < numEdges; a++) {
+            totalCosts[a] = trees[0].dist[network.edgeStart[a]]
+                + trees[1].dist[network.edgeEnd[a]]
+                + network.edgeCost[a];
+        }
+        final EdgeRanking ranking = new EdgeRanking(totalCosts,
+            network.edgeStart, network.edgeEnd);
+        final int[] edgeIds = new int[numEdges];
+        for (int a = 0; a < numEdges; a++) {
+            edgeIds[a] = a;
+        }
+        final long k = maxK > 0 ? maxK : Long.MAX_VALUE;
+        return () -> {
+            // The cursor reorders the edges it is given
+            int[] edges = edgeIds.clone();
+            EdgeRanking.Cursor cursor =
+                ranking.cursor(edges, numEdges, k != Long.MAX_VALUE);
+            long count = 0;
+            int last = -1;
+            while (cursor.hasNext() && count < k) {
+                last = cursor.next();
+                count++;
+            }
+            return last;
+        };
+    }
+
+    /**
+     * Builds the product of a labeled network and a DFA with the given
+     * number of states.
+     */
+    @Override
+    public Callable<Object> buildProduct(int nodes, int degree,
+            int states) throws IOException {
+        Fixture fixture = fixture(nodes, degree);
+        final File dfa = file("dfa-" + states + ".txt");
+        final File dfaNodeTypes = file("dfa-nodes-" + states + ".txt");
+        // The DFA only depends on the seed and the labels
+        writeOnce(paths -> generator(nodes, degree).writeDfa(paths[0],
+            paths[1], states, 0.5, 1), dfa, dfaNodeTypes);
+        return () -> quietly(() -> new InputReaderRLCSP(fixture.network,
+            fixture.nodeTypes, dfa, dfaNodeTypes));
+    }
+
+    /**
+     * Writes the given number of ranked edge lines (two names, a rank and a
+     * score) to a channel that drops them.
+     */
+    @Override
+    public Callable<Object> writeResults(int lines) {
+        final NameInterner names = new NameInterner();
+        for (int i = 0; i < 10000; i++) {
+            names.intern("P" + i);
+        }
+        final Random random = new Random(SEED);
+        final int[] tails = new int[lines];
+        final int[] heads = new int[lines];
+        final double[] scores = new double[lines];
+        for (int i = 0; i < lines; i++) {
+            tails[i] = random.nextInt(names.size());
+            heads[i] = random.nextInt(names.size());
+            scores[i] = Math.pow(Math.E, -random.nextDouble() * 10);
+        }
+        return () -> {
+            ResultWriter output = new ResultWriter(discard());
+            for (int i = 0; i < lines; i++) {
+                output.append(names, tails[i]).append('\t')
+                    .append(names, heads[i]).append('\t')
+                    .append((long) i).append('\t')
+                    .append(scores[i]).append('\n');
+            }
+            output.close();
+            return output;
+        };
+    }
+
+    // Files of a network with a node-type file (sources and targets) for it
+    private static class Fixture {
+        File network;
+        File nodeTypes;
+    }
+
+    // A power-law network with labels, and one percent of its nodes as
+    // sources and as many as targets
+    private static Fixture fixture(int nodes, int degree) throws IOException {
+        Fixture fixture = new Fixture();
+        fixture.network = file("edges-" + nodes + "-" + degree + ".txt");
+        fixture.nodeTypes = file("nodes-" + nodes + "-" + degree + ".txt");
+        int terminals = Math.max(1, nodes / 100);
+        writeOnce(paths -> {
+            NetworkGenerator generator = generator(nodes, degree);
+            generator.writeNetwork(paths[0]);
+            generator.writeNodeTypes(paths[1], terminals, terminals);
+        }, fixture.network, fixture.nodeTypes);
+        return fixture;
+    }
+
+    private static NetworkGenerator generator(int nodes, int degree) {
+        return new NetworkGenerator(nodes, (long) nodes * degree, 2.5, 4,
+            SEED);
+    }
+
+    // Fixture files are kept in the temporary directory between runs
+    private static File file(String name) {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+            "quicklinker-jmh-" + SEED);
+        dir.mkdirs();
+        return new File(dir, name);
+    }
+
+    private interface Contents {
+        void writeTo(String[] paths) throws IOException;
+    }
+
+    // Writes the files unless they exist. They are written to temporary files
+    // and then renamed, so a benchmark never reads half of one.
+    private static void writeOnce(Contents contents, File... files)
+            throws IOException {
+        boolean written = true;
+        for (File file : files) {
+            written &= file.isFile();
+        }
+        if (written) {
+            return;
+        }
+        File[] temps = new File[files.length];
+        String[] paths = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            temps[i] = File.createTempFile(files[i].getName(), ".tmp",
+                files[i].getParentFile());
+            paths[i] = temps[i].getPath();
+        }
+        contents.writeTo(paths);
+        for (int i = 0; i < files.length; i++) {
+            if (!temps[i].renameTo(files[i])) {
+                temps[i].delete();
+            }
+        }
+    }
+
+    private static OutputWriter discardingOutput() {
+        return new OutputWriter(new ResultWriter(discard()),
+            new ResultWriter(discard()), null);
+    }
+
+    // A channel that drops everything written to it
+    private static WritableByteChannel discard() {
+        return new WritableByteChannel() {
+            private boolean open = true;
+
+            @Override
+            public int write(ByteBuffer buffer) {
+                int length = buffer.remaining();
+                buffer.position(buffer.limit());
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+        };
+    }
+
+    // Runs the code with System.out dropped, for code that prints progress
+    private static <T> T quietly(Callable<T> code) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            return code.call();
+        }
+        catch (IOException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+        finally {
+            System.setOut(out);
+        }
+    }
+}
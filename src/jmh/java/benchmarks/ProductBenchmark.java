@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the product of a labeled network and a DFA (InputReaderRLCSP).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductBenchmark {
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    @Param({"4", "16"})
+    public int degree;
+
+    @Param({"4", "16"})
+    public int states;
+
+    private Callable<Object> workload;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.get().buildProduct(nodes, degree, states);
+    }
+
+    @Benchmark
+    public Object buildProduct() throws Exception {
+        return workload.call();
+    }
+}
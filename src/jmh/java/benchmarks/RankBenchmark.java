@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ranking the edges on its own, over trees searched once in setup: a full
+ * sort for a maxK of 0, or the first maxK edges of a lazy ranking. No paths
+ * are walked or written; RunBenchmark times those along with the searches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RankBenchmark {
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"4", "16"})
+    public int degree;
+
+    @Param({"0", "100"})
+    public long maxK;
+
+    private Callable<Object> workload;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.get().rank(nodes, degree, maxK);
+    }
+
+    @Benchmark
+    public Object rank() throws Exception {
+        return workload.call();
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a network edge list into the CSRGraph and its reverse
+ * (InputReader).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadNetworkBenchmark {
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"4", "16"})
+    public int degree;
+
+    private Callable<Object> workload;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.get().readNetwork(nodes, degree);
+    }
+
+    @Benchmark
+    public Object readNetwork() throws Exception {
+        return workload.call();
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One Dijkstra's search from the super-source over the network and the
+ * terminal edges, with each frontier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"4", "16"})
+    public int degree;
+
+    @Param({"heap", "treeset"})
+    public String frontier;
+
+    private Callable<Object> workload;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.get().search(nodes, degree, frontier);
+    }
+
+    @Benchmark
+    public Object search() throws Exception {
+        return workload.call();
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * The workloads the benchmarks measure, implemented by BenchmarkWorkloads.
+ * That class is in the default package with the rest of QuickLinker, so it
+ * can implement this interface but can't be named from here; get() loads it
+ * by name, and the calls to it go through this interface.
+ *
+ * Each method sets up its inputs and returns a Callable that runs the
+ * measured code once and returns its result for the benchmark to consume.
+ */
+public interface Workloads {
+    /**
+     * Parses a network with the given number of nodes and edges per node.
+     */
+    Callable<Object> readNetwork(int nodes, int degree) throws IOException;
+
+    /**
+     * One Dijkstra's search from the super-source, with the given frontier
+     * ("heap" or "treeset").
+     */
+    Callable<Object> search(int nodes, int degree, String frontier)
+        throws IOException;
+
+    /**
+     * Algorithm.run() with the given maxK, or 0 for every path.
+     */
+    Callable<Object> run(int nodes, int degree, long maxK)
+        throws IOException;
+
+    /**
+     * Ranks the edges by critical path cost over trees searched once in
+     * setup, and goes through the first maxK of them, or all for 0.
+     */
+    Callable<Object> rank(int nodes, int degree, long maxK)
+        throws IOException;
+
+    /**
+     * Builds the product of a labeled network and a DFA with the given
+     * number of states.
+     */
+    Callable<Object> buildProduct(int nodes, int degree, int states)
+        throws IOException;
+
+    /**
+     * Writes the given number of ranked edge lines.
+     */
+    Callable<Object> writeResults(int lines);
+
+    /**
+     * Returns the workloads of BenchmarkWorkloads.
+     */
+    static Workloads get() throws ReflectiveOperationException {
+        return Class.forName("BenchmarkWorkloads")
+            .asSubclass(Workloads.class).getConstructor().newInstance();
+    }
+}
@@ -1,73 +1,196 @@
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.TreeSet;
 
 public class Algorithm {
-    // These hashmaps map strings for proteins like "P04355" to integers, and
-    // vice versa
-    // Overflow warning: These integers should never be multiplied, without
-    // converting to longs.
-    HashMap<String, Integer> mapToInt;
-    HashMap<Integer, String> reverseMap;
-
-    // Map of edge number to the edge start point and end point, as well as
-    // cost. (order of file read)
-    ArrayList<Integer> edgeEndSet;
-    ArrayList<Integer> edgeStartSet;
-    ArrayList<Double> weights;
-    ArrayList<Edge>[] edges;
-    ArrayList<Edge>[] reverseEdges;
-
-    // Negative log transform map of edge costs.
-    // Key for edge is a perfect hash of the start and end point. (use given
-    // function. Works for up to 999,999,999 nodes)
-    HashMap<Long, Double> edgeCost;
-
-    // Used internally in dijkstra's, and in CriticalPath for path printing.
-    // Stores the dijkstra's path in symbolic tree form.
-    int[] pathForward;
-    int[] pathBackward;
-    final long INF = Long.MAX_VALUE;
-
-    // Stores the output to pass to the outputWriter class.
-    StringBuilder pathOutput;
-    StringBuilder edgeOutput;
+    // Names of proteins like "P04355" by node ID, written from their bytes
+    NameInterner names;
+
+    // The network, whose edges 0 .. numEdges - 1 are the ones to rank
+    // (order of file read), and the super-source and super-target edges
+    // searched along with it. The network is shared with other runs.
+    CSRGraph graph;
+    Terminals terminals;
+    int numEdges;
+
+    // Use the original TreeSet frontier in dijkstra's instead of the
+    // IndexedHeap
+    boolean treeSetFrontier;
+
+    // Trees shared with other runs, or null to search them for this run
+    TreeCache treeCache;
+
+    // Kept from the last run for update(): the trees from the super-source
+    // and super-sink, the critical path cost of each edge, and the edges
+    // that cost less than the threshold in rank order (null after a lazy
+    // --max-k ranking)
+    ShortestPathTree[] trees;
+    double[] totalCosts;
+    int[] ranked;
+    int numRanked;
+
+    // Where the output is streamed to while ranking, from the OutputWriter
+    ResultWriter pathOutput;
+    ResultWriter edgeOutput;
 
     //maximum number of paths to write
     long maxk;
+    // Only paths that cost less than this are written, and the searches stop
+    // there. Dijkstra.NO_BOUND writes every edge, reached or not.
+    double threshold;
+
+    /**
+     * Runs on the start/end file added to the InputReader by AddStartEnd.
+     */
+    public Algorithm(InputReader graph, long maxK, boolean treeSetFrontier) {
+        this(graph, graph.terminals, maxK, treeSetFrontier);
+    }
 
-    public Algorithm(InputReader graph, long maxK) {
-        // set up our variables
-        mapToInt = graph.mapToInt;
-        reverseMap = graph.reverseMap;
+    /**
+     * Runs on the given super-source and super-target edges. The InputReader
+     * is only read, so Algorithms for different Terminals can run at the same
+     * time.
+     */
+    public Algorithm(InputReader graph, Terminals terminals, long maxK,
+            boolean treeSetFrontier) {
+        this(graph, terminals, maxK, treeSetFrontier, null);
+    }
 
-        edgeEndSet = graph.edgeEndSet;
-        edgeStartSet = graph.edgeStartSet;
-        weights = graph.weights;
-        edges = graph.edges;
-        reverseEdges = graph.reverseEdges;
+    /**
+     * Same as above, taking the shortest path trees from the given cache,
+     * which may be null.
+     */
+    public Algorithm(InputReader graph, Terminals terminals, long maxK,
+            boolean treeSetFrontier, TreeCache treeCache) {
+        this(graph, terminals, maxK, Dijkstra.NO_BOUND, treeSetFrontier,
+            treeCache);
+    }
+
+    /**
+     * Same as above, only writing the paths that cost less than the
+     * threshold. The cache's searches must stop at the threshold too.
+     */
+    public Algorithm(InputReader graph, Terminals terminals, long maxK,
+            double threshold, boolean treeSetFrontier, TreeCache treeCache) {
+        // set up our variables
+        names = graph.names;
 
-        edgeCost = graph.edgeCost;
-        pathOutput = new StringBuilder();
-        edgeOutput = new StringBuilder();
+        this.graph = graph.network;
+        this.terminals = terminals;
+        numEdges = graph.network.numEdges;
 
         //maxk = graph.maxk;
         this.maxk = maxK;
+        this.threshold = threshold;
+        this.treeSetFrontier = treeSetFrontier;
+        this.treeCache = treeCache;
     }
 
-    public void run() {
+    /**
+     * Ranks the edges and their paths, writing them to the given output as
+     * they are found.
+     */
+    public void run(OutputWriter output) throws IOException {
+        run(output, RunReport.NONE);
+    }
+
+    /**
+     * Same as above, timing the searches, ranking, paths and writing as
+     * phases of the given run.
+     */
+    public void run(OutputWriter output, RunReport.Run report)
+            throws IOException {
+        edgeOutput = output.EdgeWriter;
+        pathOutput = output.PathWriter;
+        int callerPhase = report.enter(RunReport.RANKING);
+
         int start = 0; // super source = 0
         int end = 1; // super sink = 1
-        int n = mapToInt.size(); // number of nodes
-        int e = weights.size(); // number of edges
 
-        // Dijkstra's from the start, and the end.
+        // Dijkstra's from the start, and the end, run concurrently.
+        trees = treeCache != null
+            ? treeCache.searchBothWays(terminals, report)
+            : Dijkstra.searchBothWays(graph, terminals.edges,
+                terminals.edgeIds, start, end, threshold, treeSetFrontier,
+                report);
+
+        write(rank(), report);
+        report.enter(callerPhase);
+    }
+
+    /**
+     * Ranks the edges again after the network changed to the updated one,
+     * made from this run's by InputReader.withDelta(), writing them to the
+     * given output like run() does. This must follow run() or another
+     * update(). Their trees are repaired rather than searched again (see
+     * TreeRepair), and only the edges at the nodes whose distances changed
+     * are ranked again, merged into the ranking kept from before.
+     *
+     * The ranking is the one run() gives over the updated network, whose
+     * nodes and edges keep their IDs, with the new ones after them. Edges of
+     * equal cost are ordered by those IDs, so a network read from a file
+     * that numbers them otherwise can rank those edges in another order.
+     *
+     * Over costs below 0 (an edge penalty below 1) the trees can't be
+     * repaired, so they are searched again and all edges ranked again.
+     */
+    public void update(InputReader updated, OutputWriter output,
+            RunReport.Run report) throws IOException {
+        edgeOutput = output.EdgeWriter;
+        pathOutput = output.PathWriter;
+        int callerPhase = report.enter(RunReport.RANKING);
+
+        CSRGraph previous = graph;
+        final int[] changedEdges = updated.changedEdges;
+        final double[] previousCost = new double[changedEdges.length];
+        for (int i = 0; i < changedEdges.length; i++) {
+            int a = changedEdges[i];
+            // Added edges were not there, like edges with a weight of 0
+            previousCost[i] = a < previous.numEdges
+                ? previous.edgeCost[a] : Double.POSITIVE_INFINITY;
+        }
+        names = updated.names;
+        graph = updated.network;
+        numEdges = graph.numEdges;
+        terminals = terminals.on(graph);
+
+        if (graph.hasNegativeCost() || terminals.edges.hasNegativeCost()) {
+            trees = Dijkstra.searchBothWays(graph, terminals.edges,
+                terminals.edgeIds, 0, 1, threshold, treeSetFrontier, report);
+            write(rank(), report);
+            report.enter(callerPhase);
+            return;
+        }
+
+        final ShortestPathTree forward = carryOver(trees[0], previous);
+        final ShortestPathTree backward = carryOver(trees[1], previous);
+        final TreeRepair forwardRepair = new TreeRepair(graph,
+            terminals.edges, terminals.edgeIds, graph.edgeStart,
+            graph.edgeEnd, threshold);
+        final TreeRepair backwardRepair = new TreeRepair(graph.reverse,
+            terminals.edges.reverse, terminals.edgeIds, graph.edgeEnd,
+            graph.edgeStart, threshold);
+        trees = new ShortestPathTree[] {
+            report.time(RunReport.FORWARD_SEARCH,
+                () -> forwardRepair.repair(forward, changedEdges,
+                    previousCost)),
+            report.time(RunReport.REVERSE_SEARCH,
+                () -> backwardRepair.repair(backward, changedEdges,
+                    previousCost))};
+
+        write(rerank(changedEdges, previous.numEdges, forwardRepair,
+            backwardRepair), report);
+        report.enter(callerPhase);
+    }
+
+    // Computes the critical path cost of every edge from the trees, and
+    // returns a cursor over the ones below the threshold in rank order.
+    private EdgeRanking.Cursor rank() {
+        int e = numEdges; // number of edges
+
         // Stores the cost at from the start to all points.
-        final double[] startFromAllNodes = dijkstraFront(n, start, edges);
+        final double[] startFromAllNodes = trees[0].dist;
         // Stores the cost from the end to all points.
-        final double[] endFromAllNodes = dijkstra(n, end, reverseEdges);
+        final double[] endFromAllNodes = trees[1].dist;
 
         //for (int i = 0; i < startFromAllNodes.length; i++) {
         //    System.out.println(startFromAllNodes[i]);
@@ -77,281 +200,241 @@ public class Algorithm {
         // 'CriticalPath'.
         // A critical path does not contain only redundant edges. However, a
         // CriticalPath might be the same as another CriticalPath.
-        TreeSet<CriticalPath> potentialPaths = new TreeSet<CriticalPath>();
+        // CriticalPath has 4 parts; Source -> edgeStart -> edgeEnd -> Sink
+        // Parallel edges cost what the last one read does, so they are the
+        // same CriticalPath
+        int[] pairEdges = graph.pairEdges();
+        totalCosts = new double[e];
         for (int a = 0; a < e; a++) {
-            // CriticalPath has 4 parts; Source -> edgeStart -> edgeEnd -> Sink
-            CriticalPath tempPath = new CriticalPath(edgeStartSet.get(a),
-                edgeEndSet.get(a), startFromAllNodes, endFromAllNodes,
-                edges);
-            potentialPaths.add(tempPath);
+            totalCosts[a] = startFromAllNodes[graph.edgeStart[a]]
+                + endFromAllNodes[graph.edgeEnd[a]]
+                + graph.edgeCost[pairEdges[a]];
         }
+        return rankBelowThreshold();
+    }
 
-		ArrayList<CriticalPath> outputPaths = new ArrayList<CriticalPath>();
+    // Returns a cursor over the edges that cost less than the threshold, in
+    // rank order, keeping the ranking if it is sorted
+    private EdgeRanking.Cursor rankBelowThreshold() {
+        // Edges that cost the threshold or more would be ranked after the
+        // others and not written, so they are left out
+        int[] potentialPaths = new int[numEdges];
+        int numPotentialPaths = 0;
+        for (int a = 0; a < numEdges; a++) {
+            if (totalCosts[a] < threshold) {
+                potentialPaths[numPotentialPaths++] = a;
+            }
+        }
+
+        // With --max-k only the first few edges are ever looked at, so rank
+        // them lazily instead of sorting all of them.
+        EdgeRanking ranking = 
+            new EdgeRanking(totalCosts, graph.edgeStart, graph.edgeEnd);
+        boolean lazy = maxk != Long.MAX_VALUE;
+        EdgeRanking.Cursor cursor = 
+            ranking.cursor(potentialPaths, numPotentialPaths, lazy);
+        // A sorted cursor sorts the array in place
+        ranked = lazy ? null : potentialPaths;
+        numRanked = numPotentialPaths;
+        return cursor;
+    }
+
+    // The tree over the network before the update, on the nodes and edge IDs
+    // of the updated one. Nodes added by the update are unreached.
+    private ShortestPathTree carryOver(ShortestPathTree tree,
+            CSRGraph previous) {
+        int numNodes = graph.numNodes;
+        double[] dist = Arrays.copyOf(tree.dist, numNodes);
+        int[] path = Arrays.copyOf(tree.path, numNodes);
+        int[] pathEdge = Arrays.copyOf(tree.pathEdge, numNodes);
+        Arrays.fill(dist, previous.numNodes, numNodes, Dijkstra.INF);
+        Arrays.fill(path, previous.numNodes, numNodes, -3);
+        if (numNodes != previous.numNodes ||
+                graph.numEdges != previous.numEdges) {
+            // Terminal edge IDs come after the network's
+            for (int v = 0; v < previous.numNodes; v++) {
+                int edge = pathEdge[v];
+                if (path[v] < 0 || edge < previous.numEdges) {
+                    continue;
+                }
+                int node = edge - previous.numEdges;
+                pathEdge[v] = node < previous.numNodes
+                    ? Terminals.sourceEdgeId(graph, node)
+                    : Terminals.targetEdgeId(graph,
+                        node - previous.numNodes);
+            }
+        }
+        return new ShortestPathTree(dist, path, pathEdge);
+    }
+
+    // Computes the cost of the edges it may have changed for: the changed
+    // and added edges, the edges out of the nodes whose distance from the
+    // super-source changed, and the edges into the ones whose distance to
+    // the super-sink changed. Returns a cursor over the edges below the
+    // threshold in rank order, merging those edges into the kept ranking.
+    private EdgeRanking.Cursor rerank(int[] changedEdges, int previousEdges,
+            TreeRepair forward, TreeRepair backward) {
+        totalCosts = Arrays.copyOf(totalCosts, numEdges);
+        boolean[] stale = new boolean[numEdges];
+        int[] staleEdges = new int[changedEdges.length + 16];
+        int numStale = 0;
+        for (int a : changedEdges) {
+            stale[a] = true;
+            staleEdges[numStale++] = a;
+        }
+        for (int i = 0; i < forward.numChanged + backward.numChanged; i++) {
+            // Arcs of a node in the reversed graph are the edges into it
+            CSRGraph arcs = i < forward.numChanged ? graph : graph.reverse;
+            int u = i < forward.numChanged
+                ? forward.changed[i]
+                : backward.changed[i - forward.numChanged];
+            for (int arc = arcs.offsets[u]; arc < arcs.offsets[u + 1];
+                    arc++) {
+                int a = arcs.arcEdge[arc];
+                if (!stale[a]) {
+                    stale[a] = true;
+                    if (numStale == staleEdges.length) {
+                        staleEdges = Arrays.copyOf(staleEdges, numStale * 2);
+                    }
+                    staleEdges[numStale++] = a;
+                }
+            }
+        }
+
+        // A delta changes all of the parallel edges of a node pair, so they
+        // are stale together
+        int[] pairEdges = graph.pairEdges();
+        int numBelow = 0;
+        for (int i = 0; i < numStale; i++) {
+            int a = staleEdges[i];
+            totalCosts[a] = trees[0].dist[graph.edgeStart[a]]
+                + trees[1].dist[graph.edgeEnd[a]]
+                + graph.edgeCost[pairEdges[a]];
+            if (totalCosts[a] < threshold) {
+                staleEdges[numBelow++] = a;
+            }
+        }
+
+        if (ranked == null) {
+            // A lazy ranking goes over all of the edges again anyway
+            return rankBelowThreshold();
+        }
+        // Edges of equal cost stay in edge ID order, as in a sort
+        Arrays.sort(staleEdges, 0, numBelow);
+        EdgeRanking ranking = 
+            new EdgeRanking(totalCosts, graph.edgeStart, graph.edgeEnd);
+        ranking.sort(staleEdges, numBelow);
+        int[] merged = new int[numRanked + numBelow];
+        numRanked = ranking.merge(ranked, numRanked, stale, staleEdges,
+            numBelow, merged);
+        ranked = merged;
+        return ranking.ranked(ranked, numRanked);
+    }
+
+    // Writes the edges the cursor gives, and the paths of the ones that
+    // have new edges
+    private void write(EdgeRanking.Cursor cursor, RunReport.Run report)
+            throws IOException {
+        EdgeRanking ranking = 
+            new EdgeRanking(totalCosts, graph.edgeStart, graph.edgeEnd);
 
         // Header
         edgeOutput.append("# Tail\tHead\tRank\tPath Cost\n"); 
 
-        int count2 = 0;
         int countPath = 0;
-
-        // This hashmap stores a blacklist of edges that have appeared on
+        // Paths are written too often to enter their phase for each one
+        RunReport.Run.Stopwatch paths = report.stopwatch(RunReport.PATHS);
+
+        // Finds the shortest path that uses an edge, and whether it has edges
+        // that have not appeared on earlier paths
+        CriticalPathWalker walker = new CriticalPathWalker(graph, trees[0],
+            trees[1], graph.pairEdges());
+        // This stores a blacklist of edges (node pairs) that have appeared on
         // earlier paths
-        HashSet<Long> ReWriteThisWithEdgeClassLater = new HashSet<Long>();
+        CriticalPathWalker.Marks ReWriteThisWithEdgeClassLater = 
+            walker.newMarks();
         // go through all of the potential paths.
 
         double lastcost = 0;
         long rank = 0;
-        while (!potentialPaths.isEmpty()) {
-            count2++;
-            CriticalPath get = potentialPaths.first();
-            potentialPaths.remove(get);
-            long startNode = get.startNode;
-            long endNode = get.endNode;
-            outputPaths.add(get);
+        // Path score (e^-cost) written for scoredCost; edges come in cost
+        // order, so it is only computed once for each cost
+        double scoredCost = Double.NaN;
+        double score = 0;
+        int previous = -1;
+        // Nothing is written once maxk paths have been, so stop there
+        while (cursor.hasNext() && countPath < maxk) {
+            int get = cursor.next();
+            // Parallel edges, which cost the same, are the same CriticalPath
+            boolean duplicate = 
+                previous != -1 && ranking.compare(previous, get) == 0;
+            previous = get;
+            if (duplicate) {
+                continue;
+            }
+            int startNode = graph.edgeStart[get];
+            int endNode = graph.edgeEnd[get];
+            double totalCost = totalCosts[get];
+            if (totalCost != scoredCost) {
+                scoredCost = totalCost;
+                score = Math.pow(Math.E, -1 * totalCost);
+            }
 
             // output the edge
             if (startNode != 0 && endNode != 1 && countPath < maxk) {
                 
-                if (lastcost == get.totalCost) {
+                if (lastcost == totalCost) {
                     // Don't do anything
                 }
                 else {
                     rank++;
-                    lastcost = get.totalCost;
+                    lastcost = totalCost;
                 }
 
-                String outputEdge = reverseMap.get((int) startNode) 
-                    + "\t"
-                    + reverseMap.get((int) endNode) 
-                    + "\t" + rank
-                    + "\t" + Math.pow(Math.E, -1 * get.totalCost);
-                edgeOutput.append(outputEdge + "\n");
+                edgeOutput.append(names, startNode).append('\t')
+                    .append(names, endNode).append('\t')
+                    .append(rank).append('\t')
+                    .append(score).append('\n');
             }
 
-            // get the shortest path that uses that edge.
-            ArrayList<Integer> pathTemp = get.getPath();
-
             // figure out if this 'criticaledge' is new
-            boolean newEdge = false;
-            for (int b = 0; b < pathTemp.size() - 1; b++) {
-                long hash = hash(pathTemp.get(b), pathTemp.get(b + 1));
-                if (!ReWriteThisWithEdgeClassLater.contains(hash)) {
-                    newEdge = true;
-                    ReWriteThisWithEdgeClassLater.add(hash);
-                }
-            }
+            boolean newEdge = 
+                walker.markNew(get, ReWriteThisWithEdgeClassLater) > 0;
 
             // if it is new, output edge
             if (newEdge && countPath < maxk) {
                 countPath++;
-                pathOutput.append(countPath + "\t"
-                    + Math.pow(Math.E, -1 * get.totalCost) + "\t"
-                    + getString(pathTemp, reverseMap) + "\n");
+                paths.start();
+                // get the shortest path that uses that edge.
+                walker.walk(get);
+                pathOutput.append(countPath).append('\t')
+                    .append(score).append('\t');
+                appendString(pathOutput, walker.nodes, walker.numNodes,
+                    names);
+                pathOutput.append('\n');
+                paths.stop();
             }
 
         }
+        paths.charge();
     }
 
-	// Converts a list of node ID's to a list of node names.
-	// Ex: [123, 4123] -> "P03422|Q02312"
-	private static String getString(ArrayList<Integer> path,
-			HashMap<Integer, String> reverseMap) {
-		StringBuilder node_names = new StringBuilder();
-		for (Integer a : path) {
+	// Appends the names of a list of node ID's, leaving out the super source
+	// and super sink.
+	// Ex: [0, 123, 4123, 1] -> "P03422|Q02312"
+	private static void appendString(ResultWriter output, int[] path,
+			int length, NameInterner names)
+			throws IOException {
+		boolean first = true;
+		for (int i = 0; i < length; i++) {
+			int a = path[i];
 			if (a != 0 && a != 1) {
-                node_names.append(reverseMap.get(a) + "|");
-            }
-		}
-        // remove the last '|'
-        String output = node_names.toString();
-        output = output.substring(0, output.length()-1);
-		return output;
-	}
-
-	// Returns a unique 64-bit integer representation of an edge. (hash with no
-	// collisions)
-	// No two edges can share the same representation.
-	private static long hash(long startNode, long endNode) {
-		// As long as endNode is below 1 billion and above or equal to 0, this
-		// function will never have a collision
-		return startNode * 1000000000l + endNode;
-	}
-
-	class CriticalPath implements Comparable<CriticalPath> {
-		// Start node of the edge defining the 'CriticalPath'
-		int startNode;
-		// End node of the edge defining the 'CriticalPath'
-		int endNode;
-		// Cost of the shortest path that uses the edge defined by startNode and
-		// endNode.
-		double totalCost;
-
-		public CriticalPath(int startNode, int endNode,
-				double[] startFromAllNodes, double[] endFromAllNodes,
-				ArrayList<Edge>[] edges) {
-			this.startNode = startNode;
-			this.endNode = endNode;
-
-			this.totalCost = startFromAllNodes[startNode]
-					+ endFromAllNodes[endNode]
-					+ edgeCost.get(hash(startNode, endNode));
-		}
-
-		// If the cost is the same, break ties arbitrarily (we use our hash)
-		// compares by cost.
-		@Override
-		public int compareTo(CriticalPath arg0) {
-			if (totalCost == arg0.totalCost) {
-
-				return Long.compare(hash(startNode, endNode),
-						hash(arg0.startNode, arg0.endNode));
-			}
-			return Double.compare(totalCost, arg0.totalCost);
-		}
-
-		// Computes the entire path, by traversing the dijkstra's algorithm
-		// trees.
-		public ArrayList<Integer> getPath() {
-			ArrayList<Integer> output = new ArrayList<Integer>();
-			ArrayList<Integer> firstHalf = new ArrayList<Integer>();
-			int start = startNode;
-			while (start != -1) {
-				firstHalf.add(start);
-				start = pathForward[start];
-				if (start == -3) {
-					return new ArrayList<Integer>();
+				if (!first) {
+					output.append('|');
 				}
+				output.append(names, a);
+				first = false;
 			}
-
-            for (int a = firstHalf.size() - 1; a >= 0; a--) {
-                output.add(firstHalf.get(a));
-            }
-            int end = endNode;
-            while (end != -1) {
-                output.add(end);
-                end = pathBackward[end];
-                if (end == -3) {
-                    return new ArrayList<Integer>();
-                }
-            }
-            return output;
-        }
-
-        public String toString() {
-            return startNode + " " + endNode + " " + totalCost + " "
-                + " Path: " + getString(this.getPath(), reverseMap);
-        }
-    }
-
-    // /////////////////////////////////////////////////////////////////////////
-    // Anything below here is a slightly modified dijkstras SSAD //
-    // ////////////////////////////////////////////////////////////////////////
-    static class VertexDist implements Comparable<VertexDist> {
-        private static final double EPS = 1E-14;
-        int vertex;
-        double distance;
-
-		public VertexDist(int vertex, double distance) {
-			this.vertex = vertex;
-			this.distance = distance;
 		}
-
-		public String toString() {
-			return "(" + vertex + " " + distance + ")";
-		}
-
-		@Override
-		public int compareTo(VertexDist arg0) {
-			VertexDist temp = arg0;
-			if (Math.abs(distance - temp.distance) < EPS) {
-				return vertex - temp.vertex;
-			}
-			if (distance < temp.distance) {
-				return -1;
-			} else {
-				return 1;
-			}
-		}
-
 	}
-
-	/*
-	 * Extensively modified.
-	 * 
-	 * @author Godmar Back
-	 */
-	double[] dijkstra(int N, int start, ArrayList<Edge>[] edges) {
-		final double[] dist = new double[N];
-		Arrays.fill(dist, INF);
-		dist[start] = 0;
-		pathBackward = new int[N];
-		Arrays.fill(pathBackward, -3);
-		pathBackward[start] = -1;
-		TreeSet<VertexDist> frontier = new TreeSet<VertexDist>();
-
-		frontier.add(new VertexDist(start, 0));
-
-		boolean[] optimal = new boolean[N];
-		while (!frontier.isEmpty()) {
-			VertexDist u2 = frontier.pollFirst();
-			int u = u2.vertex;
-			if (optimal[u])
-				continue;
-
-			optimal[u] = true;
-			for (Edge e : edges[u]) {
-				double uv = e.dist;
-				int v = e.end;
-				if (uv != INF) {
-					if (dist[u] + uv < dist[v]) {
-						dist[v] = dist[u] + uv;
-						pathBackward[v] = u;
-						frontier.add(new VertexDist(v, dist[v]));
-					}
-				}
-			}
-		}
-		return dist;
-		// 'dist' contains the shortest distance from start to all nodes
-	}
-
-	/*
-	 * Extensively modified.
-	 * 
-	 * @author Godmar Back
-	 */
-	double[] dijkstraFront(int N, int start, ArrayList<Edge>[] edges) {
-		final double[] dist = new double[N];
-		pathForward = new int[N];
-		Arrays.fill(pathForward, -3);
-
-		Arrays.fill(dist, INF);
-		dist[start] = 0;
-		pathForward[start] = -1;
-		TreeSet<VertexDist> frontier = new TreeSet<VertexDist>();
-
-		frontier.add(new VertexDist(start, 0));
-		boolean[] optimal = new boolean[N];
-		while (!frontier.isEmpty()) {
-			VertexDist u2 = frontier.pollFirst();
-			int u = u2.vertex;
-			if (optimal[u])
-				continue;
-
-            optimal[u] = true;
-            for (Edge e : edges[u]) {
-                double uv = e.dist;
-                int v = e.end;
-                if (uv != INF) {
-                    if (dist[u] + uv < dist[v]) {
-                        dist[v] = dist[u] + uv;
-                        pathForward[v] = u;
-                        frontier.add(new VertexDist(v, dist[v]));
-                    }
-                }
-            }
-        }
-        return dist;
-        // 'dist' contains the shortest distance from start to all nodes
-    }
 }
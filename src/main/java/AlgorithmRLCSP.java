@@ -1,86 +1,91 @@
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.TreeSet;
+import java.util.BitSet;
 
 import java.util.Scanner;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 
 public class AlgorithmRLCSP {
-    // These hashmaps map strings for proteins like "P04355" to integers, and
-    // vice versa
-    // Overflow warning: These integers should never be multiplied, without
-    // converting to longs.
-    HashMap<String, Integer> mapToInt;
-    HashMap<Integer, String> reverseMap;
-
-    // Map of edge number to the edge start point and end point, as well as
-    // cost. (order of file read)
-    ArrayList<Integer> edgeEndSet;
-    ArrayList<Integer> edgeStartSet;
-    ArrayList<Double> weights;
-    ArrayList<Edge>[] edges;
-    ArrayList<Edge>[] reverseEdges;
-
-    // Negative log transform map of edge costs.
-    // Key for edge is a perfect hash of the start and end point. (use given
-    // function. Works for up to 999,999,999 nodes)
-    HashMap<Long, Double> edgeCost;
-
-    // Used internally in dijkstra's, and in CriticalPath for path printing.
-    // Stores the dijkstra's path in symbolic tree form.
-    int[] pathForward;
-    int[] pathBackward;
-    final long INF = Long.MAX_VALUE;
+    // This was in pathlinker output so I do it as well
+    private static final String RANKED_EDGES_HEADER =
+        "# Tail\tHead\tKSP Index\tPath Cost\n";
 
+    // Names the product nodes, from their network node and DFA state
+    InputReaderRLCSP product;
 
-    // For projecting back to the original graph
+    // Product node ID of each node of graph, or null if they are the same.
+    // The graph only has the product nodes on paths from the super source
+    // to the super target.
+    int[] productNodes;
+
+    // Graph to search, including the super-source and super-target edges.
+    // Edges 0 .. numEdges - 1 are the ones to rank (order of file read).
+    CSRGraph graph;
+    int numEdges;
+
+    // Use the original TreeSet frontier in dijkstra's instead of the
+    // IndexedHeap
+    boolean treeSetFrontier;
 
-    HashMap<String, Integer> networkNodeToInt;
-    HashMap<Integer, String> networkIntToNode;
-    
-    HashMap<Long, ArrayList<Long>> correspondingEdges;
-    HashMap<Long, Long> correspondingEdgesReverse;
+    // If not null, the product is searched through this instead of graph,
+    // and graph, productNodes and the projection arrays are those of the
+    // region it finds
+    ImplicitProduct implicitProduct;
 
-    // Stores the output to pass to the outputWriter class.
-    StringBuilder pathOutput;
-    StringBuilder edgeOutput;
-    StringBuilder correspondingEdgeOutput;
+
+    // For projecting back to the original graph
+
+    // Names of the network nodes by node ID
+    NameInterner networkNames;
+
+    // Product edges of each network edge, from firstProductEdge[i] up to
+    // firstProductEdge[i + 1]
+    int[] firstProductEdge;
+    // Network edge ID of each product edge, and the network edges' start and
+    // end points
+    int[] correspondingEdgesReverse;
+    int[] networkEdgeStart;
+    int[] networkEdgeEnd;
+    // The network edge written for each network edge, one for each node pair
+    int[] networkPairEdges;
+
+    // Where the output is streamed to while ranking, from the OutputWriter
+    ResultWriter pathOutput;
+    ResultWriter edgeOutput;
+    ResultWriter correspondingEdgeOutput;
 
     //maximum number of paths to write
     long maxk;
-    long threshold;
+    // Only paths that cost less than this are written. The searches stop
+    // there, so the product nodes farther than it are never reached.
+    double threshold;
 
-    public AlgorithmRLCSP(InputReaderRLCSP graph, long maxK, long threshold) {
+    public AlgorithmRLCSP(InputReaderRLCSP graph, long maxK, double threshold,
+            boolean treeSetFrontier) {
         this.threshold = threshold;
 
         //set up our variables
-        mapToInt = graph.productNodeToInt;
-        reverseMap = graph.productIntToNode;
-
-        edgeEndSet = graph.productEdgeEndSet;
-        edgeStartSet = graph.productEdgeStartSet;
-        weights = graph.productWeights;
-        edges = graph.productEdges;
-        reverseEdges = graph.productReverseEdges;
+        product = graph;
 
-        edgeCost = graph.productEdgeCost;
-        pathOutput = new StringBuilder();
-        edgeOutput = new StringBuilder();
-        correspondingEdgeOutput = new StringBuilder();
+        this.graph = graph.productGraph;
+        numEdges = graph.numProductEdges;
 
-        this.correspondingEdges =
-            graph.correspondingEdges;
+        firstProductEdge = graph.firstProductEdge;
+        productNodes = graph.productNodes;
 
         this.correspondingEdgesReverse = 
             graph.correspondingEdgesReverse;
+        networkEdgeStart = graph.networkEdgeStart;
+        networkEdgeEnd = graph.networkEdgeEnd;
+        networkPairEdges = graph.networkPairEdges;
 
-        networkNodeToInt = graph.networkNodeToInt;
-        networkIntToNode = graph.networkIntToNode;
+        networkNames = graph.networkNames;
+        implicitProduct = graph.implicitProduct;
 
         maxk = maxK;
+        this.treeSetFrontier = treeSetFrontier;
     }
 
     public ArrayList<EdgeRLCSP<String>> readEdgesToCompute(File f) 
@@ -99,203 +104,264 @@ public class AlgorithmRLCSP {
         return list;
     }
 
-    public void run(String edgesToComputeFile) throws FileNotFoundException {
+    /**
+     * Ranks the product edges and their paths, writing them, and the network
+     * edges they project to, to the given output as they are found.
+     */
+    public void run(String edgesToComputeFile, OutputWriter output)
+            throws IOException {
+        run(edgesToComputeFile, output, RunReport.NONE);
+    }
 
-        System.out.println(edgesToComputeFile);
+    /**
+     * Same as above, timing the searches, ranking, paths and writing as
+     * phases of the given run.
+     */
+    public void run(String edgesToComputeFile, OutputWriter output,
+            RunReport.Run report) throws IOException {
+        int callerPhase = report.enter(RunReport.RANKING);
+        edgeOutput = output.EdgeWriter;
+        pathOutput = output.PathWriter;
+        correspondingEdgeOutput = output.ProjectionWriter;
+
+        // Pruning left no path from the sources to the targets, so there is
+        // nothing to search or rank
+        if (implicitProduct == null && graph.numEdges == 0) {
+            edgeOutput.append(RANKED_EDGES_HEADER);
+            report.enter(callerPhase);
+            return;
+        }
 
         int start = 0; // super source = 0
         int end = 1; // super sink = 1
-        int n = mapToInt.size(); // number of nodes
-        int e = weights.size(); // number of edges
 
-        // Dijkstra's from the start, and the end.
-        // Stores the cost at from the start to all points.
-        final double[] startFromAllNodes = dijkstraFront(n, start, edges);
+        // Dijkstra's from the start, and the end, run concurrently.
+        ShortestPathTree[] trees;
+        if (implicitProduct != null) {
+            // Only the product edges on some path are ranked; the others
+            // could not be written anyway
+            ImplicitProduct.Region region =
+                implicitProduct.search(threshold, report);
+            productNodes = region.productNodes;
+            graph = region.graph;
+            numEdges = region.numProductEdges;
+            correspondingEdgesReverse = region.networkEdges;
+            firstProductEdge = region.firstProductEdge;
+            trees = new ShortestPathTree[] {region.forward, region.backward};
+            System.out.println("Product nodes reached: " +
+                region.forwardNodes + " forward, " + region.backwardNodes +
+                " backward; " + (graph.numNodes - 2) + " on paths");
+            report.put("forwardNodesReached", region.forwardNodes);
+            report.put("backwardNodesReached", region.backwardNodes);
+            report.put("regionNodes", graph.numNodes);
+            report.put("regionEdges", graph.numEdges);
+        }
+        else {
+            trees = Dijkstra.searchBothWays(graph, null, null, start, end,
+                threshold, treeSetFrontier, report);
+        }
+        int e = numEdges; // number of edges
 
+        // Stores the cost at from the start to all points.
+        final double[] startFromAllNodes = trees[0].dist;
         // Stores the cost from the end to all points.
-        final double[] endFromAllNodes = dijkstra(n, end, reverseEdges);
+        final double[] endFromAllNodes = trees[1].dist;
 
         // Each edge has a shortest path; We will denote this as a
         // 'CriticalPath'.
         // A critical path does not contain only redundant edges. However, a
         // CriticalPath might be the same as another CriticalPath.
-        TreeSet<CriticalPath> potentialPaths = new TreeSet<CriticalPath>();
+        // CriticalPath has 4 parts; Source -> edgeStart -> edgeEnd -> Sink
+        // Parallel edges cost what the last one does, so they are the same
+        // CriticalPath
+        int[] pairEdges = graph.pairEdges();
+        double[] totalCosts = new double[e];
+        for (int a = 0; a < e; a++) {
+            totalCosts[a] = startFromAllNodes[graph.edgeStart[a]]
+                + endFromAllNodes[graph.edgeEnd[a]]
+                + graph.edgeCost[pairEdges[a]];
+        }
 
+        // The edges whose CriticalPaths we rank. Those that cost the
+        // threshold or more would only be ranked after all the others and
+        // then not written, so they are left out. Their KSP indexes are the
+        // same either way.
+        int[] potentialPaths;
+        int numPotentialPaths = 0;
         
         if (edgesToComputeFile == "") {
+            potentialPaths = new int[e];
             for (int a = 0; a < e; a++) {
-
-                // CriticalPath has 4 parts; Source -> edgeStart -> edgeEnd ->
-                // Sink
-                CriticalPath tempPath = new CriticalPath(edgeStartSet.get(a),
-                        edgeEndSet.get(a), startFromAllNodes, endFromAllNodes,
-                        edges);
-
-                potentialPaths.add(tempPath);
+                if (totalCosts[a] < threshold) {
+                    potentialPaths[numPotentialPaths++] = a;
+                }
             }
         }
         else {
+            potentialPaths = new int[e];
+
             ArrayList<EdgeRLCSP<String>> edgesToCareAbout = 
                 readEdgesToCompute(new File(edgesToComputeFile));
 
-            // Currently no choice but to loop over all product edges
-            for (int a = 0; a < e; a++) {
-                Integer tail = edgeStartSet.get(a);
-                Integer head = edgeEndSet.get(a);
-
-                String productTailString = reverseMap.get(tail);
-                String productHeadString = reverseMap.get(head);
-
-                // Loop over all the edges that we actually care about
-                for (EdgeRLCSP<String> edge : edgesToCareAbout) {
-                    String tailString = edge.getTail();
-                    String headString = edge.getHead();
-                    
-                    // If we care about it, add it
-                    if (productTailString.contains(tailString) &&
-                        productHeadString.contains(headString)) {
-
-                        CriticalPath tempPath = new CriticalPath(
-                            edgeStartSet.get(a),
-                            edgeEndSet.get(a), 
-                            startFromAllNodes, 
-                            endFromAllNodes,
-                            edges);
-
-                        potentialPaths.add(tempPath);
-                        
-                        break;
-                    }
-                    else {
-                        // Do nothing
+            // Only the product edges of the network edges we care about,
+            // found through the network to product edge map. They come out
+            // in product edge order, since product edges are in network
+            // edge order.
+            long[] wanted = networkEdgeKeys(edgesToCareAbout);
+            for (int i = 0; i < networkEdgeStart.length; i++) {
+                long key = 
+                    InputReader.hash(networkEdgeStart[i], networkEdgeEnd[i]);
+                if (Arrays.binarySearch(wanted, key) >= 0) {
+                    for (int a = firstProductEdge[i];
+                            a < firstProductEdge[i + 1]; a++) {
+                        if (totalCosts[a] < threshold) {
+                            potentialPaths[numPotentialPaths++] = a;
+                        }
                     }
                 }
             }
         }
 
+        // With --max-k only the first few edges are ever looked at, so rank
+        // them lazily instead of sorting all of them.
+        EdgeRanking ranking = 
+            new EdgeRanking(totalCosts, graph.edgeStart, graph.edgeEnd);
+        EdgeRanking.Cursor cursor = ranking.cursor(potentialPaths,
+            numPotentialPaths, maxk != Long.MAX_VALUE);
 
-
-
-
-
-        ArrayList<CriticalPath> outputPaths = new ArrayList<CriticalPath>();
-
-        // This was in pathlinker output so I do it as well
-        edgeOutput.append("# Tail\tHead\tKSP Index\tPath Cost\n"); 
+        edgeOutput.append(RANKED_EDGES_HEADER);
 
         int count2 = 0;
         int countPath = 0;
+        // Paths are written too often to enter their phase for each one
+        RunReport.Run.Stopwatch paths = report.stopwatch(RunReport.PATHS);
+
+        // Finds the shortest path that uses an edge, and which of its edges
+        // (node pairs) have not appeared on earlier paths
+        CriticalPathWalker walker = new CriticalPathWalker(graph, trees[0],
+            trees[1], pairEdges);
 
-        // This hashmap stores a blacklist of edges that have appeared on
-        // earlier paths
-        HashSet<Long> ReWriteThisWithEdgeClassLater = new HashSet<Long>();
+        // This stores a blacklist of edges that have appeared on earlier
+        // paths
+        CriticalPathWalker.Marks ReWriteThisWithEdgeClassLater = 
+            walker.newMarks();
 
-        HashSet<Long> correspondingEdgeBlacklist = new HashSet<Long>();
+        // Product edges that have been projected back to the network, and
+        // the network edges (node pairs) that have been written
+        CriticalPathWalker.Marks projectedEdges = walker.newMarks();
+        BitSet correspondingEdgeBlacklist = new BitSet();
 
         double lastcost = 0;
         long rank = 0;
+        // Path score (e^-cost) written for scoredCost; edges come in cost
+        // order, so it is only computed once for each cost
+        double scoredCost = Double.NaN;
+        double score = 0;
         // Go through all of the potential paths.
-        while (!potentialPaths.isEmpty()) {
+        int previous = -1;
+        // Nothing is written once maxk paths have been, so stop there
+        while (cursor.hasNext() && countPath < maxk) {
+            int get = cursor.next();
+            // Parallel edges with the same cost are the same CriticalPath
+            boolean duplicate = 
+                previous != -1 && ranking.compare(previous, get) == 0;
+            previous = get;
+            if (duplicate) {
+                continue;
+            }
             count2++;
-            CriticalPath get = potentialPaths.first();
-            potentialPaths.remove(get);
 
             // Start node and end node here define an edge, not 
             // for the path.
-            long startNode = get.startNode;
-            long endNode = get.endNode;
-            outputPaths.add(get);
-
-            if (get.totalCost < this.threshold) {
-
-                // Output the edge
-                if (startNode != 0 && endNode != 1 && countPath < maxk) {
-                    String outputEdge = reverseMap.get((int) startNode) + "\t"
-                            + reverseMap.get((int) endNode) + "\t" + count2 +
-                            "\t" + Math.pow(Math.E, -1 * get.totalCost);
-                    edgeOutput.append(outputEdge + "\n");
-                }
+            int startNode = graph.edgeStart[get];
+            int endNode = graph.edgeEnd[get];
+            double totalCost = totalCosts[get];
 
-                ///////////////////////////////////////////////////////////////////
-                // Projecting the product graph back to G. Remember, our goal here
-                // is to find the RLCSP path for an edge in G, not H.
-                if (startNode != 0 && endNode != 1 && countPath < maxk) {
-                 
-                    if (lastcost == get.totalCost) {
-                        // Don't do anything
-                    }
-                    else {
-                        rank++;
-                        lastcost = get.totalCost;
-                    }
-                    
-                    // TODO: This is a hack that could be made more efficient
-                    ArrayList<Integer> pathTemp = get.getPath();
-                    for (int b = 0; b < pathTemp.size() - 1; b++) {
-                        long hash = hash(pathTemp.get(b), pathTemp.get(b + 1));
+            if (totalCost != scoredCost) {
+                scoredCost = totalCost;
+                score = Math.pow(Math.E, -1 * totalCost);
+            }
 
+            // Output the edge
+            if (startNode != 0 && endNode != 1 && countPath < maxk) {
+                appendName(edgeOutput, startNode).append('\t');
+                appendName(edgeOutput, endNode).append('\t')
+                    .append(count2).append('\t')
+                    .append(score).append('\n');
+            }
+
+            ///////////////////////////////////////////////////////////////////
+            // Projecting the product graph back to G. Remember, our goal here
+            // is to find the RLCSP path for an edge in G, not H.
+            if (startNode != 0 && endNode != 1 && countPath < maxk) {
+             
+                if (lastcost == totalCost) {
+                    // Don't do anything
+                }
+                else {
+                    rank++;
+                    lastcost = totalCost;
+                }
+                
+                // Only the product edges not projected on an earlier
+                // path can have parent edges that were not written yet
+                int numNew = walker.markNew(get, projectedEdges);
+                for (int b = 0; b < numNew; b++) {
+                    int productEdge = walker.edges[b];
+
+                    // Not every edge in the critical path will have
+                    // a corresponding edge because of super source/sink
+                    // edges
+                    if (productEdge < numEdges) {
                         // Get the parent edge from the original graph's ID
-                        Long correspondingEdge = 
-                            correspondingEdgesReverse.get(hash);
-
-                        // Not every edge in the critical path will have
-                        // a corresponding edge because of super source/sink
-                        // edges
-                        if (correspondingEdge != null) {
-                            // TODO: Should future-proof this or something,
-                            // throw it in a method. If the hash function
-                            // changes, this must change.
-                            long startID = correspondingEdge / 1000000000l;
-                            long endID = correspondingEdge % 1000000000l;
-
-                            String startName = 
-                                networkIntToNode.get((int)startID);
-
-                            String endName = 
-                                networkIntToNode.get((int)endID);
-
-                            if (!correspondingEdgeBlacklist.contains(
-                                correspondingEdge)) {
-
-                                correspondingEdgeOutput.append(
-                                    startName + "\t"
-                                    + endName + "\t"
-                                    + rank + "\t"
-                                    + Math.pow(Math.E, -1 * get.totalCost)
-                                    + "\n");
-
-                                correspondingEdgeBlacklist.add(
-                                    correspondingEdge);
-                            }
+                        int correspondingEdge = networkPairEdges[
+                            correspondingEdgesReverse[productEdge]];
+
+                        if (!correspondingEdgeBlacklist.get(
+                            correspondingEdge)) {
+
+                            int networkStart = 
+                                networkEdgeStart[correspondingEdge];
+
+                            int networkEnd = 
+                                networkEdgeEnd[correspondingEdge];
+
+                            correspondingEdgeOutput
+                                .append(networkNames, networkStart)
+                                .append('\t')
+                                .append(networkNames, networkEnd)
+                                .append('\t').append(rank)
+                                .append('\t').append(score)
+                                .append('\n');
+
+                            correspondingEdgeBlacklist.set(
+                                correspondingEdge);
                         }
                     }
                 }
+            }
 
+            // Figure out if this 'criticaledge' is new
+            // It can have been seen in an earlier critical path of the same
+            // length. We are figuring out if this critical edge is new in
+            // order to determine if we need to write a new path out.
+            boolean newEdge = 
+                walker.markNew(get, ReWriteThisWithEdgeClassLater) > 0;
 
+            if (newEdge && countPath < maxk) {
+                countPath++;
+                paths.start();
                 // Get the shortest path that uses that edge.
-                ArrayList<Integer> pathTemp = get.getPath();
-
-                // Figure out if this 'criticaledge' is new
-                // It can have been seen in an earlier critical path of the same
-                // length. We are figuring out if this critical edge is new in
-                // order to determine if we need to write a new path out.
-                boolean newEdge = false;
-                for (int b = 0; b < pathTemp.size() - 1; b++) {
-                    long hash = hash(pathTemp.get(b), pathTemp.get(b + 1));
-                    if (!ReWriteThisWithEdgeClassLater.contains(hash)) {
-                        newEdge = true;
-                        ReWriteThisWithEdgeClassLater.add(hash);
-                    }
-                }
-
-                if (newEdge && countPath < maxk) {
-                    countPath++;
-                    pathOutput.append(countPath + "\t"
-                            + Math.pow(Math.E, -1 * get.totalCost) + "\t"
-                            + getString(pathTemp, reverseMap) + "\n");
-                }
+                walker.walk(get);
+                pathOutput.append(countPath).append('\t')
+                    .append(score).append('\t');
+                appendString(pathOutput, walker.nodes, walker.numNodes);
+                pathOutput.append('\n');
+                paths.stop();
             }
         }
+        paths.charge();
+        report.enter(callerPhase);
     }
 
     // I don't really want to change the output for the ranked paths, but I 
@@ -326,206 +392,49 @@ public class AlgorithmRLCSP {
     // but that output will just correspond to the shortest paths for H, not
     // for G.
 
-    // Converts a list of node ID's to a list of node names.
-    // Ex: [123, 4123] -> "P03422|Q02312"
-    private static String getString(ArrayList<Integer> path,
-            HashMap<Integer, String> reverseMap) {
-        StringBuilder node_names = new StringBuilder();
-        for (Integer a : path) {
+    // Appends the names of a list of node ID's, leaving out the super source
+    // and super sink.
+    // Ex: [0, 123, 4123, 1] -> "P03422|Q02312"
+    private void appendString(ResultWriter output, int[] path, int length)
+            throws IOException {
+        boolean first = true;
+        for (int i = 0; i < length; i++) {
+            int a = path[i];
             if (a != 0 && a != 1) {
-                node_names.append(reverseMap.get(a) + "|");
+                if (!first) {
+                    output.append('|');
+                }
+                appendName(output, a);
+                first = false;
             }
         }
-        // remove the last '|'
-        String output = node_names.toString();
-        output = output.substring(0, output.length()-1);
-        return output;
     }
 
-    // Returns a unique 64-bit integer representation of an edge. (hash with no
-    // collisions)
-    // No two edges can share the same representation.
-    private static long hash(long startNode, long endNode) {
-        // As long as endNode is below 1 billion and above or equal to 0, this
-        // function will never have a collision
-        return startNode * 1000000000l + endNode;
-    }
-
-	class CriticalPath implements Comparable<CriticalPath> {
-		// Start node of the edge defining the 'CriticalPath'
-		int startNode;
-		// End node of the edge defining the 'CriticalPath'
-		int endNode;
-        // Cost of the shortest path that uses the edge defined by startNode
-        // and endNode.
-		double totalCost;
-
-		public CriticalPath(int startNode, int endNode,
-				double[] startFromAllNodes, double[] endFromAllNodes,
-				ArrayList<Edge>[] edges) {
-			this.startNode = startNode;
-			this.endNode = endNode;
-
-			this.totalCost = startFromAllNodes[startNode]
-					+ endFromAllNodes[endNode]
-					+ edgeCost.get(hash(startNode, endNode));
-		}
-
-		// If the cost is the same, break ties arbitrarily (we use our hash)
-		// compares by cost.
-		@Override
-		public int compareTo(CriticalPath arg0) {
-			if (totalCost == arg0.totalCost) {
-
-				return Long.compare(hash(startNode, endNode),
-						hash(arg0.startNode, arg0.endNode));
-			}
-			return Double.compare(totalCost, arg0.totalCost);
-		}
-
-		// Computes the entire path, by traversing the dijkstra's algorithm
-		// trees.
-		public ArrayList<Integer> getPath() {
-			ArrayList<Integer> output = new ArrayList<Integer>();
-			ArrayList<Integer> firstHalf = new ArrayList<Integer>();
-			int start = startNode;
-			while (start != -1) {
-				firstHalf.add(start);
-				start = pathForward[start];
-				if (start == -3) {
-					return new ArrayList<Integer>();
-				}
-			}
-
-			for (int a = firstHalf.size() - 1; a >= 0; a--) {
-				output.add(firstHalf.get(a));
-			}
-			int end = endNode;
-			while (end != -1) {
-				output.add(end);
-				end = pathBackward[end];
-				if (end == -3) {
-					return new ArrayList<Integer>();
-				}
-			}
-			return output;
-		}
-
-		public String toString() {
-			return startNode + " " + endNode + " " + totalCost + " "
-					+ " Path: " + getString(this.getPath(), reverseMap);
-		}
-	}
-
-    // /////////////////////////////////////////////////////////////////////////
-    // Anything below here is a slightly modified dijkstras SSAD //
-    // ////////////////////////////////////////////////////////////////////////
-    static class VertexDist implements Comparable<VertexDist> {
-        private static final double EPS = 1E-14;
-        int vertex;
-        double distance;
-
-        public VertexDist(int vertex, double distance) {
-            this.vertex = vertex;
-            this.distance = distance;
-        }
-
-        public String toString() {
-            return "(" + vertex + " " + distance + ")";
-        }
-
-        @Override
-        public int compareTo(VertexDist arg0) {
-            VertexDist temp = arg0;
-            if (Math.abs(distance - temp.distance) < EPS) {
-                return vertex - temp.vertex;
-            }
-            if (distance < temp.distance) {
-                return -1;
-            } else {
-                return 1;
+    // Network node IDs of the edges, as hash(start, end), sorted. Edges
+    // whose names are not network nodes are left out.
+    private long[] networkEdgeKeys(ArrayList<EdgeRLCSP<String>> edges) {
+        long[] keys = new long[edges.size()];
+        int count = 0;
+        for (EdgeRLCSP<String> edge : edges) {
+            int tail = networkNames.find(edge.getTail());
+            int head = networkNames.find(edge.getHead());
+            if (tail != -1 && head != -1) {
+                keys[count++] = InputReader.hash(tail, head);
             }
         }
-
+        if (count < keys.length) {
+            System.out.println((keys.length - count) + " edges to compute " +
+                "are not between network nodes");
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        return keys;
     }
 
-	/*
-	 * Extensively modified.
-	 * 
-	 * @author Godmar Back
-	 */
-	double[] dijkstra(int N, int start, ArrayList<Edge>[] edges) {
-		final double[] dist = new double[N];
-		Arrays.fill(dist, INF);
-		dist[start] = 0;
-		pathBackward = new int[N];
-		Arrays.fill(pathBackward, -3);
-		pathBackward[start] = -1;
-		TreeSet<VertexDist> frontier = new TreeSet<VertexDist>();
-
-		frontier.add(new VertexDist(start, 0));
-
-		boolean[] optimal = new boolean[N];
-		while (!frontier.isEmpty()) {
-			VertexDist u2 = frontier.pollFirst();
-			int u = u2.vertex;
-			if (optimal[u])
-				continue;
-
-			optimal[u] = true;
-			for (Edge e : edges[u]) {
-				double uv = e.dist;
-				int v = e.end;
-				if (uv != INF) {
-					if (dist[u] + uv < dist[v]) {
-						dist[v] = dist[u] + uv;
-						pathBackward[v] = u;
-						frontier.add(new VertexDist(v, dist[v]));
-					}
-				}
-			}
-		}
-		return dist;
-		// 'dist' contains the shortest distance from start to all nodes
-	}
-
-    /*
-     * Extensively modified.
-     * 
-     * @author Godmar Back
-     */
-    double[] dijkstraFront(int N, int start, ArrayList<Edge>[] edges) {
-        final double[] dist = new double[N];
-        pathForward = new int[N];
-        Arrays.fill(pathForward, -3);
-
-        Arrays.fill(dist, INF);
-        dist[start] = 0;
-        pathForward[start] = -1;
-        TreeSet<VertexDist> frontier = new TreeSet<VertexDist>();
-
-        frontier.add(new VertexDist(start, 0));
-        boolean[] optimal = new boolean[N];
-        while (!frontier.isEmpty()) {
-            VertexDist u2 = frontier.pollFirst();
-            int u = u2.vertex;
-            if (optimal[u])
-                continue;
-
-            optimal[u] = true;
-            for (Edge e : edges[u]) {
-                double uv = e.dist;
-                int v = e.end;
-                if (uv != INF) {
-                    if (dist[u] + uv < dist[v]) {
-                        dist[v] = dist[u] + uv;
-                        pathForward[v] = u;
-                        frontier.add(new VertexDist(v, dist[v]));
-                    }
-                }
-            }
-        }
-        // 'dist' contains the shortest distance from start to all nodes
-        return dist;
+    // Appends the name of a node of graph
+    private ResultWriter appendName(ResultWriter output, int node)
+            throws IOException {
+        return product.appendProductName(output,
+            productNodes == null ? node : productNodes[node]);
     }
 }
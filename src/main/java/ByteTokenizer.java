@@ -0,0 +1,232 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads whitespace separated tokens from a memory-mapped file, a byte at a
+ * time, as a replacement for Scanner's next(), nextDouble() and nextLine().
+ * The current token is kept in a reused byte buffer, so reading a token does
+ * not create a String; names can be looked up with a NameInterner instead.
+ *
+ * Files over 2GB are mapped one window at a time.
+ */
+public class ByteTokenizer implements Closeable {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    // Powers of ten that are exact doubles
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final String fileName;
+    private final FileChannel channel;
+    private final long fileSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowPosition;
+    private int windowLimit;
+
+    // The current token is token[0 .. tokenLength - 1]
+    byte[] token;
+    int tokenLength;
+    // Line of the current token, for error messages
+    private long line;
+
+    public ByteTokenizer(File file) throws IOException {
+        fileName = file.getPath();
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        channel = in.getChannel();
+        fileSize = channel.size();
+        token = new byte[64];
+        line = 1;
+        map(0);
+    }
+
+    /**
+     * Returns true if there is another token (like Scanner.hasNext()).
+     */
+    public boolean hasNext() throws IOException {
+        int b = peek();
+        while (b != -1 && isWhitespace(b)) {
+            if (b == '\n') {
+                line++;
+            }
+            windowPosition++;
+            b = peek();
+        }
+        return b != -1;
+    }
+
+    /**
+     * Reads the next token into token[0 .. tokenLength - 1].
+     */
+    public void next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException(
+                "Unexpected end of file in " + fileName);
+        }
+        tokenLength = 0;
+        for (int b = peek(); b != -1 && !isWhitespace(b); b = peek()) {
+            if (tokenLength == token.length) {
+                byte[] grown = new byte[token.length * 2];
+                System.arraycopy(token, 0, grown, 0, tokenLength);
+                token = grown;
+            }
+            token[tokenLength++] = (byte) b;
+            windowPosition++;
+        }
+    }
+
+    /**
+     * Reads the next token as a String.
+     */
+    public String nextString() throws IOException {
+        next();
+        return tokenString();
+    }
+
+    /**
+     * Reads the next token as a double, the way Double.parseDouble does.
+     */
+    public double nextDouble() throws IOException {
+        next();
+        return tokenDouble();
+    }
+
+    /**
+     * Skips the rest of the current line, including the line separator.
+     */
+    public void nextLine() throws IOException {
+        for (int b = peek(); b != -1; b = peek()) {
+            windowPosition++;
+            if (b == '\n') {
+                line++;
+                return;
+            }
+            if (b == '\r') {
+                if (peek() == '\n') {
+                    windowPosition++;
+                }
+                line++;
+                return;
+            }
+        }
+    }
+
+    public boolean tokenStartsWith(char c) {
+        return tokenLength > 0 && token[0] == c;
+    }
+
+    /**
+     * Returns true if the token is the given ASCII string.
+     */
+    public boolean tokenEquals(String s) {
+        if (tokenLength != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String tokenString() {
+        return new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the token as a double. Plain decimals like "0.25" with up to 15
+     * significant digits are exact as m / 10^k, since m and 10^k are both
+     * exact doubles and the division is correctly rounded. Anything else is
+     * left to Double.parseDouble.
+     */
+    public double tokenDouble() {
+        int i = 0;
+        boolean negative = false;
+        if (tokenLength > 0 && (token[0] == '-' || token[0] == '+')) {
+            negative = token[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        boolean digits = false;
+        boolean simple = i < tokenLength;
+        for (; i < tokenLength && simple; i++) {
+            int b = token[i];
+            if (b >= '0' && b <= '9') {
+                digits = true;
+                if (point) {
+                    fractionDigits++;
+                }
+                if (mantissa != 0 || b != '0') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    significantDigits++;
+                }
+            }
+            else if (b == '.' && !point) {
+                point = true;
+            }
+            else {
+                simple = false;
+            }
+        }
+        if (simple && digits && significantDigits <= 15 &&
+                fractionDigits < POW10.length) {
+            double value = mantissa / POW10[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(tokenString());
+        }
+        catch (NumberFormatException e) {
+            throw new InputMismatchException("Expected a number but found \"" +
+                tokenString() + "\" on line " + line + " of " + fileName);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Returns the next byte without consuming it, or -1 at the end of the
+    // file.
+    private int peek() throws IOException {
+        if (windowPosition == windowLimit) {
+            if (windowStart + windowLimit == fileSize) {
+                return -1;
+            }
+            map(windowStart + windowLimit);
+        }
+        return window.get(windowPosition) & 0xff;
+    }
+
+    private void map(long start) throws IOException {
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        windowPosition = 0;
+        windowLimit = (int) size;
+    }
+
+    // The whitespace Scanner splits tokens on, in ASCII
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') ||
+            (b >= 0x1c && b <= 0x1f);
+    }
+}
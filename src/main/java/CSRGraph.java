@@ -0,0 +1,144 @@
+import java.util.Arrays;
+
+/**
+ * Immutable compressed-sparse-row graph. Edges are identified by their index
+ * in the order they were given to the constructor (edge IDs), while arcs are
+ * the same edges grouped by tail node so that the neighbors of node u are the
+ * arcs in [offsets[u], offsets[u + 1]).
+ *
+ * The transposed graph, used for searching backwards from the sink, is built
+ * with a counting pass when the graph is created and shares the edge arrays.
+ */
+public class CSRGraph {
+    int numNodes;
+    int numEdges;
+
+    // Edge ID to the edge start point and end point, as well as cost.
+    // (order of file read)
+    int[] edgeStart;
+    int[] edgeEnd;
+    double[] edgeCost;
+
+    // Arcs of node u are offsets[u] .. offsets[u + 1] - 1. For each arc, the
+    // node on the other side of the arc, its cost and the ID of the edge it
+    // was built from.
+    int[] offsets;
+    int[] arcEnd;
+    double[] arcCost;
+    int[] arcEdge;
+
+    // Same graph with every edge reversed.
+    CSRGraph reverse;
+
+    // For each edge ID, the last edge read with the same start and end
+    // point. Built by pairEdges() when first needed.
+    private int[] pairEdges;
+
+    /**
+     * Builds the graph from the first numEdges entries of the given edge
+     * arrays. The arrays are kept, not copied, so callers must not modify
+     * them afterwards.
+     */
+    public CSRGraph(int numNodes, int numEdges, int[] edgeStart,
+            int[] edgeEnd, double[] edgeCost) {
+        this(numNodes, numEdges, edgeStart, edgeEnd, edgeCost, true);
+    }
+
+    private CSRGraph(int numNodes, int numEdges, int[] edgeStart,
+            int[] edgeEnd, double[] edgeCost, boolean buildArcs) {
+        this.numNodes = numNodes;
+        this.numEdges = numEdges;
+        this.edgeStart = edgeStart;
+        this.edgeEnd = edgeEnd;
+        this.edgeCost = edgeCost;
+
+        reverse = new CSRGraph(this);
+        if (buildArcs) {
+            buildArcs(edgeStart, edgeEnd);
+            reverse.buildArcs(edgeEnd, edgeStart);
+        }
+    }
+
+    /**
+     * Creates the graph without building the arcs. The caller sets the arc
+     * arrays of the graph and of its reverse, e.g. from a GraphSnapshot.
+     */
+    static CSRGraph withoutArcs(int numNodes, int numEdges, int[] edgeStart,
+            int[] edgeEnd, double[] edgeCost) {
+        return new CSRGraph(numNodes, numEdges, edgeStart, edgeEnd, edgeCost,
+            false);
+    }
+
+    // Transposed view of the given graph. Arcs are filled in by buildArcs.
+    private CSRGraph(CSRGraph forward) {
+        this.numNodes = forward.numNodes;
+        this.numEdges = forward.numEdges;
+        this.edgeStart = forward.edgeStart;
+        this.edgeEnd = forward.edgeEnd;
+        this.edgeCost = forward.edgeCost;
+        this.reverse = forward;
+    }
+
+    /**
+     * Whether any edge costs less than 0. Searches can't stop at a distance
+     * bound over such a graph, since a farther node can lead back under it.
+     */
+    public boolean hasNegativeCost() {
+        for (int i = 0; i < numEdges; i++) {
+            if (edgeCost[i] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns, for each edge ID, the ID of the last edge with the same start
+     * and end point, in the order the edges were given (the edge itself if
+     * it has no parallel edges). The network file is read as one edge per
+     * node pair, with the weight of the last line for it, so that is the
+     * edge that stands for its node pair.
+     */
+    public synchronized int[] pairEdges() {
+        if (pairEdges == null) {
+            int[] last = new int[numNodes];
+            int[] pairs = new int[numEdges];
+            for (int u = 0; u < numNodes; u++) {
+                // Arcs of a node are in edge ID order, so the last one to a
+                // head is left in last[] for it
+                for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+                    last[arcEnd[arc]] = arcEdge[arc];
+                }
+                for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+                    pairs[arcEdge[arc]] = last[arcEnd[arc]];
+                }
+            }
+            pairEdges = pairs;
+        }
+        return pairEdges;
+    }
+
+    // Counting sort of the edges by tail. Edges keep their relative (file)
+    // order within a node, like the old ArrayList adjacency lists did.
+    private void buildArcs(int[] tails, int[] heads) {
+        offsets = new int[numNodes + 1];
+        for (int i = 0; i < numEdges; i++) {
+            offsets[tails[i] + 1]++;
+        }
+        for (int u = 0; u < numNodes; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        arcEnd = new int[numEdges];
+        arcCost = new double[numEdges];
+        arcEdge = new int[numEdges];
+
+        int[] next = Arrays.copyOf(offsets, numNodes);
+        for (int i = 0; i < numEdges; i++) {
+            int arc = next[tails[i]]++;
+            arcEnd[arc] = heads[i];
+            arcCost[arc] = edgeCost[i];
+            arcEdge[arc] = i;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Walks the CriticalPath of an edge (super source -> edgeStart -> edgeEnd ->
+ * super sink) through the two shortest path trees, using buffers that are
+ * reused from one edge to the next instead of building lists.
+ *
+ * To decide whether a CriticalPath has edges that were not on an earlier one,
+ * the edges that have been seen are kept in a bitset over edge IDs. Since
+ * CriticalPaths share the tree paths to the super source and super sink, each
+ * tree node is also marked once the whole tree path from it has been seen, so
+ * the walk stops at the first marked node instead of going all the way up.
+ *
+ * Given the graph's pairEdges(), parallel edges are seen as one: an edge is
+ * marked by the ID of the edge that stands for its node pair.
+ */
+public class CriticalPathWalker {
+    final CSRGraph graph;
+    final ShortestPathTree forward;
+    final ShortestPathTree backward;
+    // The edge each edge is marked as, or null to mark edges by their own ID
+    final int[] pairEdges;
+
+    // The nodes of the path filled in by walk(), in order
+    int[] nodes;
+    int numNodes;
+
+    // The edges found by markNew(), in path order
+    int[] edges;
+    int numEdges;
+
+    // Tree nodes climbed by markNew()
+    private int[] climbed;
+
+    public CriticalPathWalker(CSRGraph graph, ShortestPathTree forward,
+            ShortestPathTree backward) {
+        this(graph, forward, backward, null);
+    }
+
+    /**
+     * Same as above, marking each edge of the graph as the edge given for it
+     * in pairEdges. Edges with higher IDs (the super-source and super-target
+     * edges) are marked as themselves.
+     */
+    public CriticalPathWalker(CSRGraph graph, ShortestPathTree forward,
+            ShortestPathTree backward, int[] pairEdges) {
+        this.graph = graph;
+        this.forward = forward;
+        this.backward = backward;
+        this.pairEdges = pairEdges;
+        nodes = new int[64];
+        edges = new int[64];
+        climbed = new int[64];
+    }
+
+    /**
+     * Edges that have been seen on CriticalPaths so far.
+     */
+    public class Marks {
+        BitSet seen = new BitSet(graph.numEdges);
+        // Nodes whose whole tree path to the super source, or from the super
+        // sink, only has seen edges
+        BitSet forwardCovered = new BitSet(graph.numNodes);
+        BitSet backwardCovered = new BitSet(graph.numNodes);
+    }
+
+    public Marks newMarks() {
+        return new Marks();
+    }
+
+    /**
+     * Returns false if the super source cannot reach the start of the edge,
+     * or the end of the edge cannot reach the super sink. The CriticalPath of
+     * such an edge is empty.
+     */
+    public boolean exists(int edge) {
+        return forward.path[graph.edgeStart[edge]] != -3
+            && backward.path[graph.edgeEnd[edge]] != -3;
+    }
+
+    /**
+     * Marks the edges of the CriticalPath of the given edge as seen. The edges
+     * that had not been seen before are left in edges[0 .. numEdges - 1], in
+     * path order, and their number is returned.
+     */
+    public int markNew(int edge, Marks marks) {
+        numEdges = 0;
+        if (!exists(edge)) {
+            return 0;
+        }
+
+        // Climb the forward tree up to the first covered node, then mark the
+        // edges in path order (from the super source down)
+        int top = 0;
+        int node = graph.edgeStart[edge];
+        while (forward.path[node] != -1 && !marks.forwardCovered.get(node)) {
+            marks.forwardCovered.set(node);
+            climbed = ensureCapacity(climbed, top + 1);
+            climbed[top++] = node;
+            node = forward.path[node];
+        }
+        for (int i = top - 1; i >= 0; i--) {
+            markEdge(forward.pathEdge[climbed[i]], marks);
+        }
+
+        markEdge(edge, marks);
+
+        node = graph.edgeEnd[edge];
+        while (backward.path[node] != -1 &&
+                !marks.backwardCovered.get(node)) {
+            marks.backwardCovered.set(node);
+            markEdge(backward.pathEdge[node], marks);
+            node = backward.path[node];
+        }
+        return numEdges;
+    }
+
+    private void markEdge(int edge, Marks marks) {
+        if (pairEdges != null && edge < pairEdges.length) {
+            edge = pairEdges[edge];
+        }
+        if (!marks.seen.get(edge)) {
+            marks.seen.set(edge);
+            edges = ensureCapacity(edges, numEdges + 1);
+            edges[numEdges++] = edge;
+        }
+    }
+
+    /**
+     * Fills nodes[0 .. numNodes - 1] with the nodes of the CriticalPath of
+     * the given edge, from the super source to the super sink, and returns
+     * their number.
+     */
+    public int walk(int edge) {
+        numNodes = 0;
+        if (!exists(edge)) {
+            return 0;
+        }
+
+        for (int node = graph.edgeStart[edge]; node != -1;
+                node = forward.path[node]) {
+            nodes = ensureCapacity(nodes, numNodes + 1);
+            nodes[numNodes++] = node;
+        }
+        // The first half was added from the edge up, so reverse it
+        for (int i = 0, j = numNodes - 1; i < j; i++, j--) {
+            int temp = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = temp;
+        }
+
+        for (int node = graph.edgeEnd[edge]; node != -1;
+                node = backward.path[node]) {
+            nodes = ensureCapacity(nodes, numNodes + 1);
+            nodes[numNodes++] = node;
+        }
+        return numNodes;
+    }
+
+    private static int[] ensureCapacity(int[] buffer, int size) {
+        if (size > buffer.length) {
+            return Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Slightly modified Dijkstra's SSAD over a CSRGraph, shared by Algorithm and
+ * AlgorithmRLCSP. The frontier is an IndexedHeap by default; the original
+ * TreeSet frontier can still be selected to compare the two.
+ *
+ * Extensively modified.
+ *
+ * @author Godmar Back
+ */
+public class Dijkstra {
+    // Names of the frontier implementations, as given on the command line
+    public static final String HEAP_FRONTIER = "heap";
+    public static final String TREESET_FRONTIER = "treeset";
+
+    static final long INF = Long.MAX_VALUE;
+    // Bound of a search that goes on until every node it can reach is
+    // settled
+    public static final double NO_BOUND = Double.POSITIVE_INFINITY;
+
+    /**
+     * Computes the shortest path tree from the source following the edges of
+     * the graph, and the one from the sink following the reversed edges. The
+     * two searches only read the graph and each fills in its own tree, so the
+     * search from the sink runs on a second thread while this one searches
+     * from the source.
+     *
+     * Returns the tree from the source followed by the tree from the sink.
+     */
+    public static ShortestPathTree[] searchBothWays(CSRGraph graph,
+            int source, int sink, boolean treeSetFrontier) {
+        return searchBothWays(graph, null, null, source, sink,
+            treeSetFrontier);
+    }
+
+    /**
+     * Same as above, searching the edges of the graph and of an overlay
+     * graph on the same nodes, which may be null. Overlay edge i has edge ID
+     * overlayEdgeIds[i] in the trees.
+     */
+    public static ShortestPathTree[] searchBothWays(CSRGraph graph,
+            CSRGraph overlay, int[] overlayEdgeIds, int source, int sink,
+            boolean treeSetFrontier) {
+        return searchBothWays(graph, overlay, overlayEdgeIds, source, sink,
+            treeSetFrontier, RunReport.NONE);
+    }
+
+    /**
+     * Same as above, timing each search, on its own thread, as the forward
+     * or reverse search phase of the given run.
+     */
+    public static ShortestPathTree[] searchBothWays(CSRGraph graph,
+            CSRGraph overlay, int[] overlayEdgeIds, int source, int sink,
+            boolean treeSetFrontier, RunReport.Run report) {
+        return searchBothWays(graph, overlay, overlayEdgeIds, source, sink,
+            NO_BOUND, treeSetFrontier, report);
+    }
+
+    /**
+     * Same as above, leaving the nodes at distance bound or more from the
+     * source (or sink) unreached; see search().
+     */
+    public static ShortestPathTree[] searchBothWays(final CSRGraph graph,
+            final CSRGraph overlay, final int[] overlayEdgeIds,
+            final int source, final int sink, final double bound,
+            final boolean treeSetFrontier, final RunReport.Run report) {
+        final CSRGraph reverseOverlay = 
+            overlay == null ? null : overlay.reverse;
+        FutureTask<ShortestPathTree> backward = 
+            new FutureTask<ShortestPathTree>(
+                () -> report.time(RunReport.REVERSE_SEARCH,
+                    () -> search(graph.reverse, reverseOverlay,
+                        overlayEdgeIds, sink, bound, treeSetFrontier)));
+
+        Thread thread = new Thread(backward, "dijkstra-backward");
+        thread.setDaemon(true);
+        thread.start();
+
+        ShortestPathTree forward = report.time(RunReport.FORWARD_SEARCH,
+            () -> search(graph, overlay, overlayEdgeIds, source, bound,
+                treeSetFrontier));
+
+        // Waiting for the other search is not charged to any phase
+        int previous = report.enter(RunReport.NO_PHASE);
+        try {
+            return new ShortestPathTree[] {forward, backward.get()};
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            report.enter(previous);
+        }
+    }
+
+    /**
+     * Computes the shortest distance from start to all nodes, following the
+     * arcs of the given graph, along with the shortest path tree.
+     */
+    public static ShortestPathTree search(CSRGraph graph, int start,
+            boolean treeSetFrontier) {
+        return search(graph, null, null, start, treeSetFrontier);
+    }
+
+    /**
+     * Same as above, also following the arcs of an overlay graph on the same
+     * nodes, which may be null. The arcs of a node in the graph come before
+     * its arcs in the overlay. Overlay edge i has edge ID overlayEdgeIds[i]
+     * in the tree.
+     */
+    public static ShortestPathTree search(CSRGraph graph, CSRGraph overlay,
+            int[] overlayEdgeIds, int start, boolean treeSetFrontier) {
+        return search(graph, overlay, overlayEdgeIds, start, NO_BOUND,
+            treeSetFrontier);
+    }
+
+    /**
+     * Same as above, stopping once the nearest node left has distance bound
+     * or more. The nodes not settled by then are left unreached, with
+     * distance INF, so every node in the tree has its shortest distance and
+     * path. A path that goes through such a node costs at least the bound.
+     *
+     * That only holds without negative costs, so over graphs with some
+     * (an edge penalty below 1, or weights above 1) the bound is ignored.
+     */
+    public static ShortestPathTree search(CSRGraph graph, CSRGraph overlay,
+            int[] overlayEdgeIds, int start, double bound,
+            boolean treeSetFrontier) {
+        if (bound != NO_BOUND && (graph.hasNegativeCost() ||
+                (overlay != null && overlay.hasNegativeCost()))) {
+            bound = NO_BOUND;
+        }
+        final double[] dist = new double[graph.numNodes];
+        final int[] path = new int[graph.numNodes];
+        final int[] pathEdge = new int[graph.numNodes];
+        Arrays.fill(dist, INF);
+        Arrays.fill(path, -3);
+        dist[start] = 0;
+        path[start] = -1;
+
+        boolean[] optimal;
+        if (treeSetFrontier) {
+            optimal = treeSetSearch(graph, overlay, overlayEdgeIds, start,
+                bound, dist, path, pathEdge);
+        }
+        else {
+            optimal = heapSearch(graph, overlay, overlayEdgeIds, start,
+                bound, dist, path, pathEdge);
+        }
+        if (bound != NO_BOUND) {
+            for (int v = 0; v < graph.numNodes; v++) {
+                if (!optimal[v]) {
+                    dist[v] = INF;
+                    path[v] = -3;
+                }
+            }
+        }
+        // 'dist' contains the shortest distance from start to all nodes
+        return new ShortestPathTree(dist, path, pathEdge);
+    }
+
+    // Both searches return which nodes they settled
+    private static boolean[] heapSearch(CSRGraph graph, CSRGraph overlay,
+            int[] overlayEdgeIds, int start, double bound, double[] dist,
+            int[] path, int[] pathEdge) {
+        IndexedHeap frontier = new IndexedHeap(graph.numNodes);
+        frontier.insertOrDecrease(start, 0);
+
+        // Each node is only in the heap once. Nodes that have been polled are
+        // never added back, as with the TreeSet frontier, which matters when
+        // an edge penalty below 1 makes some costs negative.
+        boolean[] optimal = new boolean[graph.numNodes];
+        while (!frontier.isEmpty() && frontier.minKey() < bound) {
+            int u = frontier.poll();
+            optimal[u] = true;
+            relaxArcs(graph, null, u, dist, path, pathEdge, optimal,
+                frontier);
+            if (overlay != null) {
+                relaxArcs(overlay, overlayEdgeIds, u, dist, path, pathEdge,
+                    optimal, frontier);
+            }
+        }
+        return optimal;
+    }
+
+    // Relaxes the arcs of u in the given graph. Its edges have the given IDs,
+    // or their own if edgeIds is null.
+    private static void relaxArcs(CSRGraph graph, int[] edgeIds, int u,
+            double[] dist, int[] path, int[] pathEdge, boolean[] optimal,
+            IndexedHeap frontier) {
+        for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+            double uv = graph.arcCost[arc];
+            int v = graph.arcEnd[arc];
+            if (uv != INF) {
+                if (dist[u] + uv < dist[v]) {
+                    dist[v] = dist[u] + uv;
+                    path[v] = u;
+                    pathEdge[v] = edgeIds == null 
+                        ? graph.arcEdge[arc] : edgeIds[graph.arcEdge[arc]];
+                    if (!optimal[v]) {
+                        frontier.insertOrDecrease(v, dist[v]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean[] treeSetSearch(CSRGraph graph, CSRGraph overlay,
+            int[] overlayEdgeIds, int start, double bound, double[] dist,
+            int[] path, int[] pathEdge) {
+        TreeSet<VertexDist> frontier = new TreeSet<VertexDist>();
+        frontier.add(new VertexDist(start, 0));
+
+        boolean[] optimal = new boolean[graph.numNodes];
+        while (!frontier.isEmpty() && frontier.first().distance < bound) {
+            VertexDist u2 = frontier.pollFirst();
+            int u = u2.vertex;
+            if (optimal[u])
+                continue;
+
+            optimal[u] = true;
+            relaxArcs(graph, null, u, dist, path, pathEdge, frontier);
+            if (overlay != null) {
+                relaxArcs(overlay, overlayEdgeIds, u, dist, path, pathEdge,
+                    frontier);
+            }
+        }
+        return optimal;
+    }
+
+    private static void relaxArcs(CSRGraph graph, int[] edgeIds, int u,
+            double[] dist, int[] path, int[] pathEdge,
+            TreeSet<VertexDist> frontier) {
+        for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+            double uv = graph.arcCost[arc];
+            int v = graph.arcEnd[arc];
+            if (uv != INF) {
+                if (dist[u] + uv < dist[v]) {
+                    dist[v] = dist[u] + uv;
+                    path[v] = u;
+                    pathEdge[v] = edgeIds == null 
+                        ? graph.arcEdge[arc] : edgeIds[graph.arcEdge[arc]];
+                    frontier.add(new VertexDist(v, dist[v]));
+                }
+            }
+        }
+    }
+
+    static class VertexDist implements Comparable<VertexDist> {
+        private static final double EPS = 1E-14;
+        int vertex;
+        double distance;
+
+        public VertexDist(int vertex, double distance) {
+            this.vertex = vertex;
+            this.distance = distance;
+        }
+
+        public String toString() {
+            return "(" + vertex + " " + distance + ")";
+        }
+
+        @Override
+        public int compareTo(VertexDist arg0) {
+            VertexDist temp = arg0;
+            if (Math.abs(distance - temp.distance) < EPS) {
+                return vertex - temp.vertex;
+            }
+            if (distance < temp.distance) {
+                return -1;
+            } else {
+                return 1;
+            }
+        }
+    }
+}
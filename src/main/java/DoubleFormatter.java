@@ -0,0 +1,286 @@
+import java.math.BigInteger;
+
+/**
+ * Writes doubles as ASCII bytes in the format of Double.toString, without
+ * creating Strings. The digits are the shortest decimal that rounds back to
+ * the double (closest to it when there is a choice), found with the Schubfach
+ * algorithm by Raffaello Giulietti, as used by Double.toString since JDK 19.
+ *
+ * Before JDK 19, Double.toString sometimes writes one more digit, or another
+ * last digit, for doubles of 1e15 and up and for subnormal ones. Those are
+ * written with Double.toString itself, so the output is the same as the
+ * running JDK's either way. Zero and normal doubles below 1e15, which
+ * include every path score, are written here.
+ */
+public class DoubleFormatter {
+    // Precision and exponent range of doubles
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final int BQ_MASK = 0x7ff;
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+    private static final long C_TINY = 3;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // Doubles at least this large are written with Double.toString
+    private static final double FORMAT_LIMIT = 1e15;
+
+    // Number of digits a double is scaled to before writing
+    private static final int H = 17;
+
+    // Range of decimal exponents k of the 126-bit approximations g of 10^-k
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    // g split into its high 63 bits and low 63 bits, for each k
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    private static final long[] POW10 = new long[H + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i <= H; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+
+        // 10^-k = beta 2^r with 2^125 <= beta < 2^126, and g = floor(beta) + 1
+        BigInteger mask63 = BigInteger.ONE.shiftLeft(63).subtract(
+            BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int r = flog2pow10(-k) - 125;
+            BigInteger beta;
+            if (k <= 0) {
+                BigInteger pow = BigInteger.TEN.pow(-k);
+                beta = r <= 0 ? pow.shiftLeft(-r) : pow.shiftRight(r);
+            }
+            else {
+                beta = BigInteger.ONE.shiftLeft(-r).divide(
+                    BigInteger.TEN.pow(k));
+            }
+            BigInteger g = beta.add(BigInteger.ONE);
+            G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+            G[2 * (k - K_MIN) + 1] = g.and(mask63).longValue();
+        }
+    }
+
+    private DoubleFormatter() {
+    }
+
+    /**
+     * Writes v into out starting at pos, and returns the position after the
+     * last byte written. At most 24 bytes are written.
+     */
+    public static int format(double v, byte[] out, int pos) {
+        double magnitude = Math.abs(v);
+        if (magnitude >= FORMAT_LIMIT ||
+                (magnitude != 0 && magnitude < Double.MIN_NORMAL)) {
+            // Older JDKs may write these differently; see above
+            return ascii(Double.toString(v), out, pos);
+        }
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            if (t != 0) {
+                return ascii("NaN", out, pos);
+            }
+            return ascii(bits > 0 ? "Infinity" : "-Infinity", out, pos);
+        }
+        if (bits < 0) {
+            out[pos++] = '-';
+        }
+        if (bq != 0) {
+            // Normal value: v = c 2^q
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            // Integers that fit in the precision are written as they are
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return toChars(f, 0, out, pos);
+                }
+            }
+            return toDecimal(-mq, c, 0, out, pos);
+        }
+        if (t != 0) {
+            // Subnormal value
+            return t < C_TINY
+                ? toDecimal(Q_MIN, 10 * t, -1, out, pos)
+                : toDecimal(Q_MIN, t, 0, out, pos);
+        }
+        return ascii("0.0", out, pos);
+    }
+
+    // Finds the shortest decimal f 10^e in the rounding interval of c 2^q.
+    private static int toDecimal(int q, long c, int dk, byte[] out, int pos) {
+        int odd = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }
+        else {
+            // The interval is closer to c on the lower side at powers of 2
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit less
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, out, pos);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk, out, pos);
+        }
+        // Both are in the interval: pick the closest, or the even one
+        long cmp = vb - ((s + t) << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t,
+            k + dk, out, pos);
+    }
+
+    // Rounds g cp 2^-127 to odd.
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    // Writes f 10^e the way Double.toString does.
+    private static int toChars(long f, int e, byte[] out, int pos) {
+        // Scale f to exactly H digits: f 10^e = 0.f 10^e'
+        int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POW10[len]) {
+            len++;
+        }
+        f *= POW10[H - len];
+        e += len;
+
+        // Digits of f, most significant first, without trailing zeros
+        int numDigits = H;
+        while (f % 10 == 0 && numDigits > 1) {
+            f /= 10;
+            numDigits--;
+        }
+        int digitsStart = pos;
+        if (0 < e && e <= 7) {
+            // Plain notation, with at least one digit after the point:
+            // ddd.ddd
+            pos = writeDigits(f, numDigits, out, pos);
+            if (numDigits <= e) {
+                for (int i = numDigits; i < e; i++) {
+                    out[pos++] = '0';
+                }
+                out[pos++] = '.';
+                out[pos++] = '0';
+            }
+            else {
+                System.arraycopy(out, digitsStart + e, out,
+                    digitsStart + e + 1, numDigits - e);
+                out[digitsStart + e] = '.';
+                pos++;
+            }
+            return pos;
+        }
+        if (-3 < e && e <= 0) {
+            // 0.00ddd
+            out[pos++] = '0';
+            out[pos++] = '.';
+            for (int i = e; i < 0; i++) {
+                out[pos++] = '0';
+            }
+            return writeDigits(f, numDigits, out, pos);
+        }
+        // Computerized scientific notation: d.dddE-ee
+        pos = writeDigits(f, numDigits, out, pos + 1);
+        out[digitsStart] = out[digitsStart + 1];
+        out[digitsStart + 1] = '.';
+        if (numDigits == 1) {
+            out[pos++] = '0';
+        }
+        out[pos++] = 'E';
+        int exponent = e - 1;
+        if (exponent < 0) {
+            out[pos++] = '-';
+            exponent = -exponent;
+        }
+        if (exponent >= 100) {
+            out[pos++] = (byte) ('0' + exponent / 100);
+            exponent %= 100;
+            out[pos++] = (byte) ('0' + exponent / 10);
+        }
+        else if (exponent >= 10) {
+            out[pos++] = (byte) ('0' + exponent / 10);
+        }
+        out[pos++] = (byte) ('0' + exponent % 10);
+        return pos;
+    }
+
+    // Writes the given number of digits of f, which has exactly that many.
+    private static int writeDigits(long f, int numDigits, byte[] out,
+            int pos) {
+        for (int i = pos + numDigits - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + f % 10);
+            f /= 10;
+        }
+        return pos + numDigits;
+    }
+
+    private static int ascii(String s, byte[] out, int pos) {
+        for (int i = 0; i < s.length(); i++) {
+            out[pos++] = (byte) s.charAt(i);
+        }
+        return pos;
+    }
+
+    // floor(e log10(2))
+    private static int flog10pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+
+    // floor(e log10(3/4 2))
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661971961083L + -274743187321L >> 41);
+    }
+
+    // floor(e log2(10))
+    private static int flog2pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    // High 64 bits of the 128-bit product, as Math.multiplyHigh (Java 9).
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+}
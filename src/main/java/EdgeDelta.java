@@ -0,0 +1,59 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Changes to the edge weights of a network, read from a file with the same
+ * "tail head weight" lines as the network file. A line for an edge that is
+ * in the network gives it the new weight (all of its parallel edges, if it
+ * has some), a line for one that is not adds it, and a weight of 0 removes
+ * the edge. Nodes that are not in the network are added.
+ *
+ * See InputReader.withDelta() and Algorithm.update().
+ */
+public class EdgeDelta {
+    final String file;
+
+    // Tail and head name and new weight of each line, in file order
+    final ArrayList<String> tails;
+    final ArrayList<String> heads;
+    double[] weights;
+    int size;
+
+    public EdgeDelta(String file) throws IOException {
+        this.file = file;
+        tails = new ArrayList<String>();
+        heads = new ArrayList<String>();
+        weights = new double[16];
+
+        ByteTokenizer scanner = new ByteTokenizer(new File(file));
+        while (scanner.hasNext()) {
+            scanner.next();
+            // skip lines that are commented out like the header line
+            if (scanner.tokenStartsWith('#')) {
+                scanner.nextLine();
+                continue;
+            }
+            String tail = scanner.tokenString();
+            scanner.next();
+            String head = scanner.tokenString();
+            double weight = scanner.nextDouble();
+            scanner.nextLine();
+            if (!(weight >= 0 && weight <= 1)) {
+                scanner.close();
+                throw new IOException("Invalid weight for edge " + tail +
+                    "->" + head + " in " + file + ": " + weight +
+                    ". Must be between 0 and 1");
+            }
+
+            if (size == weights.length) {
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            tails.add(tail);
+            heads.add(head);
+            weights[size++] = weight;
+        }
+        scanner.close();
+    }
+}
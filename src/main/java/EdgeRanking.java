@@ -0,0 +1,274 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ranks edges by the cost of their critical path (the shortest path from the
+ * super source to the super sink that uses the edge). Edges are sorted by
+ * cost, and edges with the same cost by the perfect hash of their start and
+ * end point, which is the order the TreeSet of CriticalPaths used to give.
+ *
+ * The edges are sorted as an int array of edge IDs with a parallel merge sort,
+ * so no object is created per edge. When only the first few ranks are needed
+ * (a --max-k run), a lazy Cursor heapifies the edges in linear time instead
+ * and removes them one at a time, so stopping early costs O(E + m log E) for
+ * the m edges actually visited rather than a full sort.
+ */
+public class EdgeRanking {
+    // Ranges shorter than this are sorted on the current thread
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    // Ranges shorter than this are insertion sorted
+    private static final int INSERTION_THRESHOLD = 32;
+
+    // Cost of the critical path of each edge, by edge ID
+    final double[] totals;
+    final int[] edgeStart;
+    final int[] edgeEnd;
+
+    public EdgeRanking(double[] totals, int[] edgeStart, int[] edgeEnd) {
+        this.totals = totals;
+        this.edgeStart = edgeStart;
+        this.edgeEnd = edgeEnd;
+    }
+
+    /**
+     * Compares two edges by cost, breaking ties with the hash of the start and
+     * end point of each edge.
+     */
+    public int compare(int a, int b) {
+        if (totals[a] == totals[b]) {
+            return Long.compare(hash(edgeStart[a], edgeEnd[a]),
+                hash(edgeStart[b], edgeEnd[b]));
+        }
+        return Double.compare(totals[a], totals[b]);
+    }
+
+    /**
+     * Sorts the first count edge IDs of the given array into rank order.
+     */
+    public void sort(int[] edges, int count) {
+        int[] buffer = new int[count];
+        if (count < PARALLEL_THRESHOLD) {
+            mergeSort(edges, buffer, 0, count);
+        }
+        else {
+            ForkJoinPool.commonPool().invoke(
+                new SortTask(edges, buffer, 0, count));
+        }
+    }
+
+    /**
+     * Returns a cursor over the first count edge IDs of the given array, in
+     * rank order. The array is reordered by the cursor.
+     */
+    public Cursor cursor(int[] edges, int count, boolean lazy) {
+        return new Cursor(edges, count, lazy);
+    }
+
+    /**
+     * Returns a cursor over the first count edge IDs of the given array,
+     * which are already in rank order.
+     */
+    public Cursor ranked(int[] edges, int count) {
+        return new Cursor(edges, count);
+    }
+
+    /**
+     * Merges the first count edges of a ranking, leaving out the ones that
+     * are stale, with the first numMore edges of another, into the given
+     * array, and returns the number of edges in it. Both rankings must be
+     * in rank order by the current totals. Edges that compare equal come in
+     * edge ID order, as they do from sort() when its input is in that order.
+     */
+    public int merge(int[] ranked, int count, boolean[] stale, int[] more,
+            int numMore, int[] into) {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (true) {
+            while (i < count && stale[ranked[i]]) {
+                i++;
+            }
+            if (i == count || j == numMore) {
+                break;
+            }
+            int order = compare(ranked[i], more[j]);
+            if (order < 0 || (order == 0 && ranked[i] < more[j])) {
+                into[k++] = ranked[i++];
+            }
+            else {
+                into[k++] = more[j++];
+            }
+        }
+        for (; i < count; i++) {
+            if (!stale[ranked[i]]) {
+                into[k++] = ranked[i];
+            }
+        }
+        while (j < numMore) {
+            into[k++] = more[j++];
+        }
+        return k;
+    }
+
+    /**
+     * Goes through edges in rank order. A sorted cursor sorts all of the
+     * edges when it is created, a lazy one keeps them in a binary heap.
+     */
+    public class Cursor {
+        final int[] edges;
+        final boolean lazy;
+        // Number of edges in the heap, or in the sorted array
+        int size;
+        // Next position in the sorted array
+        int position;
+
+        // Over edges that are already sorted
+        Cursor(int[] edges, int count) {
+            this.edges = edges;
+            this.size = count;
+            this.lazy = false;
+        }
+
+        Cursor(int[] edges, int count, boolean lazy) {
+            this.edges = edges;
+            this.size = count;
+            this.lazy = lazy;
+
+            if (lazy) {
+                for (int i = size / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+            }
+            else {
+                sort(edges, count);
+            }
+        }
+
+        public boolean hasNext() {
+            if (lazy) {
+                return size > 0;
+            }
+            return position < size;
+        }
+
+        /**
+         * Returns the next edge ID in rank order.
+         */
+        public int next() {
+            if (!lazy) {
+                return edges[position++];
+            }
+            int top = edges[0];
+            size--;
+            if (size > 0) {
+                edges[0] = edges[size];
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftDown(int pos) {
+            int edge = edges[pos];
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && 
+                        compare(edges[child + 1], edges[child]) < 0) {
+                    child++;
+                }
+                if (compare(edges[child], edge) >= 0) {
+                    break;
+                }
+                edges[pos] = edges[child];
+                pos = child;
+            }
+            edges[pos] = edge;
+        }
+    }
+
+    // Sorts edges[from, to), using the same range of buffer as scratch space.
+    private void mergeSort(int[] edges, int[] buffer, int from, int to) {
+        if (to - from < INSERTION_THRESHOLD) {
+            insertionSort(edges, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(edges, buffer, from, mid);
+        mergeSort(edges, buffer, mid, to);
+        merge(edges, buffer, from, mid, to);
+    }
+
+    private void insertionSort(int[] edges, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int edge = edges[i];
+            int j = i - 1;
+            while (j >= from && compare(edges[j], edge) > 0) {
+                edges[j + 1] = edges[j];
+                j--;
+            }
+            edges[j + 1] = edge;
+        }
+    }
+
+    // Merges the sorted ranges edges[from, mid) and edges[mid, to).
+    private void merge(int[] edges, int[] buffer, int from, int mid, int to) {
+        if (compare(edges[mid - 1], edges[mid]) <= 0) {
+            // Already in order
+            return;
+        }
+        System.arraycopy(edges, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            if (compare(buffer[j], buffer[i]) < 0) {
+                edges[k++] = buffer[j++];
+            }
+            else {
+                edges[k++] = buffer[i++];
+            }
+        }
+        while (i < mid) {
+            edges[k++] = buffer[i++];
+        }
+        while (j < to) {
+            edges[k++] = buffer[j++];
+        }
+    }
+
+    private class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int[] edges;
+        final int[] buffer;
+        final int from;
+        final int to;
+
+        SortTask(int[] edges, int[] buffer, int from, int to) {
+            this.edges = edges;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_THRESHOLD) {
+                mergeSort(edges, buffer, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(edges, buffer, from, mid),
+                new SortTask(edges, buffer, mid, to));
+            merge(edges, buffer, from, mid, to);
+        }
+    }
+
+    // Returns a unique 64-bit integer representation of an edge. (hash with no
+    // collisions, as long as endNode is below 1 billion)
+    static long hash(long startNode, long endNode) {
+        return startNode * 1000000000l + endNode;
+    }
+}
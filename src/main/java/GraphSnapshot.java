@@ -0,0 +1,271 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a network read by InputReader: the node names, the edges
+ * and the arcs of the CSRGraph and of its reverse. Loading a snapshot maps it
+ * into memory and copies the arrays out in bulk, instead of parsing the text
+ * edge list and building the graph again.
+ *
+ * A snapshot records the size, modification time and CRC32 of the network
+ * file it was made from, and the edge penalty in its costs. It is only used
+ * while all of them still match.
+ *
+ * Layout (little-endian, each array starting on an 8 byte boundary):
+ *   header: magic, version, source size, source mtime, source CRC32,
+ *           edge penalty, numNodes, numEdges, length of the name bytes
+ *   names: offsets (numNodes + 1 ints), UTF-8 bytes
+ *   edges: edgeStart, edgeEnd (ints), edgeCost (doubles)
+ *   arcs, then reverse arcs: offsets (numNodes + 1 ints), arcEnd, arcEdge
+ *           (ints), arcCost (doubles)
+ */
+public class GraphSnapshot {
+    private static final int MAGIC = 0x50534c51; // "QLSP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 56;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    // Node names by node ID, and the network
+    final NameInterner names;
+    final CSRGraph network;
+
+    private GraphSnapshot(NameInterner names, CSRGraph network) {
+        this.names = names;
+        this.network = network;
+    }
+
+    /**
+     * Reads the snapshot, or returns null if there is none or it was not made
+     * from the current contents of the source file with the given edge
+     * penalty.
+     */
+    public static GraphSnapshot read(File snapshot, File source,
+            double edgePenalty) throws IOException {
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "r")) {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            long sourceSize = header.getLong();
+            long sourceModified = header.getLong();
+            long sourceChecksum = header.getLong();
+            double penalty = header.getDouble();
+            int numNodes = header.getInt();
+            int numEdges = header.getInt();
+            int nameBytes = header.getInt();
+
+            // The checksum is only computed when the cheap checks pass
+            if (sourceSize != source.length() ||
+                    sourceModified != source.lastModified() ||
+                    Double.compare(penalty, edgePenalty) != 0 ||
+                    channel.size() !=
+                        length(numNodes, numEdges, nameBytes) ||
+                    sourceChecksum != checksum(source)) {
+                return null;
+            }
+
+            long position = HEADER_SIZE;
+            int[] nameOffsets = new int[numNodes + 1];
+            position = readInts(channel, position, nameOffsets);
+            byte[] bytes = new byte[nameBytes];
+            map(channel, position, nameBytes).get(bytes);
+            position = align(position + nameBytes);
+
+            NameInterner names = new NameInterner();
+            for (int i = 0; i < numNodes; i++) {
+                names.intern(bytes, nameOffsets[i],
+                    nameOffsets[i + 1] - nameOffsets[i]);
+            }
+
+            int[] edgeStart = new int[numEdges];
+            int[] edgeEnd = new int[numEdges];
+            double[] edgeCost = new double[numEdges];
+            position = readInts(channel, position, edgeStart);
+            position = readInts(channel, position, edgeEnd);
+            position = readDoubles(channel, position, edgeCost);
+
+            CSRGraph network = CSRGraph.withoutArcs(numNodes, numEdges,
+                edgeStart, edgeEnd, edgeCost);
+            position = readArcs(channel, position, network);
+            readArcs(channel, position, network.reverse);
+
+            return new GraphSnapshot(names, network);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the network made from the source file. The
+     * snapshot is written next to its final name and then moved there, so a
+     * run reading it never sees it half written.
+     */
+    public static void write(File snapshot, File source, double edgePenalty,
+            NameInterner names, CSRGraph network) throws IOException {
+        int numNodes = network.numNodes;
+        int numEdges = network.numEdges;
+        int nameBytes = names.offsets()[numNodes];
+
+        File temp = new File(snapshot.getPath() + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION);
+            buffer.putLong(source.length()).putLong(source.lastModified())
+                .putLong(checksum(source));
+            buffer.putDouble(edgePenalty);
+            buffer.putInt(numNodes).putInt(numEdges).putInt(nameBytes);
+            pad(buffer);
+
+            writeInts(channel, buffer, names.offsets(), numNodes + 1);
+            byte[] bytes = names.bytes();
+            for (int i = 0; i < nameBytes; i++) {
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.put(bytes[i]);
+            }
+            pad(buffer);
+
+            writeInts(channel, buffer, network.edgeStart, numEdges);
+            writeInts(channel, buffer, network.edgeEnd, numEdges);
+            writeDoubles(channel, buffer, network.edgeCost, numEdges);
+            writeArcs(channel, buffer, network);
+            writeArcs(channel, buffer, network.reverse);
+            drain(channel, buffer);
+        }
+        Files.move(temp.toPath(), snapshot.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Size of a snapshot with the given counts
+    private static long length(int numNodes, int numEdges, int nameBytes) {
+        long nodeInts = align(4L * (numNodes + 1));
+        long edgeInts = align(4L * numEdges);
+        long edges = 2 * edgeInts + 8L * numEdges;
+        long arcs = nodeInts + 2 * edgeInts + 8L * numEdges;
+        return HEADER_SIZE + nodeInts + align(nameBytes) + edges + 2 * arcs;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static long checksum(File source) throws IOException {
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            for (long start = 0; start < size; start += WINDOW_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(WINDOW_SIZE, size - start)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position,
+            long size) throws IOException {
+        MappedByteBuffer buffer =
+            channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long readArcs(FileChannel channel, long position,
+            CSRGraph graph) throws IOException {
+        graph.offsets = new int[graph.numNodes + 1];
+        graph.arcEnd = new int[graph.numEdges];
+        graph.arcEdge = new int[graph.numEdges];
+        graph.arcCost = new double[graph.numEdges];
+        position = readInts(channel, position, graph.offsets);
+        position = readInts(channel, position, graph.arcEnd);
+        position = readInts(channel, position, graph.arcEdge);
+        return readDoubles(channel, position, graph.arcCost);
+    }
+
+    // Reads the array from the position, and returns the position after it
+    private static long readInts(FileChannel channel, long position,
+            int[] values) throws IOException {
+        long size = 4L * values.length;
+        if (size > 0) {
+            map(channel, position, size).asIntBuffer().get(values);
+        }
+        return align(position + size);
+    }
+
+    private static long readDoubles(FileChannel channel, long position,
+            double[] values) throws IOException {
+        long size = 8L * values.length;
+        if (size > 0) {
+            map(channel, position, size).asDoubleBuffer().get(values);
+        }
+        return position + size;
+    }
+
+    private static void writeArcs(FileChannel channel, ByteBuffer buffer,
+            CSRGraph graph) throws IOException {
+        writeInts(channel, buffer, graph.offsets, graph.numNodes + 1);
+        writeInts(channel, buffer, graph.arcEnd, graph.numEdges);
+        writeInts(channel, buffer, graph.arcEdge, graph.numEdges);
+        writeDoubles(channel, buffer, graph.arcCost, graph.numEdges);
+        pad(buffer);
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer,
+            int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < 4) {
+                drain(channel, buffer);
+            }
+            buffer.putInt(values[i]);
+        }
+        pad(buffer);
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer,
+            double[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < 8) {
+                drain(channel, buffer);
+            }
+            buffer.putDouble(values[i]);
+        }
+    }
+
+    // Pads with zeros up to the next 8 byte boundary. The buffer is only
+    // drained when full, and it's a multiple of 8 bytes long, so positions in
+    // the buffer and in the file are aligned the same way.
+    private static void pad(ByteBuffer buffer) {
+        while ((buffer.position() & 7) != 0) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
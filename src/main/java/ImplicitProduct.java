@@ -0,0 +1,584 @@
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The product of a labeled network and a DFA, searched without building it.
+ * Product node (n, s) pairs network node n with DFA state s, and has an edge
+ * to (v, t) for each network edge n -> v and DFA transition s -> t with the
+ * same label. A node's arcs are only looked up when a search reaches it,
+ * from the network's adjacency and the DFA transitions grouped by state and
+ * label, so what is stored grows with the part of the product the searches
+ * explore instead of with the whole product.
+ *
+ * Nodes and edges have the IDs InputReaderRLCSP gives the built product
+ * graph: the super source is 0, the super target 1, and (n, s) is
+ * 2 + (n - 2) * numStates + s for network nodes n >= 2. Product edges are
+ * numbered by network edge, then by DFA transition in file order, and are
+ * followed by the super source edges and the super target edges. Searches
+ * break ties on these IDs, so they find the same trees as over the built
+ * graph.
+ */
+public class ImplicitProduct {
+    // Cost of the edges from the super source and to the super target
+    private static final double SUPER_EDGE_COST = .00000000000000001;
+
+    // The network, with -log(weight) as edge costs, and the label of each
+    // network edge
+    final CSRGraph network;
+    final int[] edgeLabel;
+
+    final int numStates;
+    final int numLabels;
+
+    // DFA transitions grouped by label, in file order within a label: those
+    // with label l are at positions labelOffsets[l] .. labelOffsets[l + 1] -
+    // 1, with the given tail and head states
+    private final int[] labelOffsets;
+    private final int[] transitionTail;
+    private final int[] transitionHead;
+
+    // Positions of the transitions out of state s with label l are
+    // tailPositions[tailOffsets[s * numLabels + l] ..], and likewise for the
+    // transitions into a state
+    private final int[] tailOffsets;
+    private final int[] tailPositions;
+    private final int[] headOffsets;
+    private final int[] headPositions;
+
+    // ID of the first product edge of each network edge. The edge for the
+    // transition at position p of its label group is that plus p -
+    // labelOffsets[label].
+    private final int[] firstProductEdge;
+
+    int numNodes;
+    int numProductEdges;
+
+    // Product nodes with an edge from the super source, and to the super
+    // target, in edge order, and the indexes into them sorted by node
+    private final int[] sources;
+    private final int[] targets;
+    private final int[] sourceOrder;
+    private final int[] targetOrder;
+
+    /**
+     * The product of the given network (between network node IDs, counting
+     * the super source and target, with costs), whose edges have the given
+     * label IDs, and DFA transitions (between state IDs, with label IDs),
+     * with super source edges to the given product nodes and super target
+     * edges from the given product nodes. The network is only read, so it
+     * can be shared with other products.
+     */
+    public ImplicitProduct(CSRGraph network, int[] edgeLabel, int numStates,
+            int numTransitions, int[] tail, int[] head, int[] label,
+            int numLabels, int[] sources, int[] targets) {
+        this.network = network;
+        this.edgeLabel = edgeLabel;
+        this.numStates = numStates;
+        this.numLabels = numLabels;
+        this.sources = sources;
+        this.targets = targets;
+        int numEdges = network.numEdges;
+
+        long products = 2 + (long) (network.numNodes - 2) * numStates;
+        if (products > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "Too many product nodes: " + products);
+        }
+        numNodes = (int) products;
+
+        // Counting sort of the transitions by label, keeping file order
+        labelOffsets = new int[numLabels + 1];
+        for (int j = 0; j < numTransitions; j++) {
+            labelOffsets[label[j] + 1]++;
+        }
+        for (int l = 0; l < numLabels; l++) {
+            labelOffsets[l + 1] += labelOffsets[l];
+        }
+        transitionTail = new int[numTransitions];
+        transitionHead = new int[numTransitions];
+        int[] next = Arrays.copyOf(labelOffsets, numLabels);
+        for (int j = 0; j < numTransitions; j++) {
+            int p = next[label[j]]++;
+            transitionTail[p] = tail[j];
+            transitionHead[p] = head[j];
+        }
+
+        tailOffsets = new int[numStates * numLabels + 1];
+        tailPositions = new int[numTransitions];
+        index(transitionTail, tailOffsets, tailPositions);
+        headOffsets = new int[numStates * numLabels + 1];
+        headPositions = new int[numTransitions];
+        index(transitionHead, headOffsets, headPositions);
+
+        firstProductEdge = new int[numEdges];
+        long count = 0;
+        for (int i = 0; i < numEdges; i++) {
+            firstProductEdge[i] = (int) count;
+            count += labelOffsets[edgeLabel[i] + 1]
+                - labelOffsets[edgeLabel[i]];
+            if (count + sources.length + targets.length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                    "Too many product edges");
+            }
+        }
+        numProductEdges = (int) count;
+
+        sourceOrder = sortedOrder(sources);
+        targetOrder = sortedOrder(targets);
+    }
+
+    /**
+     * The product node of a network node (>= 2) and a DFA state.
+     */
+    public int productNode(int networkNode, int state) {
+        return 2 + (networkNode - 2) * numStates + state;
+    }
+
+    /**
+     * The part of the product on paths from the super source to the super
+     * target, found by a search from each, as a graph that AlgorithmRLCSP
+     * can rank.
+     */
+    public static class Region {
+        // Product node ID of each of the region's nodes
+        int[] productNodes;
+
+        // The region's nodes and edges, in the order of their product IDs.
+        // Edges 0 .. numProductEdges - 1 are product edges and the rest
+        // super source and super target edges, as in the built graph.
+        CSRGraph graph;
+        int numProductEdges;
+
+        // Network edge of each product edge, and the product edges of each
+        // network edge: firstProductEdge[i] .. firstProductEdge[i + 1] - 1
+        int[] networkEdges;
+        int[] firstProductEdge;
+
+        // The two searches' trees, over the region's nodes and edges
+        ShortestPathTree forward;
+        ShortestPathTree backward;
+
+        // Product nodes reached by the searches
+        int forwardNodes;
+        int backwardNodes;
+    }
+
+    /**
+     * Searches the product from the super source and, concurrently, back
+     * from the super target, timed as the forward and reverse search phases
+     * of the given run, and returns the region between them.
+     */
+    public Region search(RunReport.Run report) {
+        return search(Dijkstra.NO_BOUND, report);
+    }
+
+    /**
+     * Same as above, with searches that stop at the given distance bound, as
+     * in Dijkstra.search(). Only the product nodes within the bound of both
+     * the super source and the super target, and the nodes on their
+     * shortest paths, are in the region.
+     */
+    public Region search(double bound, final RunReport.Run report) {
+        final double searchBound =
+            network.hasNegativeCost() ? Dijkstra.NO_BOUND : bound;
+        FutureTask<Search> backward = new FutureTask<Search>(
+            () -> report.time(RunReport.REVERSE_SEARCH,
+                () -> new Search(1, true, searchBound)));
+        Thread thread = new Thread(backward, "product-backward");
+        thread.setDaemon(true);
+        thread.start();
+
+        final Search forward = report.time(RunReport.FORWARD_SEARCH,
+            () -> new Search(0, false, searchBound));
+
+        Search reverse;
+        int previous = report.enter(RunReport.NO_PHASE);
+        try {
+            reverse = backward.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            report.enter(previous);
+        }
+        return report.time(RunReport.ADJACENCY,
+            () -> region(forward, reverse));
+    }
+
+    // The arcs of a node found by arcs(): the edge ID, the node on the other
+    // side, the cost and the network edge (-1 for super edges)
+    private static class Arcs {
+        int count;
+        int[] edge = new int[16];
+        int[] node = new int[16];
+        double[] cost = new double[16];
+        int[] networkEdge = new int[16];
+
+        void add(int edge, int node, double cost, int networkEdge) {
+            if (count == this.edge.length) {
+                int length = count * 2;
+                this.edge = Arrays.copyOf(this.edge, length);
+                this.node = Arrays.copyOf(this.node, length);
+                this.cost = Arrays.copyOf(this.cost, length);
+                this.networkEdge = Arrays.copyOf(this.networkEdge, length);
+            }
+            this.edge[count] = edge;
+            this.node[count] = node;
+            this.cost[count] = cost;
+            this.networkEdge[count] = networkEdge;
+            count++;
+        }
+    }
+
+    // Fills arcs with the edges out of the node, or into it if backward, in
+    // edge ID order like the arcs of a CSRGraph
+    private void arcs(int node, boolean backward, Arcs arcs) {
+        arcs.count = 0;
+        if (node < 2) {
+            // Only the super source has edges out, and the super target in
+            if (node == (backward ? 1 : 0)) {
+                int[] ends = backward ? targets : sources;
+                int first = backward
+                    ? numProductEdges + sources.length : numProductEdges;
+                for (int i = 0; i < ends.length; i++) {
+                    arcs.add(first + i, ends[i], SUPER_EDGE_COST, -1);
+                }
+            }
+            return;
+        }
+
+        int networkNode = 2 + (node - 2) / numStates;
+        int state = (node - 2) % numStates;
+        CSRGraph graph = backward ? network.reverse : network;
+        int[] offsets = backward ? headOffsets : tailOffsets;
+        int[] positions = backward ? headPositions : tailPositions;
+        int[] states = backward ? transitionTail : transitionHead;
+        for (int arc = graph.offsets[networkNode];
+                arc < graph.offsets[networkNode + 1]; arc++) {
+            int i = graph.arcEdge[arc];
+            int l = edgeLabel[i];
+            int key = state * numLabels + l;
+            for (int q = offsets[key]; q < offsets[key + 1]; q++) {
+                int p = positions[q];
+                arcs.add(firstProductEdge[i] + p - labelOffsets[l],
+                    productNode(graph.arcEnd[arc], states[p]),
+                    graph.arcCost[arc], i);
+            }
+        }
+
+        // Super edges come after the product edges
+        int[] ends = backward ? sources : targets;
+        int[] order = backward ? sourceOrder : targetOrder;
+        int first = backward
+            ? numProductEdges : numProductEdges + sources.length;
+        for (int r = firstIndex(ends, order, node);
+                r < order.length && ends[order[r]] == node; r++) {
+            arcs.add(first + order[r], backward ? 0 : 1, SUPER_EDGE_COST,
+                -1);
+        }
+    }
+
+    /**
+     * Dijkstra's search of the product from one node, following the edges
+     * backwards if backward is set. Nodes get slots in the order they are
+     * reached, and only reached nodes are stored. Nodes at distance bound
+     * or more are left unsettled.
+     */
+    private class Search {
+        private final boolean backward;
+
+        // Product node ID, distance, previous node (-1 for the start) and
+        // edge from it, by slot
+        int size;
+        int[] ids = new int[1024];
+        double[] dist = new double[1024];
+        int[] path = new int[1024];
+        int[] pathEdge = new int[1024];
+        private boolean[] optimal = new boolean[1024];
+
+        // Open addressing table of slot + 1 by product node ID, 0 if empty
+        private int[] table = new int[2048];
+
+        Search(int start, boolean backward, double bound) {
+            this.backward = backward;
+            IndexedHeap frontier = new IndexedHeap(1024) {
+                // Same order as a search over the built graph
+                @Override
+                protected boolean before(int a, int b) {
+                    return ids[a] < ids[b];
+                }
+            };
+            int first = add(start);
+            dist[first] = 0;
+            path[first] = -1;
+            frontier.insertOrDecrease(first, 0);
+
+            Arcs arcs = new Arcs();
+            while (!frontier.isEmpty() && frontier.minKey() < bound) {
+                int u = frontier.poll();
+                optimal[u] = true;
+                arcs(ids[u], backward, arcs);
+                for (int a = 0; a < arcs.count; a++) {
+                    double uv = arcs.cost[a];
+                    int v = slot(arcs.node[a]);
+                    if (v == -1) {
+                        v = add(arcs.node[a]);
+                        frontier.ensureCapacity(size);
+                    }
+                    if (dist[u] + uv < dist[v]) {
+                        dist[v] = dist[u] + uv;
+                        path[v] = ids[u];
+                        pathEdge[v] = arcs.edge[a];
+                        if (!optimal[v]) {
+                            frontier.insertOrDecrease(v, dist[v]);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * The slot of the product node, or -1 if it was not reached.
+         */
+        int slot(int id) {
+            int mask = table.length - 1;
+            for (int i = hash(id) & mask; table[i] != 0; i = (i + 1) & mask) {
+                if (ids[table[i] - 1] == id) {
+                    return table[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * The slot of the product node, or -1 if it was not settled.
+         */
+        int settled(int id) {
+            int slot = slot(id);
+            return slot != -1 && optimal[slot] ? slot : -1;
+        }
+
+        private int add(int id) {
+            if (size == ids.length) {
+                int length = size * 2;
+                ids = Arrays.copyOf(ids, length);
+                dist = Arrays.copyOf(dist, length);
+                path = Arrays.copyOf(path, length);
+                pathEdge = Arrays.copyOf(pathEdge, length);
+                optimal = Arrays.copyOf(optimal, length);
+            }
+            // Kept at most half full
+            if (size * 2 >= table.length) {
+                table = new int[table.length * 2];
+                for (int slot = 0; slot < size; slot++) {
+                    put(ids[slot], slot);
+                }
+            }
+            ids[size] = id;
+            dist[size] = Dijkstra.INF;
+            put(id, size);
+            return size++;
+        }
+
+        private void put(int id, int slot) {
+            int mask = table.length - 1;
+            int i = hash(id) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = slot + 1;
+        }
+    }
+
+    // Builds the region from the two searches. Its nodes are the ones both
+    // settled and the nodes on their paths in either tree, numbered in
+    // product ID order. Every edge on those paths is between two of them, so
+    // the trees carry over to the region unchanged. Without a bound, the
+    // nodes on the paths were settled by both searches already.
+    private Region region(Search forward, Search backward) {
+        Region region = new Region();
+        region.forwardNodes = forward.size;
+        region.backwardNodes = backward.size;
+
+        // The super source and target are kept even if there is no path
+        int[] nodes = new int[forward.size + backward.size + 2];
+        int numRegionNodes = 0;
+        nodes[numRegionNodes++] = 0;
+        nodes[numRegionNodes++] = 1;
+        for (int slot = 0; slot < forward.size; slot++) {
+            int id = forward.ids[slot];
+            if (id > 1 && forward.optimal[slot] &&
+                    backward.settled(id) != -1) {
+                nodes[numRegionNodes++] = id;
+            }
+        }
+        int numSettled = numRegionNodes;
+        numRegionNodes = addPaths(forward, backward, nodes, numSettled,
+            numRegionNodes);
+        numRegionNodes = addPaths(backward, forward, nodes, numSettled,
+            numRegionNodes);
+        Arrays.sort(nodes, 2, numRegionNodes);
+
+        // Edges between region nodes, as found and then in product edge ID
+        // order
+        Arcs arcs = new Arcs();
+        Arcs found = new Arcs();
+        int[] tails = new int[16];
+        for (int a = 0; a < numRegionNodes; a++) {
+            arcs(nodes[a], false, arcs);
+            for (int k = 0; k < arcs.count; k++) {
+                int b = Arrays.binarySearch(nodes, 0, numRegionNodes,
+                    arcs.node[k]);
+                if (b >= 0) {
+                    if (found.count == tails.length) {
+                        tails = Arrays.copyOf(tails, tails.length * 2);
+                    }
+                    tails[found.count] = a;
+                    found.add(arcs.edge[k], b, arcs.cost[k],
+                        arcs.networkEdge[k]);
+                }
+            }
+        }
+        int numEdges = found.count;
+        int[] order = sortedOrder(Arrays.copyOf(found.edge, numEdges));
+        int[] edgeIds = new int[numEdges];
+        int[] edgeStart = new int[numEdges];
+        int[] edgeEnd = new int[numEdges];
+        double[] edgeCost = new double[numEdges];
+        region.networkEdges = new int[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            int k = order[e];
+            edgeIds[e] = found.edge[k];
+            edgeStart[e] = tails[k];
+            edgeEnd[e] = found.node[k];
+            edgeCost[e] = found.cost[k];
+            region.networkEdges[e] = found.networkEdge[k];
+            if (edgeIds[e] < numProductEdges) {
+                region.numProductEdges++;
+            }
+        }
+        region.graph = new CSRGraph(numRegionNodes, numEdges, edgeStart,
+            edgeEnd, edgeCost);
+        region.firstProductEdge = new int[network.numEdges + 1];
+        for (int e = 0; e < region.numProductEdges; e++) {
+            region.firstProductEdge[region.networkEdges[e] + 1]++;
+        }
+        for (int i = 0; i < network.numEdges; i++) {
+            region.firstProductEdge[i + 1] += region.firstProductEdge[i];
+        }
+
+        region.productNodes = Arrays.copyOf(nodes, numRegionNodes);
+        region.forward = tree(forward, nodes, numRegionNodes, edgeIds);
+        region.backward = tree(backward, nodes, numRegionNodes, edgeIds);
+        return region;
+    }
+
+    // Adds the nodes on the search's paths to nodes[2 .. numSettled - 1]
+    // that the other search did not settle, and returns the new node count
+    private static int addPaths(Search search, Search other, int[] nodes,
+            int numSettled, int numNodes) {
+        boolean[] walked = new boolean[search.size];
+        for (int a = 2; a < numSettled; a++) {
+            int id = search.path[search.slot(nodes[a])];
+            // The super source and target are in the region already
+            while (id > 1) {
+                int slot = search.slot(id);
+                if (walked[slot]) {
+                    break;
+                }
+                walked[slot] = true;
+                if (other.settled(id) == -1) {
+                    nodes[numNodes++] = id;
+                }
+                id = search.path[slot];
+            }
+        }
+        return numNodes;
+    }
+
+    // The search's tree over the region's nodes and edges
+    private static ShortestPathTree tree(Search search, int[] nodes,
+            int numNodes, int[] edgeIds) {
+        double[] dist = new double[numNodes];
+        int[] path = new int[numNodes];
+        int[] pathEdge = new int[numNodes];
+        for (int a = 0; a < numNodes; a++) {
+            int slot = search.settled(nodes[a]);
+            if (slot == -1) {
+                dist[a] = Dijkstra.INF;
+                path[a] = -3;
+            }
+            else if (search.path[slot] == -1) {
+                path[a] = -1;
+            }
+            else {
+                dist[a] = search.dist[slot];
+                path[a] = Arrays.binarySearch(nodes, 0, numNodes,
+                    search.path[slot]);
+                pathEdge[a] = Arrays.binarySearch(edgeIds,
+                    search.pathEdge[slot]);
+            }
+        }
+        return new ShortestPathTree(dist, path, pathEdge);
+    }
+
+    // Index of the first entry of order whose node is at least the given one
+    private static int firstIndex(int[] ends, int[] order, int node) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[order[middle]] < node) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Indexes into the array, sorted by value and then by index
+    private static int[] sortedOrder(int[] values) {
+        long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = ((long) values[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    // Counting sort of the transition positions by (state, label), keeping
+    // position order
+    private void index(int[] states, int[] offsets, int[] positions) {
+        for (int l = 0; l < numLabels; l++) {
+            for (int p = labelOffsets[l]; p < labelOffsets[l + 1]; p++) {
+                offsets[states[p] * numLabels + l + 1]++;
+            }
+        }
+        for (int k = 1; k < offsets.length; k++) {
+            offsets[k] += offsets[k - 1];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int l = 0; l < numLabels; l++) {
+            for (int p = labelOffsets[l]; p < labelOffsets[l + 1]; p++) {
+                positions[next[states[p] * numLabels + l]++] = p;
+            }
+        }
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
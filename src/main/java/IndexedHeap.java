@@ -0,0 +1,142 @@
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap of int nodes keyed by double distances, used as the
+ * frontier of Dijkstra's algorithm. Each node is in the heap at most once, so
+ * lowering the distance of a node moves it up in place (decrease-key) rather
+ * than adding a second entry, and nothing is allocated per operation.
+ *
+ * Ties on the key are broken by the lower node ID, which is the order the
+ * old TreeSet frontier settled nodes in. Searches whose heap nodes are not
+ * their node IDs override before() to keep that order.
+ */
+public class IndexedHeap {
+    private static final int D = 4;
+
+    // Nodes in heap order
+    private int[] heap;
+    // Heap position of each node, or -1 if the node is not in the heap
+    private int[] position;
+    // Key of each node in the heap
+    private double[] keys;
+    private int size;
+
+    public IndexedHeap(int numNodes) {
+        heap = new int[numNodes];
+        position = new int[numNodes];
+        keys = new double[numNodes];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Makes room for heap nodes up to numNodes - 1, for searches that number
+     * their nodes as they find them.
+     */
+    public void ensureCapacity(int numNodes) {
+        int length = position.length;
+        if (numNodes > length) {
+            int newLength = Math.max(numNodes, length * 2);
+            heap = Arrays.copyOf(heap, newLength);
+            keys = Arrays.copyOf(keys, newLength);
+            position = Arrays.copyOf(position, newLength);
+            Arrays.fill(position, length, newLength, -1);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds the node with the given key, or lowers its key if it is already in
+     * the heap. Keys are never raised.
+     */
+    public void insertOrDecrease(int node, double key) {
+        int pos = position[node];
+        if (pos == -1) {
+            pos = size++;
+            heap[pos] = node;
+            position[node] = pos;
+        }
+        else if (key >= keys[node]) {
+            return;
+        }
+        keys[node] = key;
+        siftUp(pos);
+    }
+
+    /**
+     * The lowest key in the heap, which must not be empty.
+     */
+    public double minKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Removes and returns the node with the lowest key.
+     */
+    public int poll() {
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private boolean less(int a, int b) {
+        return keys[a] < keys[b] || (keys[a] == keys[b] && before(a, b));
+    }
+
+    /**
+     * Whether node a is polled before node b when their keys are equal.
+     */
+    protected boolean before(int a, int b) {
+        return a < b;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) / D;
+            int parent = heap[parentPos];
+            if (!less(node, parent)) {
+                break;
+            }
+            heap[pos] = parent;
+            position[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = node;
+        position[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        while (true) {
+            int first = pos * D + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + D, size);
+            int best = first;
+            for (int child = first + 1; child < last; child++) {
+                if (less(heap[child], heap[best])) {
+                    best = child;
+                }
+            }
+            if (!less(heap[best], node)) {
+                break;
+            }
+            heap[pos] = heap[best];
+            position[heap[pos]] = pos;
+            pos = best;
+        }
+        heap[pos] = node;
+        position[node] = pos;
+    }
+}
@@ -1,38 +1,36 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Scanner;
 
 public class InputReader {
-	Scanner graphIn;
-	Scanner startEnd;
+	ByteTokenizer graphIn;
 
-	// These hashmaps map strings for proteins like "P04355" to integers, and
-	// vice versa
+	// Maps names of proteins like "P04355" to integers, and back. Names are
+	// looked up by their bytes while parsing, and kept only as bytes.
 	// Overflow warning: These integers should never be multiplied, without
 	// converting to longs.
-	HashMap<String, Integer> mapToInt;
-	HashMap<Integer, String> reverseMap;
+	NameInterner names;
 	
     // List of the starting (source) nodes and ending (target) nodes (in
-    // integer space)
+    // integer space) of the start/end file added by AddStartEnd
     ArrayList<Integer> starts; ArrayList<Integer> ends;
 
-	// Map of edge number to the edge start point and end point, as well as
-	// cost. (order of file read)
-	ArrayList<Integer> edgeEndSet;
-	ArrayList<Integer> edgeStartSet;
-	ArrayList<Double> weights;
-	ArrayList<Edge>[] edges;
-	ArrayList<Edge>[] reverseEdges;
-
-	// Negative log transform map of edge costs.
-	// Key for edge is a perfect hash of the start and end point. (use given
-	// function. Works for up to 999,999,999 nodes)
-	HashMap<Long, Double> edgeCost;
-	
+	// The network read from the graph file. Edge IDs are the order of file
+	// read. It is not modified after reading, so runs for different
+	// start/end files can share it.
+	CSRGraph network;
+
+	// Super-source and super-target edges added by AddStartEnd
+	Terminals terminals;
+
+	// For a reader made by withDelta(), the edges whose cost differs from
+	// the reader it was made from, added edges included. Otherwise null.
+	int[] changedEdges;
+
 	// Add the log of the specified penalty to the cost of each edge. 
     // This will effectively increase the cost of each path by the length *
     // edge penalty
@@ -46,25 +44,41 @@ public class InputReader {
 
 	public InputReader(String graphFile, double edgePenalty)
 			throws IOException {
-		graphIn = new Scanner(new File(graphFile));
+		this(graphFile, edgePenalty, null);
+	}
+
+	/**
+	 * Loads the network from the snapshot file if it was made from the
+	 * current graph file with the same edge penalty. Otherwise reads the graph
+	 * file and writes the snapshot for the next run. With a null snapshot
+	 * file, just reads the graph file.
+	 */
+	public InputReader(String graphFile, double edgePenalty,
+			String snapshotFile) throws IOException {
+		this(graphFile, edgePenalty, snapshotFile, RunReport.NONE);
+	}
+
+	/**
+	 * Same as above, timing the building of the network's adjacency arrays
+	 * as the adjacency build phase of the given run. The rest of the read is
+	 * in whatever phase the caller is in.
+	 */
+	public InputReader(String graphFile, double edgePenalty,
+			String snapshotFile, RunReport.Run report) throws IOException {
+		File source = new File(graphFile);
+		GraphSnapshot snapshot = null;
+		if (snapshotFile != null) {
+			snapshot = GraphSnapshot.read(new File(snapshotFile), source,
+			    edgePenalty);
+		}
+		if (snapshot == null) {
+			graphIn = new ByteTokenizer(source);
+		}
 
-		// These hashmaps map strings for proteins like "P04355" to integers,
-		// and vice versa
+		// Maps names of proteins like "P04355" to integers, and back
 		// Overflow warning: These integers should never be multiplied, without
 		// converting to longs.
-		mapToInt = new HashMap<String, Integer>();
-		reverseMap = new HashMap<Integer, String>();
-		
-		// Map of edge number to the edge start point and end point, as well as
-		// weight of the edge.
-		edgeEndSet = new ArrayList<Integer>();
-		edgeStartSet = new ArrayList<Integer>();
-		weights = new ArrayList<Double>();
-
-		// Negative log transform map of edge costs.
-		// Key for edge is a perfect hash of the start and end point. (use given
-		// function. Works for up to 999,999,999 nodes)
-		edgeCost = new HashMap<Long, Double>();
+		names = new NameInterner();
 		
 		// Add the log of the specified penalty to the cost of each edge. 
         // This will effectively increase the cost of each path by the length *
@@ -76,141 +90,292 @@ public class InputReader {
         // contain a source or target 
 
         //this.splitFamilyNodes = splitFamilyNodes;
-		read();
+		if (snapshot != null) {
+			System.out.println("Read network from snapshot: " + snapshotFile);
+			load(snapshot);
+			return;
+		}
+		read(report);
+		if (snapshotFile != null) {
+			// The run can go on without the snapshot
+			try {
+				GraphSnapshot.write(new File(snapshotFile), source,
+				    edgePenalty, names, network);
+				System.out.println("Wrote network snapshot: " + snapshotFile);
+			}
+			catch (IOException e) {
+				System.out.println("Warning: could not write network " +
+				    "snapshot " + snapshotFile + ": " + e.getMessage());
+			}
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private void read() {
-		int index = 2;
+	// A reader of the given network, whose costs include the edge penalty
+	private InputReader(NameInterner names, CSRGraph network,
+			double edgePenalty) {
+		this.names = names;
+		this.network = network;
+		this.edgePenalty = edgePenalty;
+	}
+
+	/**
+	 * The same network with the given edge penalty, sharing the node names
+	 * and edges but not the costs. This reader must have an edge penalty of
+	 * 1, so that the costs come out as if the file was read with the given
+	 * penalty.
+	 */
+	public InputReader withEdgePenalty(double edgePenalty) {
+		if (this.edgePenalty != 1) {
+			throw new IllegalStateException("The network was read with " +
+			    "edge penalty " + this.edgePenalty);
+		}
+		double[] edgeCosts = new double[network.numEdges];
+		for (int i = 0; i < network.numEdges; i++) {
+			edgeCosts[i] = network.edgeCost[i] + Math.log(edgePenalty);
+		}
+		return new InputReader(names, new CSRGraph(network.numNodes,
+		    network.numEdges, network.edgeStart, network.edgeEnd, edgeCosts),
+		    edgePenalty);
+	}
+
+	/**
+	 * The network with the changes of the delta applied. The nodes and edges
+	 * keep their IDs, and added ones get the IDs after them; removed edges
+	 * are kept with a weight of 0, like edges read with one. This reader is
+	 * not modified, and only shares the node names with the new one if the
+	 * delta adds no nodes.
+	 */
+	public InputReader withDelta(EdgeDelta delta) {
+		NameInterner names = this.names;
+		int numEdges = network.numEdges;
+		int[] edgeStart = network.edgeStart;
+		int[] edgeEnd = network.edgeEnd;
+		double[] edgeCosts = Arrays.copyOf(network.edgeCost, numEdges);
+
+		// Edges the delta has a line for, and the added ones by their hash
+		LinkedHashSet<Integer> touched = new LinkedHashSet<Integer>();
+		HashMap<Long, Integer> added = new HashMap<Long, Integer>();
+		for (int i = 0; i < delta.size; i++) {
+			String tailName = delta.tails.get(i);
+			String headName = delta.heads.get(i);
+			double weight = delta.weights[i];
+			// The same cost as if the network file had this weight
+			double cost = (Math.log(weight) * -1.0) + Math.log(edgePenalty);
+
+			int tail = names.find(tailName);
+			int head = names.find(headName);
+			boolean found = false;
+			if (tail != -1 && head != -1 && tail < network.numNodes) {
+				for (int arc = network.offsets[tail];
+				        arc < network.offsets[tail + 1]; arc++) {
+					if (network.arcEnd[arc] == head) {
+						edgeCosts[network.arcEdge[arc]] = cost;
+						touched.add(network.arcEdge[arc]);
+						found = true;
+					}
+				}
+			}
+			Integer edge = tail != -1 && head != -1
+			    ? added.get(hash(tail, head)) : null;
+			if (edge != null) {
+				edgeCosts[edge] = cost;
+				found = true;
+			}
+			// Removing an edge that is not there changes nothing
+			if (found || weight == 0) {
+				continue;
+			}
+
+			if (names == this.names && (tail == -1 || head == -1)) {
+				names = names.copy();
+			}
+			tail = names.intern(tailName);
+			head = names.intern(headName);
+			// The network's arrays can be longer than its edges, but are not
+			// written to
+			if (edgeStart == network.edgeStart ||
+			        numEdges == edgeStart.length) {
+				int length = Math.max(16, numEdges * 2);
+				edgeStart = Arrays.copyOf(edgeStart, length);
+				edgeEnd = Arrays.copyOf(edgeEnd, length);
+				edgeCosts = Arrays.copyOf(edgeCosts, length);
+			}
+			edgeStart[numEdges] = tail;
+			edgeEnd[numEdges] = head;
+			edgeCosts[numEdges] = cost;
+			added.put(hash(tail, head), numEdges);
+			touched.add(numEdges);
+			numEdges++;
+		}
+
+		int[] changed = new int[touched.size()];
+		int numChanged = 0;
+		for (int edge : touched) {
+			if (edge >= network.numEdges ||
+			        edgeCosts[edge] != network.edgeCost[edge]) {
+				changed[numChanged++] = edge;
+			}
+		}
+
+		InputReader updated = new InputReader(names,
+		    new CSRGraph(names.size(), numEdges, edgeStart, edgeEnd,
+		        edgeCosts),
+		    edgePenalty);
+		updated.changedEdges = Arrays.copyOf(changed, numChanged);
+		return updated;
+	}
+
+	private void load(GraphSnapshot snapshot) {
+		names = snapshot.names;
+		network = snapshot.network;
+	}
+
+	private void read(RunReport.Run report) throws IOException {
         // 'receptor' acts as the super source, 'tf' as the super target
-		mapToInt.put("receptor", 0);
-		reverseMap.put(0, "receptor");
-		mapToInt.put("tf", 1);
-		reverseMap.put(1, "tf");
+		names.intern("receptor");
+		names.intern("tf");
+
+		// Map of edge number to the edge start point and end point, as well as
+		// cost. Grown as needed while reading.
+		int num_edges = 0;
+		int[] edgeStart = new int[1024];
+		int[] edgeEnd = new int[1024];
+		double[] edgeCosts = new double[1024];
 
         // read in the network
 		while (graphIn.hasNext()) {
-			String start = graphIn.next();
+			graphIn.next();
 			// skip lines that are commented out like the header line
-			if (start.startsWith("#")){
+			if (graphIn.tokenStartsWith('#')){
 	            graphIn.nextLine();
 				continue;
 			}
-			String end = graphIn.next();
+			int start = 
+			    names.intern(graphIn.token, 0, graphIn.tokenLength);
+			graphIn.next();
+			int end = names.intern(graphIn.token, 0, graphIn.tokenLength);
 			double weight = graphIn.nextDouble();
 			graphIn.nextLine();
-			if (!mapToInt.containsKey(start)) {
-				mapToInt.put(start, index);
-				reverseMap.put(index, start);
-				index++;
-			}
-			if (!mapToInt.containsKey(end)) {
-				mapToInt.put(end, index);
-				reverseMap.put(index, end);
-				index++;
-			}
-			edgeStartSet.add(mapToInt.get(start));
-			edgeEndSet.add(mapToInt.get(end));
-			weights.add(weight);
-		}
-
-        // initialize the edges and reverseEdges lists for each node
-		int num_nodes = mapToInt.size();
-		int num_edges = weights.size();
-		edges = new ArrayList[num_nodes];
-		reverseEdges = new ArrayList[num_nodes];
-		for (int i = 0; i < num_nodes; i++) {
-			edges[i] = new ArrayList<Edge>();
-			reverseEdges[i] = new ArrayList<Edge>();
-		}
-
-		for (int i = 0; i < num_edges; i++) {
-			int start = edgeStartSet.get(i);
-			int end = edgeEndSet.get(i);
             // set the cost of the edge as the -log of the edge weight
             // log is the natural log by default
-            double cost = (Math.log(weights.get(i)) * -1.0);
+            double cost = (Math.log(weight) * -1.0);
 
             if (cost < 0){
                 System.out.println("Error: invalid weight for edge " + 
-                    reverseMap.get(start) + "->" + reverseMap.get(end) + 
-                    ": " + weights.get(i));
+                    names.name(start) + "->" + names.name(end) + ": " +
+                    weight);
 
                 System.out.println("Must be between 0 and 1. Quitting.");
                 System.exit(1);
             }
             // add the edge penalty. By default, it is 1 (which will be 0 after
             // the log)
-
             cost = cost + Math.log(edgePenalty);
-			edges[start].add(new Edge(end, cost));
-			edgeCost.put(hash(start, end), cost);
-			reverseEdges[end].add(new Edge(start, cost));
+
+			if (num_edges == edgeStart.length) {
+				edgeStart = Arrays.copyOf(edgeStart, num_edges * 2);
+				edgeEnd = Arrays.copyOf(edgeEnd, num_edges * 2);
+				edgeCosts = Arrays.copyOf(edgeCosts, num_edges * 2);
+			}
+			edgeStart[num_edges] = start;
+			edgeEnd[num_edges] = end;
+			edgeCosts[num_edges] = cost;
+			num_edges++;
 		}
 
+		graphIn.close();
+		int previous = report.enter(RunReport.ADJACENCY);
+		network = new CSRGraph(names.size(), num_edges, edgeStart, edgeEnd,
+		    edgeCosts);
+		report.enter(previous);
 	}
 
     public void AddStartEnd(String startEndFile, boolean startEndsPenalty, 
             boolean verbose) throws IOException {
-		startEnd = new Scanner(new File(startEndFile));
-		starts = new ArrayList<Integer>();
-		ends = new ArrayList<Integer>();
+        terminals = readTerminals(startEndFile, startEndsPenalty, verbose);
+        starts = terminals.starts;
+        ends = terminals.ends;
+    }
+
+    /**
+     * Reads the super-source and super-target edges of a start/end file,
+     * without adding them to the network.
+     */
+    public Terminals readTerminals(String startEndFile,
+            boolean startEndsPenalty, boolean verbose) throws IOException {
+		ByteTokenizer startEnd = new ByteTokenizer(new File(startEndFile));
+		ArrayList<Integer> starts = new ArrayList<Integer>();
+		ArrayList<Integer> ends = new ArrayList<Integer>();
+		// Super-source and super-target edges, grown as needed
+		int numStartEndEdges = 0;
+		int[] startEndStarts = new int[16];
+		int[] startEndEnds = new int[16];
+		double[] startEndCosts = new double[16];
+		int[] startEndIds = new int[16];
         int num_sources = 0;
         int num_targets = 0;
 		while (startEnd.hasNext()) {
             // first column (start) contains the node name
             // second column (end) contains either 'receptor' or 'tf
-			String nodeStr = startEnd.next();
+			startEnd.next();
 			// skip lines that are commented out like the header line
-			if (nodeStr.startsWith("#")){
+			if (startEnd.tokenStartsWith('#')){
 	            startEnd.nextLine();
 				continue;
 			}
-			String nodeTypeStr = startEnd.next();
+			// -1 if the name is not in the network
+			int node = names.find(startEnd.token, 0, startEnd.tokenLength);
+			startEnd.next();
+			int rec_or_tf = 
+			    names.find(startEnd.token, 0, startEnd.tokenLength);
 			// by default, the cost of a super-source or super-target edge is 0
 			double cost = .00000000000000001;
 			if (startEndsPenalty) {
-				cost = Double.parseDouble(startEnd.next());
+				cost = startEnd.nextDouble();
 			}
             // end of line. skip to next line
             startEnd.nextLine();
-            if (mapToInt.containsKey(nodeTypeStr)) {
-                if (mapToInt.get(nodeTypeStr) == 0) {
+            if (rec_or_tf != -1) {
+                if (rec_or_tf == 0) {
                     num_sources += 1;
                 }
                 else {
                     num_targets += 1;
                 }
             }
-			if (mapToInt.containsKey(nodeStr) && 
-			        mapToInt.containsKey(nodeTypeStr)) {
-
-                // start is the node name
-				int node = mapToInt.get(nodeStr);
-                // end is either 'receptor' or 'tf' 
-				int rec_or_tf = mapToInt.get(nodeTypeStr);
+			if (node != -1 && rec_or_tf != -1) {
+				if (numStartEndEdges == startEndStarts.length) {
+					int length = numStartEndEdges * 2;
+					startEndStarts = Arrays.copyOf(startEndStarts, length);
+					startEndEnds = Arrays.copyOf(startEndEnds, length);
+					startEndCosts = Arrays.copyOf(startEndCosts, length);
+					startEndIds = Arrays.copyOf(startEndIds, length);
+				}
+				startEndCosts[numStartEndEdges] = cost;
 
                 // 'receptor' was given the integer value 0, 'tf' was given a 1
                 // 'receptor' acts as the super source, 'tf' as the super target
 				if (rec_or_tf == 0) {
                     // add an edge from "receptor" to the source (node)
-					edges[rec_or_tf].add(new Edge(node, cost));
-                    // add a reverse edge from the source to 'receptor'
-					reverseEdges[node].add(new Edge(rec_or_tf, cost));
-
-					edgeCost.put(hash(node, rec_or_tf), cost);
+					startEndStarts[numStartEndEdges] = rec_or_tf;
+					startEndEnds[numStartEndEdges] = node;
+					startEndIds[numStartEndEdges] =
+					    Terminals.sourceEdgeId(network, node);
                     starts.add(node);
 				} 
 				// or from the target (node) to "tf"
 				else {
-					edges[node].add(new Edge(rec_or_tf, cost));
-					reverseEdges[rec_or_tf].add(new Edge(node, cost));
-
-					edgeCost.put(hash(node, rec_or_tf), cost);
+					startEndStarts[numStartEndEdges] = node;
+					startEndEnds[numStartEndEdges] = rec_or_tf;
+					startEndIds[numStartEndEdges] =
+					    Terminals.targetEdgeId(network, node);
                     ends.add(node);
 				}
+				numStartEndEdges++;
 			}
 		}
+		startEnd.close();
+
         if (verbose){
             System.out.println("Reading sources and targets from file: " + 
                 startEndFile);
@@ -231,32 +396,60 @@ public class InputReader {
             // TODO: Throw exception
             System.exit(1);
         }
+
+        CSRGraph edges = new CSRGraph(network.numNodes, numStartEndEdges,
+            startEndStarts, startEndEnds, startEndCosts);
+        return new Terminals(network, edges,
+            Arrays.copyOf(startEndIds, numStartEndEdges), starts, ends);
     }
     
-    // remove the "receptor" and "tf" super-source and super-target edges 
-    // from the edges and reverseEdges lists.
-    public void RemoveStartEnd(){
-    	edges[0] = new ArrayList<Edge>();
-    	reverseEdges[1] = new ArrayList<Edge>();
-        // also remove the reverse edge to the super source from the source
-        for (int i = 0; i < starts.size(); i++){
-            int to_super_source = -1;
-            for (int e = 0; e < reverseEdges[starts.get(i)].size(); e++){
-                if (reverseEdges[starts.get(i)].get(e).end == 0){
-                    to_super_source = e;
-                }
+    /**
+     * The super-source edges to the named sources and the super-target edges
+     * from the named targets, as readTerminals() reads them from a file
+     * without start/end penalties. Names that are not in the network are
+     * left out, so the Terminals can have no sources or no targets.
+     */
+    public Terminals terminals(List<String> sources, List<String> targets) {
+        int numStartEndEdges = 0;
+        int length = sources.size() + targets.size();
+        int[] startEndStarts = new int[length];
+        int[] startEndEnds = new int[length];
+        double[] startEndCosts = new double[length];
+        int[] startEndIds = new int[length];
+        ArrayList<Integer> starts = new ArrayList<Integer>();
+        ArrayList<Integer> ends = new ArrayList<Integer>();
+        for (String source : sources) {
+            int node = names.find(source);
+            if (node != -1) {
+                startEndStarts[numStartEndEdges] = 0;
+                startEndEnds[numStartEndEdges] = node;
+                startEndCosts[numStartEndEdges] = .00000000000000001;
+                startEndIds[numStartEndEdges++] =
+                    Terminals.sourceEdgeId(network, node);
+                starts.add(node);
             }
-            reverseEdges[starts.get(i)].remove(to_super_source);
         }
-        for (int i = 0; i < ends.size(); i++){
-            int to_super_target = -1;
-            for (int e = 0; e < edges[ends.get(i)].size(); e++){
-                if (edges[ends.get(i)].get(e).end == 1){
-                    to_super_target = e;
-                }
+        for (String target : targets) {
+            int node = names.find(target);
+            if (node != -1) {
+                startEndStarts[numStartEndEdges] = node;
+                startEndEnds[numStartEndEdges] = 1;
+                startEndCosts[numStartEndEdges] = .00000000000000001;
+                startEndIds[numStartEndEdges++] =
+                    Terminals.targetEdgeId(network, node);
+                ends.add(node);
             }
-            edges[ends.get(i)].remove(to_super_target);
         }
+        CSRGraph edges = new CSRGraph(network.numNodes, numStartEndEdges,
+            startEndStarts, startEndEnds, startEndCosts);
+        return new Terminals(network, edges,
+            Arrays.copyOf(startEndIds, numStartEndEdges), starts, ends);
+    }
+
+    // remove the "receptor" and "tf" super-source and super-target edges 
+    // added by AddStartEnd. The network itself is never modified.
+    public void RemoveStartEnd(){
+        terminals = null;
     }
 
 	public static long hash(long startNode, long endNode) {
@@ -1,264 +1,534 @@
 import java.io.File;
 import java.io.IOException;
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class InputReaderRLCSP {
 
-    // Strings naming the super source and super target nodes
-    private static final String SUPER_SOURCE_NAME = "super source";
-    private static final String SUPER_TARGET_NAME = "super target";
-
     // The labels identifying sources and targets in source/target files 
     private static final String SOURCE_NODETYPE_LABEL = "source";
     private static final String TARGET_NODETYPE_LABEL = "target";
 
-    // Node to node ID hashmap for original network
-    HashMap<String, Integer> networkNodeToInt;
-    HashMap<Integer, String> networkIntToNode;
+    // Fewest product edges per thread worth joining them on
+    private static final int PARALLEL_JOIN_EDGES = 1 << 16;
+
+    // Node names by node ID for the original network. Names are kept only
+    // as bytes (see NameInterner).
+    NameInterner networkNames;
 
-    // Node to node ID hashmap for product graph
-	HashMap<String, Integer> productNodeToInt;
-	HashMap<Integer, String> productIntToNode;
+    // State names by DFA state ID. Product node (n, s) of network node n
+    // and state s has ID productNode(n, s) = 2 + (n - 2) * numStates + s,
+    // after the super source (0) and super target (1), and is named
+    // "n<>s" only when it is written.
+	NameInterner dfaNames;
+	int numStates;
 
     // Edge info data structures for product graph
 	// Map of edge number to the edge start point and end point, as well as
 	// cost. (order of file read)
 
-    // Map of edge to edge's start/end/cost
-	ArrayList<Integer> productEdgeStartSet;
-	ArrayList<Integer> productEdgeEndSet;
-	ArrayList<Double> productWeights;
+    // The product graph. Edges 0 .. numProductEdges - 1 are the product
+    // edges, followed by the super source and super target edges. Only the
+    // nodes and edges on some path from the super source to the super
+    // target are kept.
+	CSRGraph productGraph;
+	int numProductEdges;
 
-	// Each node has an array list of other nodes it is connected to
-	ArrayList<Edge>[] productEdges;
-	ArrayList<Edge>[] productReverseEdges;
-
-	// Negative log transform map of edge costs.
-	// Key for edge is aperfect hash of the start and end point. (use given
-	// function. Works for up to 999,999,999 nodes)
-	HashMap<Long, Double> productEdgeCost;
+	// Product node ID of each node of productGraph, or null if no node was
+	// left out
+	int[] productNodes;
 
     // Map edges in original network to corresponding edges in
-    // the product graph. One to many relationship.
-	HashMap<Long, ArrayList<Long>> correspondingEdges;
+    // the product graph. One to many relationship: the product edges of
+    // network edge i are firstProductEdge[i] .. firstProductEdge[i + 1] - 1.
+	int[] firstProductEdge;
+
+	// Map edges in the product graph, by edge ID, to the ID of their edge in
+	// the original network (order of file read). Many to one relationship.
+	int[] correspondingEdgesReverse;
 
-	// Map edges in the product graph. Many to one relationship, hence no
-	// need for ArrayList as above
-	HashMap<Long, Long> correspondingEdgesReverse;
+	// Start and end point of each network edge, by network edge ID
+	int[] networkEdgeStart;
+	int[] networkEdgeEnd;
+	// The network edge that stands for the node pair of each network edge;
+	// see CSRGraph.pairEdges()
+	int[] networkPairEdges;
+
+	// The product searched without building it, instead of productGraph
+	// and the edge maps, with --implicitProduct
+	ImplicitProduct implicitProduct;
 
-    // Suppressed because you can't have generic arrays in Java. There should
-    // be ways to get around this to remove this statement
-    @SuppressWarnings("unchecked")
 	public InputReaderRLCSP(File network, File networkSourcesTargets, 
 	        File dfa, File dfaSourcesTargets) 
-	        throws FileNotFoundException {
-        
-        ///////////////////////////////////////////////////////////////////////
-        // Read nodes from the original network
-	    HashSet<String> networkNodes = getNodeList(network);
+	        throws IOException {
+	    this(network, networkSourcesTargets, dfa, dfaSourcesTargets,
+	        RunReport.NONE);
+	}
+
+	/**
+	 * Same as above, timing the reading of the files as the parse phase of
+	 * the given run, and the building of the product graph as its adjacency
+	 * build phase.
+	 */
+	public InputReaderRLCSP(File network, File networkSourcesTargets,
+	        File dfa, File dfaSourcesTargets, RunReport.Run report)
+	        throws IOException {
+	    this(network, networkSourcesTargets, dfa, dfaSourcesTargets, false,
+	        1, report);
+	}
 
-        // Convert HashSet of nodes to an ArrayList
-        ArrayList<String> networkNodesList = 
-            new ArrayList<String> (networkNodes);
+	/**
+	 * Same as above. If implicit is set, only implicitProduct is built: the
+	 * network and DFA are indexed so that product nodes and edges can be
+	 * found as they are searched. Otherwise the product edges are built by
+	 * the given number of threads.
+	 */
+	public InputReaderRLCSP(File network, File networkSourcesTargets,
+	        File dfa, File dfaSourcesTargets, boolean implicit, int threads,
+	        RunReport.Run report) throws IOException {
+	    this(new NetworkRLCSP(network, networkSourcesTargets, report), dfa,
+	        dfaSourcesTargets, implicit, threads, report);
+	}
 
-        networkNodeToInt = new HashMap<String, Integer>();
-        networkIntToNode = new HashMap<Integer, String>();
+	/**
+	 * Same as above, with a network that has been read already and may be
+	 * shared with the products of other DFAs. Only the DFA files are read.
+	 */
+	public InputReaderRLCSP(NetworkRLCSP network, File dfa,
+	        File dfaSourcesTargets, boolean implicit, int threads,
+	        RunReport.Run report) throws IOException {
+	    this(network, network.sources, network.targets, dfa,
+	        dfaSourcesTargets, implicit, threads, report);
+	}
 
-        hashNodes(networkNodesList, networkNodeToInt, networkIntToNode);
+	/**
+	 * Same as above, with the given network sources and targets (by name)
+	 * instead of the network's own.
+	 */
+	public InputReaderRLCSP(NetworkRLCSP network,
+	        List<String> networkSources, List<String> networkTargets,
+	        File dfa, File dfaSourcesTargets, boolean implicit, int threads,
+	        RunReport.Run report) throws IOException {
+        int previous = report.enter(RunReport.PARSE);
+
+        networkNames = network.names;
+        networkEdgeStart = network.edgeStart;
+        networkEdgeEnd = network.edgeEnd;
+        networkPairEdges = network.graph().pairEdges();
 
         ///////////////////////////////////////////////////////////////////////
         // Read nodes from DFA
 	    HashSet<String> dfaNodes = getNodeList(dfa);
-
-        // Get product of the two node sets
-	    ArrayList<String> productNodes = 
-	        getNodeProduct(networkNodes, dfaNodes);
+	    dfaNames = new NameInterner();
+	    for (String dfaNode : dfaNodes) {
+	        dfaNames.intern(dfaNode);
+	    }
+	    numStates = dfaNames.size();
 
         // Plus 2 for the super source and super target
-        Integer numNodes = productNodes.size() + 2;
+        Integer numNodes = (networkNames.size() - 2) * numStates + 2;
         System.out.println("Number of nodes in the product graph: " + 
             numNodes.toString()); 
 
-        // Hash the product nodes. Actually creates two copies of product 
-        // nodes, one for each half of the graph.
-    
-        productNodeToInt = new HashMap<String, Integer>();
-        productIntToNode = new HashMap<Integer, String>();
-
-	    hashNodes(productNodes, productNodeToInt, productIntToNode);
-
-        // Read network and DFA edges
-        ArrayList<EdgeRLCSP<String>> networkEdges = 
-            getNetworkEdgeList(network);
-
-        System.out.println("Network edge count: " + networkEdges.size());
+        System.out.println("Network edge count: " + network.numEdges);
 
         ArrayList<EdgeRLCSP<String>> dfaEdges = getDFAEdgeList(dfa);
         System.out.println("DFA edge count: " + dfaEdges.size());
 
-        
+        // DFA states and labels of each DFA edge. Labels get the network's
+        // label IDs; those no network edge has all get the next ID, and
+        // never join with a network edge.
+        int numLabels = network.labels.size() + 1;
+        int[] dfaEdgeTail = new int[dfaEdges.size()];
+        int[] dfaEdgeHead = new int[dfaEdges.size()];
+        int[] dfaEdgeLabel = new int[dfaEdges.size()];
+        for (int j = 0; j < dfaEdges.size(); j++) {
+            EdgeRLCSP<String> dfaEdge = dfaEdges.get(j);
+            dfaEdgeTail[j] = dfaNames.find(dfaEdge.getTail());
+            dfaEdgeHead[j] = dfaNames.find(dfaEdge.getHead());
+            int label = network.labels.find(dfaEdge.getLabel());
+            dfaEdgeLabel[j] = label == -1 ? numLabels - 1 : label;
+        }
+
+        // Product sources and targets, each network node with each DFA
+        // state of its type
+        int[] sources = productNodes(networkSources,
+            getSources(dfaSourcesTargets));
+        int[] targets = productNodes(networkTargets,
+            getTargets(dfaSourcesTargets));
+
+        if (implicit) {
+            buildImplicitProduct(network, dfaEdgeTail, dfaEdgeHead,
+                dfaEdgeLabel, numLabels, sources, targets);
+            report.enter(previous);
+            return;
+        }
+
         ///////////////////////////////////////////////////////////////////////
         // Product graph edge construction starts here
-        productEdgeStartSet = new ArrayList<Integer>();
-        productEdgeEndSet = new ArrayList<Integer>();
-        productWeights = new ArrayList<Double>();
-        productEdges = new ArrayList[numNodes];
-        productReverseEdges = new ArrayList[numNodes];
-
-        // Initialize the edges and reverseEdges lists for each node
-        for (int i = 0; i < numNodes; i++) {
-            productEdges[i] = new ArrayList<Edge>();
-            productReverseEdges[i] = new ArrayList<Edge>();
-        }
 
         //////////////////////////////////////////////////////////////////////
         // Creation of product edges
         // (u1, u2) -> (v1, v2) if (u1 -> u2 & v1 -> v2 & label same)
+        //
+        // The DFA edges are grouped by label once, so each network edge only
+        // meets the DFA edges with its label instead of all of them. Its
+        // product edges are numbered after those of the network edges before
+        // it, in DFA file order, so ranges of network edges can be joined on
+        // different threads.
+        report.enter(RunReport.ADJACENCY);
+        EdgeJoin join = new EdgeJoin(network.edgeCost, network.edgeLabel,
+            dfaEdgeTail, dfaEdgeHead, dfaEdgeLabel, numLabels);
+        int numEdges = join.numProductEdges;
+        System.out.println("Product graph edges: " + numEdges);
+        join.run(threads, report);
+
+        int[] productEdgeStart = join.productEdgeStart;
+        int[] productEdgeEnd = join.productEdgeEnd;
+        double[] productEdgeCosts = join.productEdgeCosts;
+
+        firstProductEdge = join.firstProductEdge;
+        numProductEdges = numEdges;
 
-        correspondingEdges = new HashMap<Long, ArrayList<Long>>();
-        correspondingEdgesReverse = new HashMap<Long, Long>();
-
-        Integer productEdgesCounter = 0;
-
-        for (int i = 0; i < networkEdges.size(); i++) {
-            EdgeRLCSP<String> networkEdge = networkEdges.get(i);
-            for (int j = 0; j < dfaEdges.size(); j++) {
-                EdgeRLCSP<String> dfaEdge = dfaEdges.get(j);
-
-                // If our label is the same, create the edge
-                if (networkEdge.labelMatches(dfaEdge)) {
-                    productEdgesCounter++;
-                    // Determine the edge's product head and tail nodes
-                    String networkTail = networkEdge.getTail();
-                    String dfaTail = dfaEdge.getTail();
-
-                    // Create a new node. Use <> to delimit old and new nodes
-                    // to avoid problems like TF2 and TF and nodes 1 and 21
-                    // BOTH creating compound nodes like TF21
-                    // TODO: Abstract this out into a function...
-                    String newTail = networkTail + "<>" + dfaTail;
-
-                    String networkHead = networkEdge.getHead();
-                    String dfaHead = dfaEdge.getHead();
-                    String newHead = networkHead + "<>" + dfaHead;
-
-                    // At this point, the new head and tail nodes should be
-                    // product nodes in our hashes. Get their Integer IDs.
-
-                    Integer newTailInt = productNodeToInt.get(newTail);
-                    Integer newHeadInt = productNodeToInt.get(newHead);
-
-                    EdgeRLCSP<Integer> productEdge = 
-                        new EdgeRLCSP<Integer>(newTailInt, newHeadInt,
-                            networkEdge.getDist(), "x");
-
-                    productEdgeStartSet.add(newTailInt);
-                    productEdgeEndSet.add(newHeadInt);
-                    productWeights.add(networkEdge.getDist());
-
-                    // Track network edge's corresponding edges...
-                    Integer networkTailInt = networkNodeToInt.get(networkTail);
-                    Integer networkHeadInt = networkNodeToInt.get(networkHead);
-
-                    // First, get the hashed edge IDs
-                    Long networkEdgeId = 
-                        hash(networkTailInt, networkHeadInt);
-
-                    Long productEdgeId = 
-                        hash(newTailInt, newHeadInt);
-
-                    if (!correspondingEdges.containsKey(networkEdgeId)) {
-                        ArrayList<Long> list = new ArrayList<Long>();
-                        list.add(productEdgeId);
-
-                        correspondingEdges.put(
-                            networkEdgeId, list);
-                    }
-                    else {
-                        ArrayList<Long> list = correspondingEdges.get(
-                            networkEdgeId);
-                        list.add(productEdgeId);
-                    }
-                    correspondingEdgesReverse.put(
-                        productEdgeId, networkEdgeId);
-                }
-            }
+        ///////////////////////////////////////////////////////////////////////
+        // Add product sources and targets to the graph: edges from the super
+        // source to each product source, and from each product target to
+        // the super target, after the product edges
+        int total = numEdges + sources.length + targets.length;
+        productEdgeStart = Arrays.copyOf(productEdgeStart, total);
+        productEdgeEnd = Arrays.copyOf(productEdgeEnd, total);
+        productEdgeCosts = Arrays.copyOf(productEdgeCosts, total);
+        int e = numEdges;
+        for (int source : sources) {
+            productEdgeStart[e] = 0;
+            productEdgeEnd[e++] = source;
         }
-        System.out.println("Product graph edges: " + productEdgesCounter);
+        for (int target : targets) {
+            productEdgeStart[e] = target;
+            productEdgeEnd[e++] = 1;
+        }
+        Arrays.fill(productEdgeCosts, numEdges, total, .00000000000000001);
 
-        Integer numEdges = productWeights.size(); 
+        productGraph = new CSRGraph(numNodes, total, productEdgeStart,
+            productEdgeEnd, productEdgeCosts);
+        prune();
+        report.enter(previous);
+	}
 
-        productEdgeCost = new HashMap<Long, Double>();
+    /**
+     * Drops the product nodes that the super source can't reach or that
+     * can't reach the super target, and their edges, before anything is
+     * searched or ranked. Their CriticalPaths would have infinite cost.
+     * The nodes and edges left keep their order, so searching and ranking
+     * them gives the same results as the whole graph.
+     */
+    private void prune() {
+        boolean[] fromSource = reachable(productGraph, 0);
+        boolean[] toTarget = reachable(productGraph.reverse, 1);
+        if (!fromSource[1]) {
+            System.out.println("No product path from the sources to the " +
+                "targets");
+        }
 
-        for (int i = 0; i < numEdges; i++) {
-            Integer start = productEdgeStartSet.get(i);
-            Integer end = productEdgeEndSet.get(i);
+        // New node IDs, in product node ID order. The super source and
+        // target are kept even without a path between them.
+        int numNodes = productGraph.numNodes;
+        int[] newIds = new int[numNodes];
+        int[] nodes = new int[numNodes];
+        int numLive = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (node < 2 || (fromSource[node] && toTarget[node])) {
+                newIds[node] = numLive;
+                nodes[numLive++] = node;
+            }
+            else {
+                newIds[node] = -1;
+            }
+        }
+        if (numLive == numNodes) {
+            return;
+        }
 
-            // Set the cost of the edge as the -log of the edge weight
-            // log is the natural log by default
-            double cost = (Math.log(productWeights.get(i)) * -1.0);
-            productEdges[start].add(new Edge(end, cost));
-            productReverseEdges[end].add(new Edge(start, cost));
+        // An edge is on a path if both of its nodes are. The edge arrays
+        // are compacted in place.
+        int[] edgeStart = productGraph.edgeStart;
+        int[] edgeEnd = productGraph.edgeEnd;
+        double[] edgeCost = productGraph.edgeCost;
+        int numEdges = 0;
+        int numLiveProductEdges = 0;
+        for (int e = 0; e < productGraph.numEdges; e++) {
+            int start = newIds[edgeStart[e]];
+            int end = newIds[edgeEnd[e]];
+            if (start != -1 && end != -1) {
+                edgeStart[numEdges] = start;
+                edgeEnd[numEdges] = end;
+                edgeCost[numEdges] = edgeCost[e];
+                if (e < numProductEdges) {
+                    correspondingEdgesReverse[numEdges] =
+                        correspondingEdgesReverse[e];
+                    numLiveProductEdges++;
+                }
+                numEdges++;
+            }
+        }
 
-            productEdgeCost.put(hash(start, end), cost);
+        // Product edges are still in network edge order
+        Arrays.fill(firstProductEdge, 0);
+        for (int e = 0; e < numLiveProductEdges; e++) {
+            firstProductEdge[correspondingEdgesReverse[e] + 1]++;
+        }
+        for (int i = 1; i < firstProductEdge.length; i++) {
+            firstProductEdge[i] += firstProductEdge[i - 1];
         }
 
-        ///////////////////////////////////////////////////////////////////////
-        // Add product sources and targets to the graph
-        // make the edges from the super source to each product node
+        System.out.println("Product graph after pruning: " + (numLive - 2) +
+            " nodes, " + numLiveProductEdges + " edges");
+        productNodes = Arrays.copyOf(nodes, numLive);
+        numProductEdges = numLiveProductEdges;
+        correspondingEdgesReverse =
+            Arrays.copyOf(correspondingEdgesReverse, numLiveProductEdges);
+        // Let the arcs of the whole graph go before building the new ones
+        productGraph = null;
+        productGraph = new CSRGraph(numLive, numEdges, edgeStart, edgeEnd,
+            edgeCost);
+    }
 
-        ArrayList<String> networkSources = getSources(networkSourcesTargets);
-        ArrayList<String> dfaSources = getSources(dfaSourcesTargets);
+    // Nodes that can be reached from the start, by breadth-first search
+    private static boolean[] reachable(CSRGraph graph, int start) {
+        boolean[] seen = new boolean[graph.numNodes];
+        int[] queue = new int[graph.numNodes];
+        int head = 0;
+        int tail = 0;
+        seen[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1];
+                    arc++) {
+                int v = graph.arcEnd[arc];
+                if (!seen[v]) {
+                    seen[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return seen;
+    }
 
-        ArrayList<String> productSources = 
-            getNodeProduct(networkSources, dfaSources);
+    /**
+     * Product edges joined from the network edges and the DFA edges with the
+     * same label. Each network edge's product edges start at a known ID, so
+     * ranges of network edges can be filled in at the same time.
+     */
+    private class EdgeJoin {
+        final double[] networkEdgeCost;
+        final int[] networkEdgeLabel;
+        final int[] dfaEdgeTail;
+        final int[] dfaEdgeHead;
+
+        // DFA edges grouped by label, in file order within a label: those
+        // with label l are byLabel[labelOffsets[l] .. labelOffsets[l + 1] -
+        // 1]
+        final int[] labelOffsets;
+        final int[] byLabel;
+
+        // ID of the first product edge of each network edge, and the number
+        // of product edges after the last
+        final int[] firstProductEdge;
+        final int numProductEdges;
+
+        final int[] productEdgeStart;
+        final int[] productEdgeEnd;
+        final double[] productEdgeCosts;
+
+        EdgeJoin(double[] networkEdgeCost, int[] networkEdgeLabel,
+                int[] dfaEdgeTail, int[] dfaEdgeHead, int[] dfaEdgeLabel,
+                int numLabels) {
+            this.networkEdgeCost = networkEdgeCost;
+            this.networkEdgeLabel = networkEdgeLabel;
+            this.dfaEdgeTail = dfaEdgeTail;
+            this.dfaEdgeHead = dfaEdgeHead;
+
+            labelOffsets = new int[numLabels + 1];
+            for (int label : dfaEdgeLabel) {
+                labelOffsets[label + 1]++;
+            }
+            for (int l = 0; l < numLabels; l++) {
+                labelOffsets[l + 1] += labelOffsets[l];
+            }
+            byLabel = new int[dfaEdgeLabel.length];
+            int[] next = Arrays.copyOf(labelOffsets, numLabels);
+            for (int j = 0; j < dfaEdgeLabel.length; j++) {
+                byLabel[next[dfaEdgeLabel[j]]++] = j;
+            }
+
+            int numNetworkEdges = networkEdgeLabel.length;
+            firstProductEdge = new int[numNetworkEdges + 1];
+            long count = 0;
+            for (int i = 0; i < numNetworkEdges; i++) {
+                firstProductEdge[i] = (int) count;
+                int label = networkEdgeLabel[i];
+                count += labelOffsets[label + 1] - labelOffsets[label];
+                if (count > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(
+                        "Too many product edges");
+                }
+            }
+            numProductEdges = (int) count;
+            firstProductEdge[numNetworkEdges] = numProductEdges;
 
-        for (String node: productSources) {
-            // Get the integer ID of the node. The integer ID of the 
-            // supersource is 0.
-            Integer id = productNodeToInt.get(node);
+            productEdgeStart = new int[numProductEdges];
+            productEdgeEnd = new int[numProductEdges];
+            productEdgeCosts = new double[numProductEdges];
+            correspondingEdgesReverse = new int[numProductEdges];
+        }
 
-            // If the source is actually in the edgelist...
-            if (id != null) {
-                // Add edge FROM supersource TO source
-                productEdges[0].add(new Edge(id, .00000000000000001));
+        /**
+         * Fills in all the product edges, timed as the adjacency build phase
+         * of the given run. Up to the given number of threads each take a
+         * range of network edges with about as many product edges.
+         */
+        void run(int threads, final RunReport.Run report) {
+            int ranges = numProductEdges < PARALLEL_JOIN_EDGES ? 1
+                : Math.min(threads, numProductEdges / PARALLEL_JOIN_EDGES);
+            if (ranges <= 1) {
+                fill(0, networkEdgeLabel.length);
+                return;
+            }
 
-                // Add edge FROM source TO supersource in the reverse graph
-                productReverseEdges[id].add(new Edge(0, .00000000000000001));
+            ExecutorService pool = Executors.newFixedThreadPool(ranges);
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            int from = 0;
+            for (int r = 1; r <= ranges; r++) {
+                int to = rangeEnd((long) numProductEdges * r / ranges);
+                final int first = from;
+                final int last = to;
+                tasks.add(() -> report.time(RunReport.ADJACENCY, () -> {
+                    fill(first, last);
+                    return null;
+                }));
+                from = to;
+            }
 
-                // Add edge cost
-                productEdgeCost.put(hash(0, id), .00000000000000001);
+            // Waiting for the threads is not charged to any phase
+            int previous = report.enter(RunReport.NO_PHASE);
+            try {
+                for (Future<Void> task : pool.invokeAll(tasks)) {
+                    task.get();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            finally {
+                pool.shutdown();
+                report.enter(previous);
             }
         }
 
-        // Make edges from the product nodes to the super source node
+        // Fills in the product edges of network edges from .. to - 1
+        private void fill(int from, int to) {
+            for (int i = from; i < to; i++) {
+                int networkTail = networkEdgeStart[i];
+                int networkHead = networkEdgeEnd[i];
+                double cost = networkEdgeCost[i];
+                int label = networkEdgeLabel[i];
+                int e = firstProductEdge[i];
+                for (int q = labelOffsets[label];
+                        q < labelOffsets[label + 1]; q++) {
+                    int j = byLabel[q];
+                    productEdgeStart[e] =
+                        productNode(networkTail, dfaEdgeTail[j]);
+                    productEdgeEnd[e] =
+                        productNode(networkHead, dfaEdgeHead[j]);
+                    productEdgeCosts[e] = cost;
+                    correspondingEdgesReverse[e] = i;
+                    e++;
+                }
+            }
+        }
 
-        ArrayList<String> networkTargets = getTargets(networkSourcesTargets);
-        ArrayList<String> dfaTargets = getTargets(dfaSourcesTargets);
+        // The first network edge whose product edges start at or after the
+        // given product edge
+        private int rangeEnd(long productEdge) {
+            int i = Arrays.binarySearch(firstProductEdge, (int) productEdge);
+            if (i < 0) {
+                return -i - 1;
+            }
+            // Network edges without product edges share a first product edge
+            while (i > 0 && firstProductEdge[i - 1] == productEdge) {
+                i--;
+            }
+            return i;
+        }
+    }
 
-        ArrayList<String> productTargets = 
-            getNodeProduct(networkTargets, dfaTargets);
-        
-        for (String node: productTargets) {
-            // Get the integer ID of the node. The integer ID of the 
-            // supertarget is 1.
-            Integer id = productNodeToInt.get(node);
+    /**
+     * Indexes the network edges by node and the DFA edges by state and label
+     * for an ImplicitProduct, which gives the product nodes the same IDs as
+     * productNode().
+     */
+    private void buildImplicitProduct(NetworkRLCSP network,
+            int[] dfaEdgeTail, int[] dfaEdgeHead, int[] dfaEdgeLabel,
+            int numLabels, int[] sources, int[] targets) {
+        implicitProduct = new ImplicitProduct(network.graph(),
+            network.edgeLabel, numStates, dfaEdgeLabel.length, dfaEdgeTail,
+            dfaEdgeHead, dfaEdgeLabel, numLabels, sources, targets);
+        numProductEdges = implicitProduct.numProductEdges;
+        System.out.println("Product graph edges: " + numProductEdges +
+            " (not built)");
+    }
 
-            if (id != null) {
-           
-                productEdges[id].add(new Edge(1, .00000000000000001));
+    /**
+     * The ID of the product node of a network node (>= 2) and a DFA state.
+     */
+    public int productNode(int networkNode, int state) {
+        return 2 + (networkNode - 2) * numStates + state;
+    }
 
-                productReverseEdges[1].add(new Edge(id, .00000000000000001));
+    /**
+     * Appends the name of the product node ("node<>state"), or of the super
+     * source or target. Uses <> to delimit old and new nodes to avoid
+     * problems like TF2 and TF and nodes 1 and 21 BOTH creating compound
+     * nodes like TF21.
+     */
+    public ResultWriter appendProductName(ResultWriter output, int node)
+            throws IOException {
+        if (node < 2) {
+            return output.append(networkNames, node);
+        }
+        return output.append(networkNames, 2 + (node - 2) / numStates)
+            .append("<>").append(dfaNames, (node - 2) % numStates);
+    }
 
-                productEdgeCost.put(hash(id, 1), .00000000000000001);
+    // IDs of the product nodes of each network node with each DFA state, in
+    // that order, leaving out names that are not nodes
+    private int[] productNodes(List<String> networkNodes,
+            List<String> states) {
+        int[] nodes = new int[networkNodes.size() * states.size()];
+        int count = 0;
+        for (String networkNode : networkNodes) {
+            int node = networkNames.find(networkNode);
+            for (String state : states) {
+                int s = dfaNames.find(state);
+                if (node >= 2 && s != -1) {
+                    nodes[count++] = productNode(node, s);
+                }
             }
         }
-	}
+        return Arrays.copyOf(nodes, count);
+    }
 
     // TODO: The code below could be refactored to be generic and iterate over
     // a given file just once.
@@ -267,24 +537,25 @@ public class InputReaderRLCSP {
      * Read list of nodes specifying a generic network's source set from it's
      * corresponding source-target file.
      */
-	public ArrayList<String> getSources(File sourceTargetFile) 
-	        throws FileNotFoundException {
+	public static ArrayList<String> getSources(File sourceTargetFile) 
+	        throws IOException {
 	    ArrayList<String> sources = new ArrayList<String>();
 
-	    Scanner scanner = new Scanner(sourceTargetFile);
+	    ByteTokenizer scanner = new ByteTokenizer(sourceTargetFile);
 
 	    while (scanner.hasNext()) {
-	        String node = scanner.next();
+	        scanner.next();
 	       
 	        // Skip comment lines
-	        if (node.startsWith("#")) {
+	        if (scanner.tokenStartsWith('#')) {
 	            scanner.nextLine();
 	            continue;
 	        }
 	        else {
-	            String nodeType = scanner.next();
-	            if (nodeType.equals(SOURCE_NODETYPE_LABEL) || 
-	                nodeType.equals("receptor")) {
+	            String node = scanner.tokenString();
+	            scanner.next();
+	            if (scanner.tokenEquals(SOURCE_NODETYPE_LABEL) ||
+	                scanner.tokenEquals("receptor")) {
                     sources.add(node); 
 	            }
 	            else {
@@ -293,6 +564,7 @@ public class InputReaderRLCSP {
 	        }
 	        scanner.nextLine();
 	    }
+	    scanner.close();
 
         return sources;
 	}
@@ -301,24 +573,25 @@ public class InputReaderRLCSP {
      * Read list of nodes specifying a generic network's target set from it's
      * corresponding source-target file.
      */
-	public ArrayList<String> getTargets(File sourceTargetFile) 
-	        throws FileNotFoundException {
+	public static ArrayList<String> getTargets(File sourceTargetFile) 
+	        throws IOException {
 	    ArrayList<String> targets = new ArrayList<String>();
 
-	    Scanner scanner = new Scanner(sourceTargetFile);
+	    ByteTokenizer scanner = new ByteTokenizer(sourceTargetFile);
 
 	    while (scanner.hasNext()) {
-	        String node = scanner.next();
+	        scanner.next();
 	       
 	        // Skip comment lines
-	        if (node.startsWith("#")) {
+	        if (scanner.tokenStartsWith('#')) {
 	            scanner.nextLine();
 	            continue;
 	        }
 	        else {
-	            String nodeType = scanner.next();
-	            if (nodeType.equals(TARGET_NODETYPE_LABEL) ||
-	                nodeType.equals("tf")) {
+	            String node = scanner.tokenString();
+	            scanner.next();
+	            if (scanner.tokenEquals(TARGET_NODETYPE_LABEL) ||
+	                scanner.tokenEquals("tf")) {
                     targets.add(node); 
 	            }
 	            else {
@@ -327,93 +600,38 @@ public class InputReaderRLCSP {
 	        }
 	        scanner.nextLine();
 	    }
+	    scanner.close();
 
 	    return targets;
 	}
 
-    /** 
-     * We'll ultimately be creating two copies of the graph.
-     * This method reflects that by doubling the nodes and hashing them.
-     */
-	private void hashNodes(
-	        ArrayList<String> nodes, 
-	        HashMap<String, Integer> forwardHash, 
-	        HashMap<Integer, String> reverseHash) {
-
-        // Super source
-	    forwardHash.put(SUPER_SOURCE_NAME, 0);
-	    reverseHash.put(0, SUPER_SOURCE_NAME);
-
-        // Super target
-	    forwardHash.put(SUPER_TARGET_NAME, 1);
-	    reverseHash.put(1, SUPER_TARGET_NAME);
-
-	    int index = 2;
-
-	    for (int i = 0; i < nodes.size(); i++) {
-	        forwardHash.put(nodes.get(i), index);
-	        reverseHash.put(index, nodes.get(i));
-	        index++;
-	    }
-	}
-
-    /**
-     * Read network file.
-     * Network files are edgelists where each edge has a weight and a label.
-     */
-	public ArrayList<EdgeRLCSP<String>> getNetworkEdgeList(File network) 
-	        throws FileNotFoundException {
-
-        Scanner scanner = new Scanner(network);
-
-	    ArrayList<EdgeRLCSP<String>> edges = 
-	        new ArrayList<EdgeRLCSP<String>>(); 
-
-        while (scanner.hasNext()) {
-            String tailNode = scanner.next();
-            
-            // Skip lines that are commented out
-            if (tailNode.startsWith("#")) {
-                scanner.nextLine();
-                continue;
-            }
-            String headNode = scanner.next();
-            double weight = scanner.nextDouble();
-            String label = scanner.next();
-
-            EdgeRLCSP<String> edge = new EdgeRLCSP<String>(
-                tailNode, headNode, weight, label);
-
-            edges.add(edge);
-
-            scanner.nextLine();
-        }
-	    
-	    return edges;
-	}
-
     /**
      * Read DFA file.
      * DFA files are edgelists where each edge has a label.
      */
 	public ArrayList<EdgeRLCSP<String>> getDFAEdgeList(File dfa) 
-	        throws FileNotFoundException {
+	        throws IOException {
 	        
-	    Scanner scanner = new Scanner(dfa);
+	    ByteTokenizer scanner = new ByteTokenizer(dfa);
+	    NameInterner names = new NameInterner();
+	    ArrayList<String> strings = new ArrayList<String>();
 
 	    ArrayList<EdgeRLCSP<String>> edges = 
 	        new ArrayList<EdgeRLCSP<String>>(); 
 
         while (scanner.hasNext()) {
-            String tailNode = scanner.next();
+            scanner.next();
             
             // Skip lines that are commented out
-            if (tailNode.startsWith("#")) {
+            if (scanner.tokenStartsWith('#')) {
                 scanner.nextLine();
                 continue;
             }
-            String headNode = scanner.next();
-            String label = scanner.next();
+            String tailNode = internToken(scanner, names, strings);
+            scanner.next();
+            String headNode = internToken(scanner, names, strings);
+            scanner.next();
+            String label = internToken(scanner, names, strings);
 
             EdgeRLCSP<String> edge = new EdgeRLCSP<String>(
                 tailNode, headNode, label);
@@ -421,6 +639,7 @@ public class InputReaderRLCSP {
             edges.add(edge);
             scanner.nextLine();
         }
+        scanner.close();
 
 	    return edges;
 	}
@@ -430,54 +649,49 @@ public class InputReaderRLCSP {
      * the set of nodes in the network.
      * This algorithm expects lines to be of the form "tail \t head ..."
      */
-    public HashSet<String> getNodeList(File networkFile) 
-            throws FileNotFoundException {
+    public static HashSet<String> getNodeList(File networkFile) 
+            throws IOException {
 
         HashSet<String> nodes = new HashSet<String>();
+        NameInterner names = new NameInterner();
 
-        Scanner scanner = new Scanner(networkFile);
+        ByteTokenizer scanner = new ByteTokenizer(networkFile);
 
         while (scanner.hasNext()) {
-            String tailNode = scanner.next();
+            scanner.next();
             
             // Skip lines that are commented out
-            if (tailNode.startsWith("#")) {
+            if (scanner.tokenStartsWith('#')) {
                 scanner.nextLine();
                 continue;
             }
 
-            String headNode = scanner.next();
-            nodes.add(tailNode);
-            nodes.add(headNode);
+            // Only names that have not been seen are added, in the order
+            // they were first seen
+            int size = names.size();
+            if (names.intern(scanner.token, 0, scanner.tokenLength) == size) {
+                nodes.add(names.name(size));
+            }
+            scanner.next();
+            size = names.size();
+            if (names.intern(scanner.token, 0, scanner.tokenLength) == size) {
+                nodes.add(names.name(size));
+            }
             scanner.nextLine();
         }
+        scanner.close();
         return nodes;
     }
 
-    /**
-     * Given the nodes in the network and the nodes in the DFA, get
-     * the product of the node sets.
-     */
-    public ArrayList<String> getNodeProduct(
-            Iterable<String> networkNodes, Iterable<String> dfaNodes) {
-        
-        ArrayList<String> productNodes = new ArrayList<String>();
-
-        for (String networkNode : networkNodes) {
-            for (String dfaNode : dfaNodes) {
-                String product = networkNode + "<>" + dfaNode;
-                productNodes.add(product);
-            }
+    // Returns the String for the name in the tokenizer's current token,
+    // creating it only the first time the name is seen. strings holds the
+    // String of each name by ID.
+    private static String internToken(ByteTokenizer scanner,
+            NameInterner names, ArrayList<String> strings) {
+        int id = names.intern(scanner.token, 0, scanner.tokenLength);
+        if (id == strings.size()) {
+            strings.add(names.name(id));
         }
-
-        return productNodes;
+        return strings.get(id);
     }
-
-
-    /**
-     * Perfect hash for up to 999,999,999 million edges.
-     */
-	public static long hash(long startNode, long endNode) {
-		return startNode * 1000000000l + endNode;
-	}
 }
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Just enough JSON for the query server's requests and for the run report:
+ * parse() reads one value, and writeString() writes a string literal.
+ *
+ * Objects are read as LinkedHashMaps (keeping the order of their keys),
+ * arrays as ArrayLists, numbers as Doubles, and true, false and null as
+ * Boolean.TRUE, Boolean.FALSE and null.
+ */
+public class Json {
+    private final String text;
+    private int position;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * The value in the text, which must be nothing but that value and white
+     * space. Throws IllegalArgumentException, naming the position, if it is
+     * not valid JSON.
+     */
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpace();
+        if (json.position < text.length()) {
+            throw json.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+    /**
+     * Writes the string as a JSON string literal, escaping quotes,
+     * backslashes and control characters.
+     */
+    public static void writeString(ResultWriter out, String s)
+            throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                String hex = Integer.toHexString(c);
+                out.append("\\u").append("0000".substring(hex.length()))
+                    .append(hex);
+            }
+            else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private Object value() {
+        skipSpace();
+        if (position == text.length()) {
+            throw error("Expected a value");
+        }
+        char c = text.charAt(position);
+        if (c == '{') {
+            return object();
+        }
+        if (c == '[') {
+            return array();
+        }
+        if (c == '"') {
+            return string();
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return number();
+        }
+        if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        throw error("Unexpected character '" + c + "'");
+    }
+
+    private LinkedHashMap<String, Object> object() {
+        LinkedHashMap<String, Object> object =
+            new LinkedHashMap<String, Object>();
+        position++;
+        skipSpace();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipSpace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            String name = string();
+            skipSpace();
+            expect(':');
+            object.put(name, value());
+            skipSpace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            expect(',');
+        }
+    }
+
+    private ArrayList<Object> array() {
+        ArrayList<Object> array = new ArrayList<Object>();
+        position++;
+        skipSpace();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            skipSpace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            expect(',');
+        }
+    }
+
+    private String string() {
+        StringBuilder s = new StringBuilder();
+        position++;
+        while (true) {
+            if (position == text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return s.toString();
+            }
+            if (c != '\\') {
+                s.append(c);
+                continue;
+            }
+            if (position == text.length()) {
+                throw error("Unterminated string");
+            }
+            char escape = text.charAt(position++);
+            switch (escape) {
+                case '"': case '\\': case '/':
+                    s.append(escape);
+                    break;
+                case 'b':
+                    s.append('\b');
+                    break;
+                case 'f':
+                    s.append('\f');
+                    break;
+                case 'n':
+                    s.append('\n');
+                    break;
+                case 'r':
+                    s.append('\r');
+                    break;
+                case 't':
+                    s.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("Bad \\u escape");
+                    }
+                    try {
+                        s.append((char) Integer.parseInt(
+                            text.substring(position, position + 4), 16));
+                    }
+                    catch (NumberFormatException e) {
+                        throw error("Bad \\u escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    throw error("Bad escape '\\" + escape + "'");
+            }
+        }
+    }
+
+    private Double number() {
+        int start = position;
+        while (position < text.length() &&
+                "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position));
+        }
+        catch (NumberFormatException e) {
+            position = start;
+            throw error("Bad number");
+        }
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    // The next character, or 0 at the end of the text
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private void skipSpace() {
+        while (position < text.length() &&
+                Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " +
+            position);
+    }
+}
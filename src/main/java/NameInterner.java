@@ -0,0 +1,187 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Gives each distinct name an int ID, in the order the names are first
+ * added, looking names up by their UTF-8 bytes. Parsers can find the ID of a
+ * token straight from their read buffer.
+ *
+ * The names are only kept as bytes, once each, in one array: an ID is an
+ * index into the offsets, and a name is an open addressing hash table entry
+ * pointing at its ID. No String or boxed Integer is kept per name; name()
+ * creates a String when one is needed, and ResultWriter writes names from
+ * the bytes.
+ */
+public class NameInterner {
+    // UTF-8 bytes of all names, one after the other
+    private byte[] bytes;
+    private int bytesUsed;
+    // Name i is bytes[offsets[i] .. offsets[i + 1] - 1]
+    private int[] offsets;
+    private int[] hashes;
+    private int size;
+
+    // Open addressing hash table of ID + 1, or 0 for an empty slot
+    private int[] table;
+
+    public NameInterner() {
+        bytes = new byte[1 << 16];
+        offsets = new int[1025];
+        hashes = new int[1024];
+        table = new int[2048];
+    }
+
+    /**
+     * A separate interner with the same names and IDs, which names can be
+     * added to without adding them here.
+     */
+    public NameInterner copy() {
+        NameInterner copy = new NameInterner();
+        copy.bytes = Arrays.copyOf(bytes, bytes.length);
+        copy.bytesUsed = bytesUsed;
+        copy.offsets = Arrays.copyOf(offsets, offsets.length);
+        copy.hashes = Arrays.copyOf(hashes, hashes.length);
+        copy.size = size;
+        copy.table = Arrays.copyOf(table, table.length);
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name with the given ID, as a new String.
+     */
+    public String name(int id) {
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id],
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The length in bytes of the name with the given ID, which starts at
+     * offsets()[id] in bytes().
+     */
+    public int length(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * The UTF-8 bytes of all names, one after the other. Name i is
+     * bytes()[offsets()[i] .. offsets()[i + 1] - 1]. Not copies, so don't
+     * modify them.
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the ID of the name in b[offset .. offset + length - 1], or -1
+     * if it has not been added.
+     */
+    public int find(byte[] b, int offset, int length) {
+        int hash = hash(b, offset, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0;
+                slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && equals(id, b, offset, length)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ID of the name, or -1 if it has not been added.
+     */
+    public int find(String name) {
+        byte[] b = name.getBytes(StandardCharsets.UTF_8);
+        return find(b, 0, b.length);
+    }
+
+    /**
+     * Returns the ID of the name in b[offset .. offset + length - 1], adding
+     * it if it is new. New names get the ID size() had before the call.
+     */
+    public int intern(byte[] b, int offset, int length) {
+        int id = find(b, offset, length);
+        if (id != -1) {
+            return id;
+        }
+        return add(b, offset, length);
+    }
+
+    /**
+     * Returns the ID of the name, adding it if it is new.
+     */
+    public int intern(String name) {
+        byte[] b = name.getBytes(StandardCharsets.UTF_8);
+        return intern(b, 0, b.length);
+    }
+
+    private int add(byte[] b, int offset, int length) {
+        if (size == hashes.length) {
+            int capacity = size * 2;
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        if (bytesUsed + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes,
+                Math.max(bytes.length * 2, bytesUsed + length));
+        }
+        System.arraycopy(b, offset, bytes, bytesUsed, length);
+        bytesUsed += length;
+
+        int id = size++;
+        offsets[id + 1] = bytesUsed;
+        hashes[id] = hash(b, offset, length);
+
+        // Keep the table at most half full
+        if (size * 2 > table.length) {
+            table = new int[table.length * 2];
+            for (int i = 0; i < size; i++) {
+                insert(i);
+            }
+        }
+        else {
+            insert(id);
+        }
+        return id;
+    }
+
+    private void insert(int id) {
+        int mask = table.length - 1;
+        int slot = hashes[id] & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private boolean equals(int id, byte[] b, int offset, int length) {
+        int start = offsets[id];
+        if (offsets[id + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] != b[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] b, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + b[i];
+        }
+        // Spread the high bits down, since the table uses the low bits
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,364 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Writes synthetic inputs for scaling tests and benchmarks: a network edge
+ * list, a node-type file with sources and targets in it, and a random DFA
+ * over the network's edge labels with its node-type file. Everything comes
+ * from one seed, so the same options always write the same files.
+ *
+ * Degrees follow a power law, as in interactomes: each edge's tail and head
+ * are drawn with probability proportional to a node weight (i + 1)^(-1 /
+ * (exponent - 1)), which gives a degree distribution with that exponent
+ * (Chung-Lu). A pair that has been drawn already is drawn again, so there
+ * are no parallel edges. Weights are uniform in (0, 1].
+ *
+ * Run with:
+ * java NetworkGenerator -o prefix [-nodes N] [-edges M] [-labels L] ...
+ * which writes prefix-edges.txt and prefix-nodes.txt, and with -dfa-states,
+ * prefix-dfa.txt and prefix-dfa-nodes.txt.
+ */
+public class NetworkGenerator {
+    // Most edges whose pairs fit in the table of pairs drawn
+    private static final long MAX_EDGES = 1 << 28;
+
+    final int numNodes;
+    final long numEdges;
+    final double exponent;
+    // Number of edge labels, or 0 to write edges without labels
+    final int numLabels;
+    final long seed;
+
+    // Nodes that are the tail (head) of an edge, once the network has been
+    // written
+    private BitSet tails;
+    private BitSet heads;
+
+    public NetworkGenerator(int numNodes, long numEdges, double exponent,
+            int numLabels, long seed) {
+        if (numNodes < 2) {
+            throw new IllegalArgumentException(
+                "Need at least 2 nodes: " + numNodes);
+        }
+        if (!(exponent > 1)) {
+            throw new IllegalArgumentException(
+                "The degree exponent must be greater than 1: " + exponent);
+        }
+        if (numEdges > (long) numNodes * (numNodes - 1)) {
+            throw new IllegalArgumentException("More edges than pairs of " +
+                "nodes: " + numEdges);
+        }
+        if (numEdges > MAX_EDGES) {
+            throw new IllegalArgumentException("Too many edges: " +
+                numEdges);
+        }
+        this.numNodes = numNodes;
+        this.numEdges = numEdges;
+        this.exponent = exponent;
+        this.numLabels = numLabels;
+        this.seed = seed;
+    }
+
+    /**
+     * The name of node i.
+     */
+    public static String nodeName(int i) {
+        return "N" + i;
+    }
+
+    /**
+     * The name of label i: a .. z, then aa, ab, and so on.
+     */
+    public static String labelName(int i) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + i % 26));
+            i = i / 26 - 1;
+        } while (i >= 0);
+        return name.reverse().toString();
+    }
+
+    /**
+     * Writes the network edge list, "tail head weight [label]" per line,
+     * without self loops or parallel edges.
+     */
+    public void writeNetwork(String file) throws IOException {
+        Random random = new Random(seed);
+        double[] cumulative = cumulativeWeights();
+        tails = new BitSet(numNodes);
+        heads = new BitSet(numNodes);
+        // Open addressing hash table of the pairs drawn, as tail << 32 |
+        // head, plus 1 so that 0 is an empty slot
+        long[] pairs = new long[Integer.highestOneBit(
+            (int) Math.max(numEdges, 1)) * 4];
+
+        try (ResultWriter out = new ResultWriter(file)) {
+            out.append(numLabels > 0 ? "#Tail\tHead\tWeight\tLabel\n"
+                : "#Tail\tHead\tWeight\n");
+            for (long i = 0; i < numEdges; i++) {
+                int tail;
+                int head;
+                do {
+                    tail = sample(cumulative, random);
+                    do {
+                        head = sample(cumulative, random);
+                    } while (head == tail);
+                } while (!add(pairs, ((long) tail << 32 | head) + 1));
+                tails.set(tail);
+                heads.set(head);
+
+                out.append(nodeName(tail)).append('\t')
+                    .append(nodeName(head)).append('\t')
+                    .append(1 - random.nextDouble());
+                if (numLabels > 0) {
+                    out.append('\t')
+                        .append(labelName(random.nextInt(numLabels)));
+                }
+                out.append('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes a node-type file with the given numbers of sources (receptor)
+     * and targets (tf), drawn from the nodes with out edges and in edges of
+     * the network written by writeNetwork(). The file works for both
+     * QuickLinker and RLCSP runs.
+     */
+    public void writeNodeTypes(String file, int numSources, int numTargets)
+            throws IOException {
+        if (tails == null) {
+            throw new IllegalStateException(
+                "The network has to be written first");
+        }
+        Random random = new Random(seed + 1);
+        try (ResultWriter out = new ResultWriter(file)) {
+            out.append("#Node\tNodeType\n");
+            for (int node : pick(tails, numSources, random)) {
+                out.append(nodeName(node)).append("\treceptor\n");
+            }
+            for (int node : pick(heads, numTargets, random)) {
+                out.append(nodeName(node)).append("\ttf\n");
+            }
+        }
+    }
+
+    /**
+     * Writes a random DFA over the network's labels: states 0 .. numStates -
+     * 1, each with a transition on each label to a random state with the
+     * given probability. State 0 is the source and the last numTargets
+     * states are the targets. Each state but the last also has a transition
+     * to the next state on a random label, so every target can be reached.
+     */
+    public void writeDfa(String dfaFile, String nodeTypesFile, int numStates,
+            double density, int numTargets) throws IOException {
+        if (numLabels == 0) {
+            throw new IllegalStateException("A DFA needs edge labels");
+        }
+        Random random = new Random(seed + 2);
+        try (ResultWriter out = new ResultWriter(dfaFile)) {
+            out.append("#Tail\tHead\tLabel\n");
+            for (int state = 0; state < numStates; state++) {
+                int next = state < numStates - 1
+                    ? random.nextInt(numLabels) : -1;
+                for (int label = 0; label < numLabels; label++) {
+                    int head;
+                    if (label == next) {
+                        head = state + 1;
+                    }
+                    else if (random.nextDouble() < density) {
+                        head = random.nextInt(numStates);
+                    }
+                    else {
+                        continue;
+                    }
+                    out.append(state).append('\t').append(head).append('\t')
+                        .append(labelName(label)).append('\n');
+                }
+            }
+        }
+        try (ResultWriter out = new ResultWriter(nodeTypesFile)) {
+            out.append("#Node\tNodeType\n");
+            for (int state = 0; state < numStates; state++) {
+                String type = state >= numStates - numTargets ? "target"
+                    : state == 0 ? "source" : "none";
+                out.append(state).append('\t').append(type)
+                    .append('\n');
+            }
+        }
+    }
+
+    // Adds the key to the table, unless it is there already
+    private static boolean add(long[] table, long key) {
+        int mask = table.length - 1;
+        long hash = key * 0x9e3779b97f4a7c15L;
+        for (int slot = (int) (hash ^ (hash >>> 32)) & mask; ;
+                slot = (slot + 1) & mask) {
+            if (table[slot] == key) {
+                return false;
+            }
+            if (table[slot] == 0) {
+                table[slot] = key;
+                return true;
+            }
+        }
+    }
+
+    // Running sums of the node weights
+    private double[] cumulativeWeights() {
+        double[] cumulative = new double[numNodes];
+        double power = -1 / (exponent - 1);
+        double sum = 0;
+        for (int i = 0; i < numNodes; i++) {
+            sum += Math.pow(i + 1, power);
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    // Draws a node with probability proportional to its weight
+    private static int sample(double[] cumulative, Random random) {
+        double x = random.nextDouble() * cumulative[cumulative.length - 1];
+        int i = Arrays.binarySearch(cumulative, x);
+        // x can round up to the total
+        return Math.min(i >= 0 ? i + 1 : -i - 1, cumulative.length - 1);
+    }
+
+    // Up to count distinct nodes of the set, in random order
+    private static int[] pick(BitSet nodes, int count, Random random) {
+        int[] candidates = nodes.stream().toArray();
+        count = Math.min(count, candidates.length);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(candidates.length - i);
+            int temp = candidates[i];
+            candidates[i] = candidates[j];
+            candidates[j] = temp;
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    public static void main(String[] args)
+            throws IOException, ParseException {
+        Options options = getOptions();
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        }
+        catch (ParseException e) {
+            new HelpFormatter().printHelp("NetworkGenerator", options);
+            throw e;
+        }
+
+        String prefix = cmd.getOptionValue("out-prefix");
+        int numLabels = getInt(cmd, "labels", 0);
+        int numStates = getInt(cmd, "dfa-states", 0);
+        if (numStates > 0 && numLabels == 0) {
+            throw new ParseException("--dfa-states needs --labels");
+        }
+        NetworkGenerator generator;
+        try {
+            generator = new NetworkGenerator(getInt(cmd, "nodes", 10000),
+                getLong(cmd, "edges", 50000), getDouble(cmd, "exponent", 2.5),
+                numLabels, getLong(cmd, "seed", 0));
+        }
+        catch (IllegalArgumentException e) {
+            throw new ParseException(e.getMessage());
+        }
+
+        generator.writeNetwork(prefix + "-edges.txt");
+        generator.writeNodeTypes(prefix + "-nodes.txt",
+            getInt(cmd, "sources", 100), getInt(cmd, "targets", 100));
+
+        if (numStates > 0) {
+            generator.writeDfa(prefix + "-dfa.txt", prefix + "-dfa-nodes.txt",
+                numStates, getDouble(cmd, "dfa-density", 0.5),
+                getInt(cmd, "dfa-targets", 1));
+        }
+    }
+
+    public static Options getOptions() {
+        Options options = new Options();
+
+        Option prefix = new Option("o", "out-prefix", true,
+            "path/to/prefix for the generated files");
+        prefix.setRequired(true);
+        options.addOption(prefix);
+
+        options.addOption(new Option("nodes", true,
+            "Number of nodes. Default is 10000"));
+        options.addOption(new Option("edges", true,
+            "Number of edges. Default is 50000"));
+        options.addOption(new Option("exponent", true,
+            "Exponent of the power law degree distribution, greater than " +
+            "1. Default is 2.5"));
+        options.addOption(new Option("labels", true,
+            "Number of edge labels. Default is 0, for edges without labels"));
+        options.addOption(new Option("sources", true,
+            "Number of sources in the node-type file. Default is 100"));
+        options.addOption(new Option("targets", true,
+            "Number of targets in the node-type file. Default is 100"));
+        options.addOption(new Option("dfa-states", true,
+            "Number of DFA states. Default is 0, for no DFA"));
+        options.addOption(new Option("dfa-density", true,
+            "Probability of a DFA transition on each label from each " +
+            "state. Default is 0.5"));
+        options.addOption(new Option("dfa-targets", true,
+            "Number of DFA target states. Default is 1"));
+        options.addOption(new Option("seed", true,
+            "Random seed. Default is 0"));
+
+        return options;
+    }
+
+    private static long getLong(CommandLine cmd, String option,
+            long defaultValue) throws ParseException {
+        if (!cmd.hasOption(option)) {
+            return defaultValue;
+        }
+        String value = cmd.getOptionValue(option);
+        try {
+            long result = Long.parseLong(value);
+            if (result >= 0) {
+                return result;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("--" + option +
+            " must be a non-negative integer: " + value);
+    }
+
+    private static int getInt(CommandLine cmd, String option,
+            int defaultValue) throws ParseException {
+        long value = getLong(cmd, option, defaultValue);
+        if (value > Integer.MAX_VALUE) {
+            throw new ParseException("--" + option + " is too large: " +
+                value);
+        }
+        return (int) value;
+    }
+
+    private static double getDouble(CommandLine cmd, String option,
+            double defaultValue) throws ParseException {
+        if (!cmd.hasOption(option)) {
+            return defaultValue;
+        }
+        String value = cmd.getOptionValue(option);
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ParseException("--" + option +
+                " must be a number: " + value);
+        }
+    }
+}
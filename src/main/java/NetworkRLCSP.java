@@ -0,0 +1,138 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * A labeled network and its nodetype file, read once and shared by the
+ * InputReaderRLCSPs of any number of DFAs. It is not modified after it is
+ * read, so products with different DFAs can be built from it at the same
+ * time.
+ */
+public class NetworkRLCSP {
+    // Strings naming the super source and super target nodes
+    private static final String SUPER_SOURCE_NAME = "super source";
+    private static final String SUPER_TARGET_NAME = "super target";
+
+    // Node names by node ID. The super source is 0 and the super target 1.
+    NameInterner names;
+
+    // Start and end point, cost (-log of the weight) and label ID of each
+    // edge, by edge ID (order of file read)
+    int numEdges;
+    int[] edgeStart;
+    int[] edgeEnd;
+    double[] edgeCost;
+    int[] edgeLabel;
+
+    // Edge labels by label ID, which DFA labels are looked up in
+    NameInterner labels;
+
+    // Names of the source and target nodes, in nodetype file order
+    ArrayList<String> sources;
+    ArrayList<String> targets;
+
+    // The edges as a graph, for implicit products; built when first asked
+    // for
+    private CSRGraph graph;
+
+    public NetworkRLCSP(File network, File networkSourcesTargets)
+            throws IOException {
+        this(network, networkSourcesTargets, RunReport.NONE);
+    }
+
+    /**
+     * Same as above, timing the reading as the parse phase of the given run.
+     */
+    public NetworkRLCSP(File network, File networkSourcesTargets,
+            RunReport.Run report) throws IOException {
+        this(network, report);
+        int previous = report.enter(RunReport.PARSE);
+        sources = InputReaderRLCSP.getSources(networkSourcesTargets);
+        targets = InputReaderRLCSP.getTargets(networkSourcesTargets);
+        report.enter(previous);
+    }
+
+    /**
+     * Same as above without a nodetype file. The network has no sources or
+     * targets, and they are given to each InputReaderRLCSP instead.
+     */
+    public NetworkRLCSP(File network, RunReport.Run report)
+            throws IOException {
+        int previous = report.enter(RunReport.PARSE);
+
+        // Nodes get IDs in the iteration order of the set, after the super
+        // source and super target
+        names = new NameInterner();
+        names.intern(SUPER_SOURCE_NAME);
+        names.intern(SUPER_TARGET_NAME);
+        for (String node : InputReaderRLCSP.getNodeList(network)) {
+            names.intern(node);
+        }
+
+        readEdges(network);
+
+        sources = new ArrayList<String>();
+        targets = new ArrayList<String>();
+        report.enter(previous);
+    }
+
+    /**
+     * The network's edges as a graph, with their costs.
+     */
+    public synchronized CSRGraph graph() {
+        if (graph == null) {
+            graph = new CSRGraph(names.size(), numEdges, edgeStart, edgeEnd,
+                edgeCost);
+        }
+        return graph;
+    }
+
+    // Reads the edges: "tail head weight label" lines
+    private void readEdges(File network) throws IOException {
+        labels = new NameInterner();
+        edgeStart = new int[16];
+        edgeEnd = new int[16];
+        edgeCost = new double[16];
+        edgeLabel = new int[16];
+
+        ByteTokenizer scanner = new ByteTokenizer(network);
+        while (scanner.hasNext()) {
+            scanner.next();
+
+            // Skip lines that are commented out
+            if (scanner.tokenStartsWith('#')) {
+                scanner.nextLine();
+                continue;
+            }
+            if (numEdges == edgeStart.length) {
+                int length = numEdges * 2;
+                edgeStart = Arrays.copyOf(edgeStart, length);
+                edgeEnd = Arrays.copyOf(edgeEnd, length);
+                edgeCost = Arrays.copyOf(edgeCost, length);
+                edgeLabel = Arrays.copyOf(edgeLabel, length);
+            }
+            edgeStart[numEdges] =
+                names.find(scanner.token, 0, scanner.tokenLength);
+            scanner.next();
+            edgeEnd[numEdges] =
+                names.find(scanner.token, 0, scanner.tokenLength);
+            // Set the cost of the edge as the -log of the edge weight
+            // log is the natural log by default
+            edgeCost[numEdges] = Math.log(scanner.nextDouble()) * -1.0;
+            scanner.next();
+            edgeLabel[numEdges] =
+                labels.intern(scanner.token, 0, scanner.tokenLength);
+            numEdges++;
+
+            scanner.nextLine();
+        }
+        scanner.close();
+
+        edgeStart = Arrays.copyOf(edgeStart, numEdges);
+        edgeEnd = Arrays.copyOf(edgeEnd, numEdges);
+        edgeCost = Arrays.copyOf(edgeCost, numEdges);
+        edgeLabel = Arrays.copyOf(edgeLabel, numEdges);
+    }
+}
@@ -1,28 +1,55 @@
 import java.io.IOException;
-import java.io.PrintWriter;
 
 /**
- * Given an instance of Algorithm and an output prefix, writes the results of
- * the Algorithm after running to files.
+ * Given an output prefix, opens the files the results of an Algorithm are
+ * streamed to while it runs, and closes them afterwards.
  */
 public class OutputWriter {
-	PrintWriter EdgeWriter;
-	PrintWriter PathWriter;
-	Algorithm execute;
+	ResultWriter EdgeWriter;
+	ResultWriter PathWriter;
+	// Only written by AlgorithmRLCSP
+	ResultWriter ProjectionWriter;
 
-	public OutputWriter(Algorithm execute, String prefix) throws IOException{
-		this.execute = execute;
+	public OutputWriter(String prefix) throws IOException {
+		this(prefix, false);
+	}
 
+	public OutputWriter(String prefix, boolean projection) throws IOException {
         // TODO make an input option for choosing which files to write
-		EdgeWriter = new PrintWriter(prefix+"-ranked-edges.txt");
-		PathWriter = new PrintWriter(prefix+"-paths.txt");
-		EdgeWriter.append(execute.edgeOutput);
-		PathWriter.append(execute.pathOutput);
-	
+		EdgeWriter = new ResultWriter(prefix + "-ranked-edges.txt");
+		PathWriter = new ResultWriter(prefix + "-paths.txt");
+		if (projection) {
+			ProjectionWriter = new ResultWriter(prefix + "-projection.txt");
+		}
+	}
+
+	/**
+	 * Writes to the given writers instead of files. The projection writer
+	 * may be null.
+	 */
+	public OutputWriter(ResultWriter edges, ResultWriter paths,
+	        ResultWriter projection) {
+		EdgeWriter = edges;
+		PathWriter = paths;
+		ProjectionWriter = projection;
+	}
+
+	/**
+	 * Reports the time spent writing the files under the given run.
+	 */
+	public void setReport(RunReport.Run report) {
+		EdgeWriter.setReport(report);
+		PathWriter.setReport(report);
+		if (ProjectionWriter != null) {
+			ProjectionWriter.setReport(report);
+		}
 	}
 
-	public void printToFile(){
+	public void printToFile() throws IOException {
 		EdgeWriter.close();
 		PathWriter.close();
+		if (ProjectionWriter != null) {
+			ProjectionWriter.close();
+		}
 	}
 }
@@ -1,9 +1,13 @@
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
@@ -13,19 +17,21 @@ import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 
 public class Parser {
+    // Path cost threshold of RLCSP runs without --threshold
+    private static final int RLCSP_THRESHOLD = 1000;
+
+    // Requests a query server queues without --queue
+    private static final int SERVER_QUEUE = 16;
+    // Connections a query server keeps open without --connections
+    private static final int SERVER_CONNECTIONS = 64;
     
     String[] args;
 
+    // Timings of the phases of each run, written with --report
+    RunReport report = new RunReport(null);
+
     public Parser(String[] args) {
         this.args = args;
-        // TODO: Timing each of the following:
-        // time to read input
-        // time to run all algorithms
-        // time to run each algorithm
-        // time to write all outputs
-        // time to write each output
-        // avg time to run an algorithm
-        // avg time to write an output
     }
 
     public void parse() throws IOException, ParseException {
@@ -38,51 +44,27 @@ public class Parser {
      */
 	public void runWithParameters(CommandLine cmd) 
 			throws IOException, ParseException {
+        report = new RunReport(cmd.getOptionValue("report"));
+
+        if (cmd.hasOption("serve")) {
+            serve(cmd);
+            return;
+        }
+        checkRunParams(cmd);
 
 		// First, check to see if RLCSP is provided. If so, we do a different
 		// set of things.
         if (cmd.hasOption("rlcsp")) { 
             checkRLCSPParams(cmd);
 
-            InputReaderRLCSP input = readGraphFromParamsRLCSP(cmd);
-
-            long maxk = getKfromCommandLine(cmd);
-            
-            long threshold = 1000;
-            if (cmd.hasOption("threshold")) {
-                System.out.print(   
-                    "Not implemented: still using default of 1000");
-            }
-
-            AlgorithmRLCSP execute = new AlgorithmRLCSP(input, maxk, threshold);
-
-            if (cmd.hasOption("edgesToCompute")) {
-                System.out.println("got here");
-                System.out.println(cmd.getOptionValue("edgesToCompute"));
-                execute.run(cmd.getOptionValue("edgesToCompute")); 
+            if (cmd.hasOption("multi-run")) {
+                runRLCSPOverDFAs(cmd);
             }
             else {
-                System.out.println("got here instead");
-                execute.run("");
+                RunReport.Run run = report.run();
+                InputReaderRLCSP input = readGraphFromParamsRLCSP(cmd, run);
+                runRLCSP(input, cmd.getOptionValue("out-prefix"), cmd, run);
             }
-            
-            PrintWriter edgeWriter;
-            PrintWriter pathWriter;
-            PrintWriter projectionWriter;
-
-		    String prefix= cmd.getOptionValue("out-prefix");
-
-            edgeWriter = new PrintWriter(prefix + "-ranked-edges.txt");
-            pathWriter = new PrintWriter(prefix + "-paths.txt");
-            projectionWriter = new PrintWriter(prefix + "-projection.txt");
-
-            edgeWriter.append(execute.edgeOutput);
-            pathWriter.append(execute.pathOutput);
-            projectionWriter.append(execute.correspondingEdgeOutput);
-
-            edgeWriter.close();
-            pathWriter.close();
-            projectionWriter.close();
         }
         else {
             InputReader input = readGraphFromParams(cmd);
@@ -97,8 +79,173 @@ public class Parser {
             runAlgorithmOverSourceTargetPairs(
                 sourceTargetFiles, outputPrefixes, input, cmd);
         }
+
+        report.write();
 	}
 
+    /**
+     * Reads the network given with --network, or with --multi-run each of
+     * the networks listed in that file, and answers requests for them on
+     * the port given with --serve until the process is stopped. See
+     * QueryServer.
+     */
+    public void serve(CommandLine cmd) throws IOException, ParseException {
+        int port = getPortFromCommandLine(cmd);
+        int threads = getThreadsFromCommandLine(cmd);
+        int queueSize = getQueueFromCommandLine(cmd);
+        int maxConnections = getConnectionsFromCommandLine(cmd);
+
+        ArrayList<String> networkFiles = new ArrayList<String>();
+        if (cmd.hasOption("multi-run")) {
+            networkFiles = parseFileList(cmd.getOptionValue("network"));
+        }
+        else {
+            networkFiles.add(cmd.getOptionValue("network"));
+        }
+
+        new QueryServer(networkFiles, threads, queueSize, maxConnections)
+            .serve(port);
+    }
+
+    /**
+     * Checks for the options that every run but --serve needs.
+     */
+    public void checkRunParams(CommandLine cmd) throws ParseException {
+        List<String> missing = new ArrayList<String>();
+        if (!cmd.hasOption("nodeTypes")) {
+            missing.add("nodeTypes");
+        }
+        if (!cmd.hasOption("out-prefix")) {
+            missing.add("o");
+        }
+        if (!missing.isEmpty()) {
+            handleParseException(new MissingOptionException(missing));
+        }
+    }
+
+    /**
+     * Ranks the product edges of one RLCSP product and writes them, their
+     * paths and their projection to the network under the given prefix.
+     */
+    public void runRLCSP(InputReaderRLCSP input, String prefix,
+            CommandLine cmd, RunReport.Run run)
+            throws IOException, ParseException {
+        long maxk = getKfromCommandLine(cmd);
+        double threshold = 
+            getThresholdFromCommandLine(cmd, RLCSP_THRESHOLD);
+
+        AlgorithmRLCSP execute = new AlgorithmRLCSP(input, maxk, threshold,
+            getTreeSetFrontierFromCommandLine(cmd));
+
+        run.put("outPrefix", prefix);
+        OutputWriter output = new OutputWriter(prefix, true);
+        output.setReport(run);
+
+        if (cmd.hasOption("edgesToCompute")) {
+            execute.run(cmd.getOptionValue("edgesToCompute"), output, run);
+        }
+        else {
+            execute.run("", output, run);
+        }
+
+        output.printToFile();
+        run.finish();
+    }
+
+    /**
+     * Runs RLCSP for each DFA of a multi-run: --dfa, --dfaNodeTypes and
+     * --out-prefix are files listing a DFA, its nodetype file and the
+     * output prefix of each run, in the same order. The network and its
+     * nodetype file are only read once, and shared by the products.
+     *
+     * With --threads, up to that many products are built and ranked at
+     * once, each taking as much memory as a run of its own. Their console
+     * output is interleaved then.
+     */
+    public void runRLCSPOverDFAs(final CommandLine cmd)
+            throws IOException, ParseException {
+        ArrayList<String> dfaFiles = parseFileList(cmd.getOptionValue("dfa"));
+        ArrayList<String> dfaNodeTypeFiles =
+            parseFileList(cmd.getOptionValue("dfaNodeTypes"));
+        ArrayList<String> outputPrefixes =
+            parseFileList(cmd.getOptionValue("out-prefix"));
+        if (dfaFiles.size() != dfaNodeTypeFiles.size() ||
+                dfaFiles.size() != outputPrefixes.size()) {
+            throw new ParseException("# of DFA files, DFA nodetype files " +
+                "and output prefixes differ: DFAs: " + dfaFiles.size() +
+                " DFA nodetypes: " + dfaNodeTypeFiles.size() +
+                " Output Prefixes: " + outputPrefixes.size());
+        }
+
+        final boolean implicit = cmd.hasOption("implicitProduct");
+        int threads = getThreadsFromCommandLine(cmd);
+        int poolSize = Math.min(threads, dfaFiles.size());
+        // Threads left over join the product edges of each run
+        final int joinThreads = Math.max(1, threads / poolSize);
+
+        final NetworkRLCSP network = readNetworkRLCSP(cmd);
+
+        ExecutorService pool = null;
+        if (poolSize > 1) {
+            pool = Executors.newFixedThreadPool(poolSize);
+        }
+        ArrayList<Future<?>> runs = new ArrayList<Future<?>>();
+
+        try {
+            for (int i = 0; i < dfaFiles.size(); i++) {
+                final File dfa = new File(dfaFiles.get(i));
+                final File dfaSourcesTargets =
+                    new File(dfaNodeTypeFiles.get(i));
+                final String outPrefix = outputPrefixes.get(i);
+                final RunReport.Run run = report.run();
+
+                if (pool == null) {
+                    // Runs one at a time each report their own peak heap
+                    report.resetPeakHeap();
+                    runRLCSP(readProductRLCSP(network, dfa, dfaSourcesTargets,
+                        implicit, joinThreads, run), outPrefix, cmd, run);
+                }
+                else {
+                    runs.add(pool.submit(() -> {
+                        runRLCSP(readProductRLCSP(network, dfa,
+                            dfaSourcesTargets, implicit, joinThreads, run),
+                            outPrefix, cmd, run);
+                        return null;
+                    }));
+                }
+            }
+
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for runs", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
     /**
      * Verify that all parameters necessary for RLCSP QuickLinker have been
      * passed.
@@ -113,6 +260,9 @@ public class Parser {
             throw new ParseException("File specifying DFA sources and " +
                 "targets must be specified with --dfaNodeTypes");
 	    }
+	    if (cmd.hasOption("delta")) {
+            throw new ParseException("--delta is not supported with --rlcsp");
+	    }
 	}
 
     /**
@@ -122,25 +272,35 @@ public class Parser {
 	        throws IOException {
 		String graphFileName = cmd.getOptionValue("network");
         double edgePenalty = getEdgePenaltyFromCommandLine(cmd);
-		return readGraph(graphFileName, edgePenalty); 
+		return readGraph(graphFileName, edgePenalty,
+		    cmd.getOptionValue("snapshot")); 
 	}
 
     /**
-     * This method wraps the InputReader constructor.
-     * TODO: We can use this method for timing the read.
+     * This method wraps the InputReader constructor, reporting the read as
+     * the input of the run report. The snapshot file may be null.
      */
     public InputReader readGraph(String graphFileName, 
-            Double edgePenalty) throws IOException {
-
-        InputReader input = new InputReader(graphFileName, edgePenalty); 
+            Double edgePenalty, String snapshotFile) throws IOException {
+
+        RunReport.Run run = report.input();
+        run.put("network", graphFileName);
+        int previous = run.enter(RunReport.PARSE);
+        InputReader input = 
+            new InputReader(graphFileName, edgePenalty, snapshotFile, run); 
+        run.enter(previous);
+        run.put("nodes", input.network.numNodes);
+        run.put("edges", input.network.numEdges);
+        run.finish();
         return input;
     }
 
     /**
-     * TODO Add JavaDoc
+     * Reads the network, DFA and their nodetype files given on the command
+     * line, reporting the read under the given run.
      */
-	public InputReaderRLCSP readGraphFromParamsRLCSP(CommandLine cmd) 
-	        throws IOException {
+	public InputReaderRLCSP readGraphFromParamsRLCSP(CommandLine cmd,
+	        RunReport.Run run) throws IOException, ParseException {
 	    File network = new File(cmd.getOptionValue("network"));
 	    File networkSourcesTargets = 
 	        new File(cmd.getOptionValue("nodeTypes"));
@@ -149,26 +309,82 @@ public class Parser {
 	    File dfaSourcesTargets = 
 	        new File(cmd.getOptionValue("dfaNodeTypes"));
 
-	    InputReaderRLCSP input = new InputReaderRLCSP(network, 
-	        networkSourcesTargets, dfa, dfaSourcesTargets);
-
-	    return input;
+	    return readGraphRLCSP(network, networkSourcesTargets, dfa,
+	        dfaSourcesTargets, cmd.hasOption("implicitProduct"),
+	        getThreadsFromCommandLine(cmd), run);
 	}
 
     /**
-     * This method wraps the InputReaderRLCSP constructor. 
-     * TODO: We can use this method for timing the read.
+     * Reads the network and nodetype file given on the command line for a
+     * multi-run over DFAs, reporting the read as the input of the run
+     * report.
+     */
+    public NetworkRLCSP readNetworkRLCSP(CommandLine cmd) throws IOException {
+        String network = cmd.getOptionValue("network");
+        String networkSourcesTargets = cmd.getOptionValue("nodeTypes");
+
+        RunReport.Run run = report.input();
+        run.put("network", network);
+        run.put("nodeTypes", networkSourcesTargets);
+        NetworkRLCSP input = new NetworkRLCSP(new File(network),
+            new File(networkSourcesTargets), run);
+        run.put("nodes", input.names.size());
+        run.put("edges", input.numEdges);
+        run.finish();
+        return input;
+    }
+
+    /**
+     * Builds the product of the network with one DFA of a multi-run,
+     * reporting the DFA files and the graph sizes under the given run.
+     */
+    public InputReaderRLCSP readProductRLCSP(NetworkRLCSP network, File dfa,
+            File dfaSourcesTargets, boolean implicit, int threads,
+            RunReport.Run run) throws IOException {
+        run.put("dfa", dfa.getPath());
+        run.put("dfaNodeTypes", dfaSourcesTargets.getPath());
+
+        InputReaderRLCSP input = new InputReaderRLCSP(network, dfa,
+            dfaSourcesTargets, implicit, threads, run);
+        putProductSizes(input, implicit, run);
+        return input;
+    }
+
+    /**
+     * This method wraps the InputReaderRLCSP constructor, reporting the
+     * files read and the graph sizes under the given run. If implicit is
+     * set, the product graph is not built but searched as it is explored,
+     * and otherwise its edges are built by the given number of threads.
      */
 	public InputReaderRLCSP readGraphRLCSP(File network,
-	        File networkSourcesTargets, File dfa, File dfaSourcesTargets) 
+	        File networkSourcesTargets, File dfa, File dfaSourcesTargets,
+	        boolean implicit, int threads, RunReport.Run run)
 	        throws IOException {
 
+	        run.put("network", network.getPath());
+	        run.put("nodeTypes", networkSourcesTargets.getPath());
+	        run.put("dfa", dfa.getPath());
+	        run.put("dfaNodeTypes", dfaSourcesTargets.getPath());
+
 	        InputReaderRLCSP input = new InputReaderRLCSP(network, 
-	            networkSourcesTargets, dfa, dfaSourcesTargets);
+	            networkSourcesTargets, dfa, dfaSourcesTargets, implicit,
+	            threads, run);
 
+	        putProductSizes(input, implicit, run);
 	        return input;
 	}
 
+    // Reports the sizes of the network and of the product
+    private void putProductSizes(InputReaderRLCSP input, boolean implicit,
+            RunReport.Run run) {
+        run.put("networkNodes", input.networkNames.size());
+        run.put("networkEdges", input.networkEdgeStart.length);
+        run.put("productNodes", implicit
+            ? input.implicitProduct.numNodes
+            : input.productGraph.numNodes);
+        run.put("productEdges", input.numProductEdges);
+    }
+
     /**
      * TODO Add JavaDoc
      */
@@ -254,9 +470,7 @@ public class Parser {
         boolean verbose = true;
 
         for (int i = 0; i < stFiles.size(); i++) {
-                input.AddStartEnd(
-                    stFiles.get(i), startEndsPenalty, verbose);
-                input.RemoveStartEnd();
+                input.readTerminals(stFiles.get(i), startEndsPenalty, verbose);
         }
     }
 
@@ -264,50 +478,197 @@ public class Parser {
      * Iterate through all provided nodetype files and run the QuickLinker
      * algorithm on the network, using the sets of sources and targets
      * specified by each respective nodetype file in turn.
+     *
+     * The network is shared by the runs and never modified, so with
+     * --threads the runs go on a pool of worker threads. The nodetype files
+     * are still read in order on this thread, so the console output is the
+     * same, and each run writes its own output files.
      */
     public void runAlgorithmOverSourceTargetPairs(ArrayList<String> 
         stFiles, ArrayList<String> outputPrefixes, InputReader input,
-        CommandLine cmd) throws IOException {
+        CommandLine cmd) throws IOException, ParseException {
 
         long maxk = getKfromCommandLine(cmd);
+        double threshold = 
+            getThresholdFromCommandLine(cmd, Dijkstra.NO_BOUND);
         boolean startEndsPenalty = cmd.hasOption("start-ends-penalty"); 
+        boolean treeSetFrontier = getTreeSetFrontierFromCommandLine(cmd);
+        int threads = getThreadsFromCommandLine(cmd);
 
         boolean verbose = true;
 
-        for (int i = 0; i < stFiles.size(); i++){
-            // read the start end file
-            input.AddStartEnd(stFiles.get(i), startEndsPenalty, verbose);
-		
-            Algorithm execute = new Algorithm(input, maxk);
-
-            runAlgorithm(execute);
-    
-            writeResultToFile(execute, outputPrefixes.get(i));
+        // The network after each delta, in turn
+        final ArrayList<InputReader> updates = readDeltas(cmd, input);
 
-            // Remove the sources and targets from the graph for the next run 
-            input.RemoveStartEnd();
+        ExecutorService pool = null;
+        if (threads > 1 && stFiles.size() > 1) {
+            pool = Executors.newFixedThreadPool(
+                Math.min(threads, stFiles.size()));
         }
+        ArrayList<Future<?>> runs = new ArrayList<Future<?>>();
+
+        try {
+            // read the start end files
+            ArrayList<Terminals> terminals = new ArrayList<Terminals>();
+            ArrayList<RunReport.Run> reports = new ArrayList<RunReport.Run>();
+            ArrayList<List<RunReport.Run>> updateReports =
+                new ArrayList<List<RunReport.Run>>();
+            for (int i = 0; i < stFiles.size(); i++){
+                RunReport.Run run = report.run();
+                run.put("nodeTypes", stFiles.get(i));
+                run.put("outPrefix", outputPrefixes.get(i));
+                int previous = run.enter(RunReport.PARSE);
+                Terminals read = input.readTerminals(
+                    stFiles.get(i), startEndsPenalty, verbose);
+                run.enter(previous);
+                run.put("sources", read.starts.size());
+                run.put("targets", read.ends.size());
+                run.put("nodes", input.network.numNodes);
+                run.put("edges", input.network.numEdges);
+                terminals.add(read);
+                reports.add(run);
+
+                ArrayList<RunReport.Run> updateRuns =
+                    new ArrayList<RunReport.Run>();
+                for (int j = 0; j < updates.size(); j++) {
+                    RunReport.Run update = report.run();
+                    update.put("nodeTypes", stFiles.get(i));
+                    update.put("outPrefix",
+                        deltaPrefix(outputPrefixes.get(i), j));
+                    update.put("delta", cmd.getOptionValues("delta")[j]);
+                    updateRuns.add(update);
+                }
+                updateReports.add(updateRuns);
+            }
+
+            // Runs with the same sources (or targets) share the search from
+            // the super-source (or super-sink), so run them together
+            TreeCache trees = 
+                new TreeCache(input.network, threshold, treeSetFrontier);
+            for (int i : trees.schedule(terminals)) {
+                final Algorithm execute = new Algorithm(input,
+                    terminals.get(i), maxk, threshold, treeSetFrontier,
+                    trees);
+                final String outPrefix = outputPrefixes.get(i);
+                final RunReport.Run run = reports.get(i);
+                final List<RunReport.Run> updateRuns = updateReports.get(i);
+
+                if (pool == null) {
+                    // Runs one at a time each report their own peak heap
+                    report.resetPeakHeap();
+                    runAlgorithm(execute, outPrefix, run);
+                    updateAlgorithm(execute, outPrefix, updates, updateRuns);
+                }
+                else {
+                    runs.add(pool.submit(() -> {
+                        runAlgorithm(execute, outPrefix, run);
+                        updateAlgorithm(execute, outPrefix, updates,
+                            updateRuns);
+                        return null;
+                    }));
+                }
+            }
 
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for runs", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
     }
 
     /**
-     * Wraps instantiation and call to print of OutputWriter.
-     * TODO: Can be used to time output writing.
+     * Wraps running of the algorithm, which streams its results to the files
+     * of an OutputWriter.
      */
-    public void writeResultToFile(Algorithm alg, String outPrefix) 
+    public void runAlgorithm(Algorithm alg, String outPrefix)
             throws IOException {
+        runAlgorithm(alg, outPrefix, RunReport.NONE);
+    }
 
-        OutputWriter print = new OutputWriter(alg, outPrefix);
+    /**
+     * Same as above, timing the phases of the run under the given report.
+     */
+    public void runAlgorithm(Algorithm alg, String outPrefix,
+            RunReport.Run run) throws IOException {
+        OutputWriter print = new OutputWriter(outPrefix);
+        print.setReport(run);
+
+        alg.run(print, run);
 
         print.printToFile();
+        run.finish();
+    }
+
+    /**
+     * Ranks the edges of a run again for each of the updated networks in
+     * turn, after the run itself, writing the results under its output
+     * prefix with "-delta1", "-delta2" and so on added.
+     */
+    public void updateAlgorithm(Algorithm alg, String outPrefix,
+            List<InputReader> updates, List<RunReport.Run> runs)
+            throws IOException {
+        for (int j = 0; j < updates.size(); j++) {
+            RunReport.Run run = runs.get(j);
+            OutputWriter print = new OutputWriter(deltaPrefix(outPrefix, j));
+            print.setReport(run);
+
+            alg.update(updates.get(j), print, run);
+
+            print.printToFile();
+            run.finish();
+        }
+    }
+
+    // Output prefix of the ranking after the given delta
+    private static String deltaPrefix(String outPrefix, int delta) {
+        return outPrefix + "-delta" + (delta + 1);
     }
 
     /**
-     * Wraps running of the algorithm.
-     * TODO: Can be used to time running of the algorithm. 
+     * Reads the edge delta files given with --delta, and returns the network
+     * after each of them, each delta applied to the network of the one
+     * before. Each is reported as a run of its own.
      */
-    public void runAlgorithm(Algorithm alg) {
-        alg.run();
+    public ArrayList<InputReader> readDeltas(CommandLine cmd,
+            InputReader input) throws IOException {
+        ArrayList<InputReader> updates = new ArrayList<InputReader>();
+        if (!cmd.hasOption("delta")) {
+            return updates;
+        }
+        for (String file : cmd.getOptionValues("delta")) {
+            RunReport.Run run = report.run();
+            run.put("delta", file);
+            int previous = run.enter(RunReport.PARSE);
+            input = input.withDelta(new EdgeDelta(file));
+            run.enter(previous);
+            run.put("nodes", input.network.numNodes);
+            run.put("edges", input.network.numEdges);
+            run.put("changedEdges", input.changedEdges.length);
+            run.finish();
+            updates.add(input);
+        }
+        return updates;
     }
 
     /**
@@ -334,7 +695,7 @@ public class Parser {
     public Options getOptions() {
         Options options = new Options();
 
-        // Required
+        // Required, but for --serve, which only takes --network
         options.addOption(getNetworkOption());
         options.addOption(getNodeTypesOption());
         options.addOption(getOutPrefixOption());
@@ -345,12 +706,23 @@ public class Parser {
         options.addOption(getEdgePenaltyOption());
         options.addOption(getSourceTargetPenaltyOption());
         options.addOption(getEdgesToComputeOption());
+        options.addOption(getFrontierOption());
+        options.addOption(getSnapshotOption());
+        options.addOption(getThreadsOption());
+        options.addOption(getReportOption());
+        options.addOption(getDeltaOption());
 
         // RLCSP
         options.addOption(getRLCSPOption());
         options.addOption(getDFAOption());
         options.addOption(getDFANodeTypesOption());
         options.addOption(getThresholdOption());
+        options.addOption(getImplicitProductOption());
+
+        // Query server
+        options.addOption(getServeOption());
+        options.addOption(getQueueOption());
+        options.addOption(getConnectionsOption());
 
         return options;
     }
@@ -382,8 +754,6 @@ public class Parser {
 		Option option = new Option("nodeTypes", true, 
 		    "File specifying the nodes to use as sources and targets");
 
-		option.setRequired(true);
-
 		return option;
     }
 
@@ -394,8 +764,6 @@ public class Parser {
         Option option = new Option("o", "out-prefix", true, 
 		    "path/to/prefix for the output files");
 
-		option.setRequired(true);
-
 		return option;
     }
 
@@ -415,7 +783,8 @@ public class Parser {
     public Option getMultiRunOption() {
 		Option option = new Option("m", "multi-run", false, 
 		    "Option to read multiple start-ends file from the " +
-		    "--start-ends option");
+		    "--start-ends option, or with --rlcsp multiple DFA and DFA " +
+		    "nodetype files from --dfa and --dfaNodeTypes");
 
 		return option;
     }
@@ -465,11 +834,25 @@ public class Parser {
     }
 
     /**
-     * todo: add javadoc
+     * Option to only write the paths that cost less than a threshold.
      */
     public Option getThresholdOption() {
         Option option = new Option("threshold", true,
-            "rlcsp path score threshold.");
+            "Only write paths that cost (-log of the path score) less than " +
+            "this, stopping the searches there. Defaults to " +
+            RLCSP_THRESHOLD + " for rlcsp and to no threshold otherwise.");
+
+        return option;
+    }
+
+    /**
+     * Option to search the RLCSP product graph as it is explored instead of
+     * building all of it first.
+     */
+    public Option getImplicitProductOption() {
+        Option option = new Option("implicitProduct", false,
+            "Search the rlcsp product of the network and DFA without " +
+            "building it, so memory grows with the part that is explored");
 
         return option;
     }
@@ -496,6 +879,19 @@ public class Parser {
         return option;
      }
 
+    /**
+     * Option to choose the priority queue used as the frontier of the
+     * Dijkstra's searches, to compare their speed.
+     */
+    public Option getFrontierOption() {
+        Option option = new Option("frontier", true,
+            "Priority queue for the shortest path searches: \"" +
+            Dijkstra.HEAP_FRONTIER + "\" (default) or \"" + 
+            Dijkstra.TREESET_FRONTIER + "\"");
+
+        return option;
+    }
+
     /**
      * TODO: Add JavaDoc
      */
@@ -508,6 +904,227 @@ public class Parser {
         }
     }
 
+    /**
+     * Option to keep a binary snapshot of the parsed network, to load instead
+     * of the network file on later runs.
+     */
+    public Option getSnapshotOption() {
+        Option option = new Option("snapshot", true,
+            "Binary snapshot of the network to load instead of parsing the " +
+            "network file. Written if missing, or if the network file or " +
+            "edge penalty has changed. Not used with -rlcsp");
+
+        return option;
+    }
+
+    /**
+     * Option to run the nodetype files of a multi-run at the same time, or
+     * to build the RLCSP product graph on several threads.
+     */
+    public Option getThreadsOption() {
+        Option option = new Option("threads", true,
+            "Number of nodetype files of a --multi-run to run at the same " +
+            "time, or of threads building the rlcsp product graph. " +
+            "Default is 1");
+
+        return option;
+    }
+
+    /**
+     * Option to rank the edges again after changes to the edge weights,
+     * without searching the whole network again.
+     */
+    public Option getDeltaOption() {
+        Option option = new Option("delta", true,
+            "Edge delta file of \"tail head weight\" lines that change, " +
+            "add or (with weight 0) remove edges. After each run, its edges " +
+            "are ranked again with the changes, repairing the shortest " +
+            "paths instead of searching again, and written under the output " +
+            "prefix plus \"-delta1\". Can be given more than once, each " +
+            "delta applied after the one before. Edges of equal cost are in " +
+            "the order of a run over the network file with the changes made " +
+            "in place and added edges at the end. Not used with -rlcsp");
+
+        return option;
+    }
+
+    /**
+     * Option to write the timings of each phase of each run as JSON.
+     */
+    public Option getReportOption() {
+        Option option = new Option("report", true,
+            "Write a JSON report of the wall time, CPU time and bytes " +
+            "allocated by each phase of each run, with graph sizes and " +
+            "peak heap, to the given file");
+
+        return option;
+    }
+
+    /**
+     * Option to keep the network loaded and answer ranking requests for it
+     * over a local socket.
+     */
+    public Option getServeOption() {
+        Option option = new Option("serve", true,
+            "Read the network (or with --multi-run, each network listed in " +
+            "the --network file) once, then answer JSON ranking requests on " +
+            "this localhost port (0 for any free port) until stopped. " +
+            "--threads requests are run at a time. Requests can name any " +
+            "DFA file this process can read, so only serve users trusted " +
+            "with that");
+
+        return option;
+    }
+
+    /**
+     * Option to bound the requests a query server keeps waiting.
+     */
+    public Option getQueueOption() {
+        Option option = new Option("queue", true,
+            "Number of --serve requests that can wait for a thread; more " +
+            "are turned away. Default is " + SERVER_QUEUE);
+
+        return option;
+    }
+
+    /**
+     * Option to bound the connections a query server keeps open.
+     */
+    public Option getConnectionsOption() {
+        Option option = new Option("connections", true,
+            "Number of --serve connections that can be open at once; more " +
+            "are sent an error and closed. Default is " + SERVER_CONNECTIONS);
+
+        return option;
+    }
+
+    /**
+     * Returns the port given with --serve.
+     */
+    public int getPortFromCommandLine(CommandLine cmd)
+            throws ParseException {
+        String value = cmd.getOptionValue("serve");
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("--serve must be a port number from 0 to " +
+            "65535: " + value);
+    }
+
+    /**
+     * Returns the number of requests to queue given with --queue, or the
+     * default.
+     */
+    public int getQueueFromCommandLine(CommandLine cmd)
+            throws ParseException {
+        if (!cmd.hasOption("queue")) {
+            return SERVER_QUEUE;
+        }
+        String value = cmd.getOptionValue("queue");
+        try {
+            int queueSize = Integer.parseInt(value);
+            if (queueSize >= 1) {
+                return queueSize;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("--queue must be a positive integer: " +
+            value);
+    }
+
+    /**
+     * Returns the number of connections to allow given with --connections,
+     * or the default.
+     */
+    public int getConnectionsFromCommandLine(CommandLine cmd)
+            throws ParseException {
+        if (!cmd.hasOption("connections")) {
+            return SERVER_CONNECTIONS;
+        }
+        String value = cmd.getOptionValue("connections");
+        try {
+            int maxConnections = Integer.parseInt(value);
+            if (maxConnections >= 1) {
+                return maxConnections;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("--connections must be a positive " +
+            "integer: " + value);
+    }
+
+    /**
+     * Returns the number of worker threads given with --threads, or 1.
+     */
+    public int getThreadsFromCommandLine(CommandLine cmd) 
+            throws ParseException {
+        if (!cmd.hasOption("threads")) {
+            return 1;
+        }
+        String value = cmd.getOptionValue("threads");
+        try {
+            int threads = Integer.parseInt(value);
+            if (threads >= 1) {
+                return threads;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("--threads must be a positive integer: " +
+            value);
+    }
+
+    /**
+     * Returns the path cost threshold given with --threshold, or the given
+     * default.
+     */
+    public double getThresholdFromCommandLine(CommandLine cmd,
+            double defaultThreshold) throws ParseException {
+        if (!cmd.hasOption("threshold")) {
+            return defaultThreshold;
+        }
+        String value = cmd.getOptionValue("threshold");
+        try {
+            double threshold = Double.parseDouble(value);
+            if (!Double.isNaN(threshold)) {
+                return threshold;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("--threshold must be a number: " + value);
+    }
+
+    /**
+     * Returns true if the original TreeSet frontier was requested with
+     * --frontier, and false for the default IndexedHeap frontier.
+     */
+    public boolean getTreeSetFrontierFromCommandLine(CommandLine cmd) 
+            throws ParseException {
+        String frontier = 
+            cmd.getOptionValue("frontier", Dijkstra.HEAP_FRONTIER);
+
+        if (frontier.equals(Dijkstra.TREESET_FRONTIER)) {
+            return true;
+        }
+        else if (frontier.equals(Dijkstra.HEAP_FRONTIER)) {
+            return false;
+        }
+        throw new ParseException("Unknown frontier: " + frontier);
+    }
+
     /**
      * TODO: Add JavaDoc
      */
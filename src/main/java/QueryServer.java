@@ -0,0 +1,614 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers ranking requests over networks that are read once, for as long as
+ * it runs (QuickLinker --serve). It listens on a local TCP port, and takes
+ * one JSON object per line on each connection:
+ *
+ *   {"id": 1, "network": "edges.txt", "sources": ["P1"], "targets": ["P2"],
+ *    "k": 100, "edgePenalty": 1.5, "threshold": 10,
+ *    "dfa": "dfa.txt", "dfaNodeTypes": "dfa-nodes.txt",
+ *    "implicitProduct": true}
+ *
+ * Only the sources and targets are required; "network" can be left out if
+ * the server has one network. With a DFA, the request is an RLCSP run over
+ * the product of the network (whose edges then need labels) and the DFA;
+ * "edgePenalty" does not apply to those.
+ *
+ * Each line of the files a run would write is sent back as an object with
+ * the request's id and one of "rankedEdge", "path" or "projection", and the
+ * answer ends with {"id": 1, "done": true}, or with {"id": 1, "error":
+ * "..."}. Lines of different files can come in any order, but each file's
+ * lines are in order, and every object is on a line of its own. The lines
+ * are buffered like the files are, so they come in chunks of about 1 MB as
+ * each file's buffer fills, and the rest when the run is done.
+ *
+ * A connection's requests are answered one after the other. Requests from
+ * different connections run at the same time on a fixed number of worker
+ * threads, sharing the networks, which are never modified. A bounded number
+ * of requests wait for a worker; requests that find the queue full are
+ * answered with an error right away. Connections past the given number open
+ * at once get an error line and are closed.
+ *
+ * The server only listens on the loopback address, and trusts its clients:
+ * "dfa" and "dfaNodeTypes" are read as any file the server's user can read.
+ * Don't give users of the machine access to it that can't read those files
+ * themselves.
+ */
+public class QueryServer implements Closeable {
+    // Networks with other edge penalties kept for each network
+    private static final int PENALIZED_NETWORKS = 4;
+
+    // Networks by the file name they were read from
+    private final LinkedHashMap<String, Network> networks;
+    private final ThreadPoolExecutor workers;
+    private final int queueSize;
+    // A thread for each open connection, up to maxConnections
+    private final ThreadPoolExecutor connections;
+    private final int maxConnections;
+    // The listening socket once bound, and the connections open on it
+    private ServerSocket server;
+    private final HashSet<Socket> open = new HashSet<Socket>();
+
+    // A network as read for plain runs, its copies with other edge
+    // penalties, and, once a request needs it, as a labeled network for
+    // RLCSP runs
+    private static class Network {
+        final String file;
+        final InputReader reader;
+        final LinkedHashMap<Double, InputReader> penalized;
+        NetworkRLCSP labeled;
+
+        Network(String file) throws IOException {
+            this.file = file;
+            reader = new InputReader(file, 1);
+            // Least recently used first
+            penalized = new LinkedHashMap<Double, InputReader>(8, .75f,
+                    true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Double, InputReader> eldest) {
+                    return size() > PENALIZED_NETWORKS;
+                }
+            };
+        }
+
+        synchronized InputReader reader(double edgePenalty) {
+            if (edgePenalty == 1) {
+                return reader;
+            }
+            InputReader penalizedReader = penalized.get(edgePenalty);
+            if (penalizedReader == null) {
+                penalizedReader = reader.withEdgePenalty(edgePenalty);
+                penalized.put(edgePenalty, penalizedReader);
+            }
+            return penalizedReader;
+        }
+
+        synchronized NetworkRLCSP labeled() throws IOException {
+            if (labeled == null) {
+                labeled = new NetworkRLCSP(new File(file), RunReport.NONE);
+                System.out.println("Read labeled network: " + file);
+            }
+            return labeled;
+        }
+    }
+
+    /**
+     * Reads the given network files, to be searched by up to the given
+     * number of requests at once, with up to queueSize more waiting, from
+     * up to maxConnections connections.
+     */
+    public QueryServer(List<String> networkFiles, int threads, int queueSize,
+            int maxConnections) throws IOException {
+        networks = new LinkedHashMap<String, Network>();
+        for (String file : networkFiles) {
+            networks.put(file, new Network(file));
+            System.out.println("Read network: " + file);
+        }
+        this.queueSize = queueSize;
+        workers = new ThreadPoolExecutor(threads, threads, 0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize));
+        this.maxConnections = maxConnections;
+        connections = new ThreadPoolExecutor(0, maxConnections, 60,
+            TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), runnable -> {
+                Thread thread = new Thread(runnable, "query-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Listens on the given port of the loopback address, or on any free
+     * port if it is 0, and answers requests until it is closed.
+     */
+    public void serve(int port) throws IOException {
+        bind(port);
+        serve();
+    }
+
+    /**
+     * Starts listening on the given port of the loopback address, or on any
+     * free port if it is 0, and returns the port. Connections wait for
+     * serve() to be answered.
+     */
+    public synchronized int bind(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.out.println("Listening on " +
+            server.getInetAddress().getHostAddress() + ":" +
+            server.getLocalPort());
+        return server.getLocalPort();
+    }
+
+    /**
+     * Answers requests on the port given to bind() until the server is
+     * closed.
+     */
+    public void serve() throws IOException {
+        ServerSocket server;
+        synchronized (this) {
+            server = this.server;
+        }
+        while (true) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            }
+            catch (SocketException e) {
+                if (server.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                connections.execute(() -> connection(socket));
+            }
+            catch (RejectedExecutionException e) {
+                refuse(socket);
+            }
+        }
+    }
+
+    /**
+     * Stops listening, closes the open connections and lets the worker
+     * threads end. Requests being answered fail with the connection.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (server != null) {
+                server.close();
+            }
+            for (Socket socket : open) {
+                close(socket);
+            }
+        }
+        connections.shutdown();
+        workers.shutdown();
+    }
+
+    // Answers the requests of one connection, in order, until it is closed
+    private void connection(Socket socket) {
+        synchronized (this) {
+            if (server.isClosed()) {
+                close(socket);
+                return;
+            }
+            open.add(socket);
+        }
+        try (ResultWriter out = new ResultWriter(
+                new ConnectionChannel(socket))) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    request(line, out);
+                }
+            }
+        }
+        catch (IOException e) {
+            // The client went away; its requests are done
+        }
+        finally {
+            synchronized (this) {
+                open.remove(socket);
+            }
+            close(socket);
+        }
+    }
+
+    // Tells a connection past maxConnections why it is closed
+    private void refuse(Socket socket) {
+        try (ResultWriter out = new ResultWriter(
+                new ConnectionChannel(socket))) {
+            error(out, null, "Too many connections: " + maxConnections +
+                " are already open");
+        }
+        catch (IOException e) {
+            // The client went away already
+        }
+        finally {
+            close(socket);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Closed either way
+        }
+    }
+
+    // Runs one request on a worker, and waits for it to be answered
+    private void request(String line, final ResultWriter out)
+            throws IOException {
+        Object id = null;
+        try {
+            Object parsed = Json.parse(line);
+            if (!(parsed instanceof Map)) {
+                throw new IllegalArgumentException(
+                    "A request must be an object");
+            }
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> request = (Map<String, Object>) parsed;
+            id = request.get("id");
+            final Object requestId = id;
+            Future<?> answer = workers.submit(() -> {
+                answer(request, requestId, out);
+                return null;
+            });
+            answer.get();
+        }
+        catch (RejectedExecutionException e) {
+            error(out, id, "Too many requests: " + queueSize +
+                " are already waiting");
+        }
+        catch (IllegalArgumentException e) {
+            error(out, id, e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a request",
+                e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ConnectionLostException) {
+                // Answering failed, so the connection is gone
+                throw (ConnectionLostException) cause;
+            }
+            // The run failed, say on a file it could not read, and the
+            // connection goes on to the next request
+            error(out, id, cause instanceof IllegalArgumentException ||
+                cause instanceof IOException
+                ? cause.getMessage() : String.valueOf(cause));
+        }
+        out.flush();
+    }
+
+    // Runs the request, sending back the lines it writes
+    private void answer(Map<String, Object> request, Object id,
+            ResultWriter out) throws IOException {
+        Network network = network(request);
+        List<String> sources = names(request, "sources");
+        List<String> targets = names(request, "targets");
+        long maxk = (long) number(request, "k", Long.MAX_VALUE);
+        double edgePenalty = number(request, "edgePenalty", 1);
+        boolean rlcsp = request.get("dfa") != null;
+        double threshold = number(request, "threshold",
+            rlcsp ? 1000 : Dijkstra.NO_BOUND);
+
+        if (rlcsp) {
+            if (edgePenalty != 1) {
+                throw new IllegalArgumentException(
+                    "\"edgePenalty\" does not apply with a \"dfa\"");
+            }
+            File dfa = new File(string(request, "dfa"));
+            File dfaNodeTypes = new File(string(request, "dfaNodeTypes"));
+            boolean implicit =
+                Boolean.TRUE.equals(request.get("implicitProduct"));
+            InputReaderRLCSP product = new InputReaderRLCSP(
+                network.labeled(), sources, targets, dfa, dfaNodeTypes,
+                implicit, 1, RunReport.NONE);
+            AlgorithmRLCSP algorithm =
+                new AlgorithmRLCSP(product, maxk, threshold, false);
+            OutputWriter output = output(out, id, true);
+            try {
+                algorithm.run("", output);
+            }
+            finally {
+                // Ends the last line, so an error comes on a line of its own
+                output.printToFile();
+            }
+        }
+        else {
+            InputReader reader = network.reader(edgePenalty);
+            Terminals terminals = reader.terminals(sources, targets);
+            if (terminals.starts.isEmpty() || terminals.ends.isEmpty()) {
+                throw new IllegalArgumentException("No " +
+                    (terminals.starts.isEmpty() ? "sources" : "targets") +
+                    " are in the network");
+            }
+            Algorithm algorithm = new Algorithm(reader, terminals, maxk,
+                threshold, false, null);
+            OutputWriter output = output(out, id, false);
+            try {
+                algorithm.run(output);
+            }
+            finally {
+                output.printToFile();
+            }
+        }
+
+        out.append("{\"id\": ");
+        appendId(out, id);
+        out.append(", \"done\": true}\n");
+    }
+
+    // Writers that send each line written to them to out, as a member of
+    // an object with the request's id
+    private static OutputWriter output(ResultWriter out, Object id,
+            boolean projection) {
+        return new OutputWriter(
+            new ResultWriter(new LineChannel(out, id, "rankedEdge")),
+            new ResultWriter(new LineChannel(out, id, "path")),
+            projection
+                ? new ResultWriter(new LineChannel(out, id, "projection"))
+                : null);
+    }
+
+    /**
+     * Channel that sends each line written to it as a JSON string, in an
+     * object with the request's id, to the connection's writer. A line is
+     * kept until its newline comes, so that it goes to the connection in
+     * one piece even when the writer in front of this one flushes in the
+     * middle of it. Closing it sends the last line if it did not end in a
+     * newline, and leaves the connection open.
+     */
+    private static class LineChannel implements WritableByteChannel {
+        private final ResultWriter out;
+        private final Object id;
+        private final String name;
+        // The line started and not ended yet
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private boolean open = true;
+
+        LineChannel(ResultWriter out, Object id, String name) {
+            this.out = out;
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int length = source.remaining();
+            byte[] bytes = source.array();
+            int end = source.arrayOffset() + source.limit();
+            int run = source.arrayOffset() + source.position();
+            for (int i = run; i < end; i++) {
+                if (bytes[i] == '\n') {
+                    keep(bytes, run, i - run);
+                    sendLine();
+                    run = i + 1;
+                }
+            }
+            keep(bytes, run, end - run);
+            source.position(source.limit());
+            // Sends the lines this chunk ended on their way
+            out.flush();
+            return length;
+        }
+
+        private void keep(byte[] bytes, int offset, int length) {
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line,
+                    Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(bytes, offset, line, lineLength, length);
+            lineLength += length;
+        }
+
+        // Writes the kept line to out as one object, escaped as a string
+        private void sendLine() throws IOException {
+            out.append("{\"id\": ");
+            appendId(out, id);
+            out.append(", \"").append(name).append("\": \"");
+            int run = 0;
+            for (int i = 0; i < lineLength; i++) {
+                byte b = line[i];
+                if (b != '"' && b != '\\' && (b & 0xff) >= 0x20) {
+                    continue;
+                }
+                out.append(line, run, i - run);
+                run = i + 1;
+                if (b == '\t') {
+                    out.append("\\t");
+                }
+                else if (b == '"' || b == '\\') {
+                    out.append('\\').append((char) b);
+                }
+                else {
+                    String hex = Integer.toHexString(b);
+                    out.append("\\u").append("0000".substring(hex.length()))
+                        .append(hex);
+                }
+            }
+            out.append(line, run, lineLength - run);
+            out.append("\"}\n");
+            lineLength = 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (lineLength > 0) {
+                sendLine();
+            }
+            open = false;
+        }
+    }
+
+    /**
+     * Channel to a connection's socket. Writing to it fails with a
+     * ConnectionLostException, so that the server can tell a connection
+     * that is gone from a run that failed to read its files.
+     */
+    private static class ConnectionChannel implements WritableByteChannel {
+        private final WritableByteChannel channel;
+
+        ConnectionChannel(Socket socket) throws IOException {
+            channel = Channels.newChannel(socket.getOutputStream());
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            try {
+                return channel.write(source);
+            }
+            catch (IOException e) {
+                throw new ConnectionLostException(e);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new ConnectionLostException(e);
+            }
+        }
+    }
+
+    private static class ConnectionLostException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ConnectionLostException(IOException cause) {
+            super("The connection was lost", cause);
+        }
+    }
+
+    private static void error(ResultWriter out, Object id, String message)
+            throws IOException {
+        out.append("{\"id\": ");
+        appendId(out, id);
+        out.append(", \"error\": ");
+        Json.writeString(out, message);
+        out.append("}\n");
+    }
+
+    // Writes the id as it was given: a string, a number or null
+    private static void appendId(ResultWriter out, Object id)
+            throws IOException {
+        if (id instanceof String) {
+            Json.writeString(out, (String) id);
+        }
+        else if (id instanceof Double && (Double) id == Math.rint((Double) id)
+                && Math.abs((Double) id) < 1e15) {
+            out.append(((Double) id).longValue());
+        }
+        else if (id instanceof Double || id instanceof Boolean) {
+            out.append(String.valueOf(id));
+        }
+        else {
+            out.append("null");
+        }
+    }
+
+    private Network network(Map<String, Object> request) {
+        Object name = request.get("network");
+        if (name == null) {
+            if (networks.size() != 1) {
+                throw new IllegalArgumentException("\"network\" must be one " +
+                    "of " + networks.keySet());
+            }
+            return networks.values().iterator().next();
+        }
+        Network network = networks.get(name);
+        if (network == null) {
+            throw new IllegalArgumentException("Unknown network: " + name +
+                "; the networks are " + networks.keySet());
+        }
+        return network;
+    }
+
+    private static List<String> names(Map<String, Object> request,
+            String key) {
+        Object value = request.get(key);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("\"" + key +
+                "\" must be a list of node names");
+        }
+        ArrayList<String> names = new ArrayList<String>();
+        for (Object name : (List<?>) value) {
+            if (!(name instanceof String)) {
+                throw new IllegalArgumentException("\"" + key +
+                    "\" must be a list of node names");
+            }
+            names.add((String) name);
+        }
+        return names;
+    }
+
+    private static double number(Map<String, Object> request, String key,
+            double defaultValue) {
+        Object value = request.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Double)) {
+            throw new IllegalArgumentException("\"" + key +
+                "\" must be a number");
+        }
+        return (Double) value;
+    }
+
+    private static String string(Map<String, Object> request, String key) {
+        Object value = request.get(key);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("\"" + key +
+                "\" must be a file name");
+        }
+        return (String) value;
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered writer of result lines to a channel (a file, or anything else that
+ * takes bytes). Results are written as they are ranked instead of being
+ * collected in a StringBuilder first, and numbers are formatted straight into
+ * the buffer, so writing a line does not create any Strings. Node names are
+ * copied from the bytes of a NameInterner.
+ *
+ * Text is written as UTF-8.
+ */
+public class ResultWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Longest number written: a double, or "-9223372036854775808"
+    private static final int MAX_NUMBER_LENGTH = 32;
+
+    private final WritableByteChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer wrapped;
+    private int position;
+    // Writing to the channel is timed as the write phase of this run
+    private RunReport.Run report = RunReport.NONE;
+
+    /**
+     * Creates (or truncates) the given file and writes to it.
+     */
+    public ResultWriter(String fileName) throws IOException {
+        this(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public ResultWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer = new byte[BUFFER_SIZE];
+        wrapped = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Reports the time spent writing to the channel under the given run.
+     */
+    public void setReport(RunReport.Run report) {
+        this.report = report;
+    }
+
+    public ResultWriter append(char c) throws IOException {
+        if (c < 0x80) {
+            ensureRoom(1);
+            buffer[position++] = (byte) c;
+            return this;
+        }
+        return append(String.valueOf(c));
+    }
+
+    /**
+     * Appends the string, or "null" as StringBuilder does.
+     */
+    public ResultWriter append(String s) throws IOException {
+        if (s == null) {
+            s = "null";
+        }
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                ensureRoom(1);
+                buffer[position++] = (byte) c;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(s.charAt(i + 1))) {
+                appendCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            }
+            else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates can't be encoded
+                ensureRoom(1);
+                buffer[position++] = '?';
+            }
+            else {
+                appendCodePoint(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the name with the given ID, copying its UTF-8 bytes from the
+     * NameInterner.
+     */
+    public ResultWriter append(NameInterner names, int id)
+            throws IOException {
+        return append(names.bytes(), names.offsets()[id], names.length(id));
+    }
+
+    public ResultWriter append(byte[] bytes, int offset, int length)
+            throws IOException {
+        if (length > buffer.length - position) {
+            flush();
+            if (length > buffer.length) {
+                // Too long to buffer, so write it straight out
+                write(ByteBuffer.wrap(bytes, offset, length));
+                return this;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+        return this;
+    }
+
+    public ResultWriter append(long value) throws IOException {
+        ensureRoom(MAX_NUMBER_LENGTH);
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        // Digits are written from the end
+        int end = position + digitCount(value);
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+        return this;
+    }
+
+    /**
+     * Appends the value the way Double.toString writes it.
+     */
+    public ResultWriter append(double value) throws IOException {
+        ensureRoom(MAX_NUMBER_LENGTH);
+        position = DoubleFormatter.format(value, buffer, position);
+        return this;
+    }
+
+    /**
+     * Writes everything appended so far to the channel.
+     */
+    public void flush() throws IOException {
+        wrapped.clear().limit(position);
+        write(wrapped);
+        position = 0;
+    }
+
+    /**
+     * Flushes, and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        int previous = report.enter(RunReport.WRITE);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        finally {
+            report.enter(previous);
+        }
+    }
+
+    private void appendCodePoint(int codePoint) throws IOException {
+        ensureRoom(4);
+        if (codePoint < 0x800) {
+            buffer[position++] = (byte) (0xc0 | (codePoint >> 6));
+        }
+        else if (codePoint < 0x10000) {
+            buffer[position++] = (byte) (0xe0 | (codePoint >> 12));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        }
+        else {
+            buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        }
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+
+    private void ensureRoom(int length) throws IOException {
+        if (position + length > buffer.length) {
+            flush();
+        }
+    }
+
+    // Number of decimal digits of a non-negative value
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-phase timings of a QuickLinker invocation, written as JSON with
+ * --report. Each phase (parse, adjacency build, forward search, reverse
+ * search, ranking, path materialization, write) gets its wall time, the CPU
+ * time of the threads that ran it and the bytes they allocated. The network
+ * read is reported once as the "input", and each nodetype file of a
+ * multi-run, or the RLCSP run, as one of the "runs", with its graph sizes and
+ * the peak heap when it finished.
+ *
+ * A thread is in one phase of a Run at a time, switched with Run.enter(), and
+ * what it uses goes to that phase. The two searches run on two threads at
+ * once, so the wall times of a run's phases can add up to more than the run
+ * took. With --threads, runs overlap and their peak heaps are the peak of
+ * the whole process up to then.
+ *
+ * Entering a phase reads the thread's CPU time, which takes a fraction of a
+ * microsecond, so phases entered once per item, like the writing of each
+ * path, are timed with a Run.Stopwatch instead, and charged to their phase
+ * once per run. Those phases only get wall time; their CPU time and
+ * allocations stay with the phase they are charged from, so path
+ * materialization's are counted in ranking.
+ */
+public class RunReport {
+    public static final int PARSE = 0;
+    public static final int ADJACENCY = 1;
+    public static final int FORWARD_SEARCH = 2;
+    public static final int REVERSE_SEARCH = 3;
+    public static final int RANKING = 4;
+    public static final int PATHS = 5;
+    public static final int WRITE = 6;
+    // Not in any phase
+    public static final int NO_PHASE = -1;
+
+    // Names of the phases, by phase number
+    private static final String[] PHASES = {"parse", "adjacency build",
+        "forward search", "reverse search", "ranking",
+        "path materialization", "write"};
+
+    // What is measured of each phase: wall time, CPU time, bytes allocated,
+    // and times entered
+    private static final int MEASURES = 4;
+
+    /**
+     * A Run that reports nothing, for code run without --report.
+     */
+    public static final Run NONE = new Run(false);
+
+    private static final ThreadMXBean THREADS =
+        ManagementFactory.getThreadMXBean();
+
+    // File the report is written to, or null if there is no report
+    private final String file;
+    private final long startTime;
+    private Run input;
+    private final ArrayList<Run> runs;
+
+    /**
+     * A report to write to the given file, or one that records nothing if
+     * the file is null.
+     */
+    public RunReport(String file) {
+        this.file = file;
+        startTime = System.nanoTime();
+        runs = new ArrayList<Run>();
+    }
+
+    /**
+     * The Run that reading the network is reported under, or NONE.
+     */
+    public synchronized Run input() {
+        if (file == null) {
+            return NONE;
+        }
+        if (input == null) {
+            input = new Run(true);
+        }
+        return input;
+    }
+
+    /**
+     * Adds a run, reported in the order they were added, or returns NONE.
+     */
+    public synchronized Run run() {
+        if (file == null) {
+            return NONE;
+        }
+        Run run = new Run(true);
+        runs.add(run);
+        return run;
+    }
+
+    /**
+     * Clears the peak heap, so the next Run to finish reports its own. Only
+     * meaningful while runs are not overlapping.
+     */
+    public void resetPeakHeap() {
+        if (file == null) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Writes the report, if there is one.
+     */
+    public synchronized void write() throws IOException {
+        if (file == null) {
+            return;
+        }
+        long[][] totals = new long[PHASES.length][MEASURES];
+        long peakHeap = peakHeap();
+        for (Run run : runs) {
+            peakHeap = Math.max(peakHeap, run.peakHeap);
+            long[][] times = run.times();
+            for (int i = 0; i < PHASES.length; i++) {
+                for (int j = 0; j < MEASURES; j++) {
+                    totals[i][j] += times[i][j];
+                }
+            }
+        }
+
+        try (ResultWriter out = new ResultWriter(file)) {
+            out.append("{\n  \"wallNanos\": ")
+                .append(System.nanoTime() - startTime)
+                .append(",\n  \"peakHeapBytes\": ").append(peakHeap);
+            if (input != null) {
+                out.append(",\n  \"input\": ");
+                input.write(out, "  ");
+            }
+            out.append(",\n  \"runCount\": ").append((long) runs.size())
+                .append(",\n  \"runTotals\": ");
+            writePhases(out, totals, "  ");
+            out.append(",\n  \"runs\": [");
+            for (int i = 0; i < runs.size(); i++) {
+                out.append(i == 0 ? "\n    " : ",\n    ");
+                runs.get(i).write(out, "    ");
+            }
+            out.append(runs.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        }
+    }
+
+    /**
+     * The timings and sizes of reading the network or of one run.
+     */
+    public static class Run {
+        private final boolean enabled;
+        // The clock of each thread that has entered a phase of the run
+        private final ArrayList<Clock> clocks;
+        private final ThreadLocal<Clock> clock;
+        // Graph sizes and file names, in the order they were put
+        private final LinkedHashMap<String, Object> fields;
+        private long peakHeap;
+
+        // The phase a thread is in, what the thread had used when it entered
+        // it, and what the thread has used in each phase. Only the thread
+        // itself changes it, so entering a phase takes no lock.
+        private static class Clock {
+            int phase = NO_PHASE;
+            long wallTime;
+            long cpuTime;
+            long allocated;
+            final long[][] times = new long[PHASES.length][MEASURES];
+        }
+
+        private Run(boolean enabled) {
+            this.enabled = enabled;
+            clocks = new ArrayList<Clock>();
+            clock = ThreadLocal.withInitial(() -> {
+                Clock clock = new Clock();
+                synchronized (clocks) {
+                    clocks.add(clock);
+                }
+                return clock;
+            });
+            fields = new LinkedHashMap<String, Object>();
+        }
+
+        /**
+         * Switches this thread to the given phase, or out of any phase if it
+         * is NO_PHASE, and returns the phase it was in.
+         */
+        public int enter(int phase) {
+            if (!enabled) {
+                return NO_PHASE;
+            }
+            long wallTime = System.nanoTime();
+            long cpuTime = cpuTime();
+            long allocated = allocatedBytes();
+            Clock clock = this.clock.get();
+            int previous = clock.phase;
+            if (previous != NO_PHASE) {
+                long[] times = clock.times[previous];
+                times[0] += wallTime - clock.wallTime;
+                times[1] += cpuTime - clock.cpuTime;
+                times[2] += allocated - clock.allocated;
+            }
+            if (phase != NO_PHASE) {
+                clock.times[phase][3]++;
+            }
+            clock.phase = phase;
+            clock.wallTime = wallTime;
+            clock.cpuTime = cpuTime;
+            clock.allocated = allocated;
+            return previous;
+        }
+
+        /**
+         * Returns a Stopwatch for timing the given phase on this thread.
+         */
+        public Stopwatch stopwatch(int phase) {
+            return new Stopwatch(phase);
+        }
+
+        /**
+         * Times a phase that is entered too often to switch to it each time
+         * (see above), on the thread that made it. Each start() and stop()
+         * reads System.nanoTime() only, and charge() moves the time between
+         * them from the thread's phase to the Stopwatch's. Time spent in
+         * phases entered in between, like writes, stays with those.
+         */
+        public class Stopwatch {
+            private final int phase;
+            // Null when the run is not reported
+            private final Clock clock;
+            private long started;
+            private long startedElsewhere;
+            private long wallNanos;
+            private long count;
+
+            private Stopwatch(int phase) {
+                this.phase = phase;
+                clock = enabled ? Run.this.clock.get() : null;
+            }
+
+            public void start() {
+                if (clock != null) {
+                    started = System.nanoTime();
+                    startedElsewhere = elsewhere();
+                }
+            }
+
+            public void stop() {
+                if (clock != null) {
+                    wallNanos += System.nanoTime() - started -
+                        (elsewhere() - startedElsewhere);
+                    count++;
+                }
+            }
+
+            /**
+             * Moves the time measured so far to the Stopwatch's phase, as if
+             * it had been entered once for each start().
+             */
+            public void charge() {
+                if (clock == null) {
+                    return;
+                }
+                if (clock.phase != NO_PHASE) {
+                    clock.times[clock.phase][0] -= wallNanos;
+                }
+                clock.times[phase][0] += wallNanos;
+                clock.times[phase][3] += count;
+                wallNanos = 0;
+                count = 0;
+            }
+
+            // Wall time the thread has spent in the other phases
+            private long elsewhere() {
+                long total = 0;
+                for (int i = 0; i < PHASES.length; i++) {
+                    if (i != clock.phase) {
+                        total += clock.times[i][0];
+                    }
+                }
+                return total;
+            }
+        }
+
+        /**
+         * Runs the code in the given phase (or in none), and returns to the
+         * phase this thread was in.
+         */
+        public <T> T time(int phase, Supplier<T> code) {
+            int previous = enter(phase);
+            try {
+                return code.get();
+            }
+            finally {
+                enter(previous);
+            }
+        }
+
+        /**
+         * Adds a size or name to the report of the run.
+         */
+        public void put(String name, Object value) {
+            if (enabled) {
+                synchronized (fields) {
+                    fields.put(name, value);
+                }
+            }
+        }
+
+        /**
+         * Takes this thread out of its phase and records the peak heap.
+         */
+        public void finish() {
+            if (enabled) {
+                enter(NO_PHASE);
+                peakHeap = peakHeap();
+            }
+        }
+
+        // What the threads have used in each phase, once they are done
+        private long[][] times() {
+            long[][] total = new long[PHASES.length][MEASURES];
+            synchronized (clocks) {
+                for (Clock clock : clocks) {
+                    for (int i = 0; i < PHASES.length; i++) {
+                        for (int j = 0; j < MEASURES; j++) {
+                            total[i][j] += clock.times[i][j];
+                        }
+                    }
+                }
+            }
+            return total;
+        }
+
+        private void write(ResultWriter out, String indent)
+                throws IOException {
+            out.append('{');
+            synchronized (fields) {
+                for (Map.Entry<String, Object> field : fields.entrySet()) {
+                    out.append('\n').append(indent).append("  ");
+                    Json.writeString(out, field.getKey());
+                    out.append(": ");
+                    if (field.getValue() instanceof Number) {
+                        out.append(((Number) field.getValue()).longValue());
+                    }
+                    else {
+                        Json.writeString(out, String.valueOf(field.getValue()));
+                    }
+                    out.append(',');
+                }
+            }
+            out.append('\n').append(indent).append("  \"peakHeapBytes\": ")
+                .append(peakHeap).append(",\n").append(indent)
+                .append("  \"phases\": ");
+            writePhases(out, times(), indent + "  ");
+            out.append('\n').append(indent).append('}');
+        }
+    }
+
+    // The phases that were entered, by name, as an object
+    private static void writePhases(ResultWriter out, long[][] phases,
+            String indent) throws IOException {
+        out.append('{');
+        boolean first = true;
+        for (int i = 0; i < PHASES.length; i++) {
+            long[] times = phases[i];
+            if (times[3] == 0) {
+                continue;
+            }
+            out.append(first ? "\n" : ",\n").append(indent).append("  ");
+            Json.writeString(out, PHASES[i]);
+            out.append(": {\"wallNanos\": ").append(times[0])
+                .append(", \"cpuNanos\": ").append(times[1])
+                .append(", \"allocatedBytes\": ").append(times[2])
+                .append(", \"count\": ").append(times[3]).append('}');
+            first = false;
+        }
+        out.append(first ? "}" : "\n" + indent + "}");
+    }
+
+    // CPU time of this thread, or 0 if the JVM can't tell
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+            ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    // Bytes allocated by this thread, or 0 if the JVM can't tell
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() &&
+                    threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    // Highest heap use since the peaks were last reset
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
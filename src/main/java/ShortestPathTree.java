@@ -0,0 +1,23 @@
+/**
+ * Result of one Dijkstra's search: the shortest distance from the start node
+ * to every node, and the shortest path tree in symbolic form.
+ */
+public class ShortestPathTree {
+    // Shortest distance from the start to each node. Unreachable nodes have a
+    // distance of Dijkstra.INF.
+    double[] dist;
+
+    // Previous node on the shortest path from the start to each node: -1 for
+    // the start itself and -3 for nodes that cannot be reached.
+    int[] path;
+
+    // ID of the edge from the previous node to each node, for nodes that have
+    // a previous node
+    int[] pathEdge;
+
+    public ShortestPathTree(double[] dist, int[] path, int[] pathEdge) {
+        this.dist = dist;
+        this.path = path;
+        this.pathEdge = pathEdge;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The super-source and super-target edges of one start/end file, kept apart
+ * from the network they connect to. The network is never modified, so runs
+ * with different start/end files can share it, each with its own Terminals
+ * searched as an overlay (see Dijkstra.search).
+ *
+ * Terminal edges have edge IDs after the network's that depend only on the
+ * node they connect: network.numEdges + s for the edge from the super-source
+ * to source s, and network.numEdges + network.numNodes + t for the edge from
+ * target t to the super-target. So a shortest path tree searched with one
+ * file's edges names them the same way as in a run for any other file with
+ * the same sources (or targets), and can be reused there (see TreeCache).
+ */
+public class Terminals {
+    // Terminal edges, as a graph on the same nodes as the network
+    final CSRGraph edges;
+    // Edge ID of each terminal edge
+    final int[] edgeIds;
+
+    // The sources and targets that were in the network (node IDs)
+    final ArrayList<Integer> starts;
+    final ArrayList<Integer> ends;
+
+    // The source edges and the target edges, as canonical strings: each
+    // source (or target) in node ID order with its lowest edge cost. Files
+    // with equal keys give equal searches from the super-source (or from the
+    // super-target).
+    final String sourceKey;
+    final String targetKey;
+
+    public Terminals(CSRGraph network, CSRGraph edges, int[] edgeIds,
+            ArrayList<Integer> starts, ArrayList<Integer> ends) {
+        this.edges = edges;
+        this.edgeIds = edgeIds;
+        this.starts = starts;
+        this.ends = ends;
+
+        Integer[] order = new Integer[edges.numEdges];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator
+            .<Integer>comparingInt(i -> edgeIds[i])
+            .thenComparingDouble(i -> edges.edgeCost[i]));
+
+        int firstTarget = targetEdgeId(network, 0);
+        StringBuilder sources = new StringBuilder();
+        StringBuilder targets = new StringBuilder();
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k];
+            // Only the cheapest of parallel edges is ever on a shortest path
+            if (k > 0 && edgeIds[order[k - 1]] == edgeIds[i]) {
+                continue;
+            }
+            StringBuilder key = edgeIds[i] < firstTarget ? sources : targets;
+            key.append(edgeIds[i]).append(':')
+                .append(Long.toHexString(
+                    Double.doubleToLongBits(edges.edgeCost[i])))
+                .append(' ');
+        }
+        sourceKey = sources.toString();
+        targetKey = targets.toString();
+    }
+
+    /**
+     * The same terminal edges for a network that has had nodes or edges
+     * added to the end of this one's (see InputReader.withDelta), with edge
+     * IDs after its edges.
+     */
+    public Terminals on(CSRGraph network) {
+        CSRGraph moved = new CSRGraph(network.numNodes, edges.numEdges,
+            edges.edgeStart, edges.edgeEnd, edges.edgeCost);
+        int[] movedIds = new int[edges.numEdges];
+        for (int i = 0; i < edges.numEdges; i++) {
+            // Source edges start at the super-source, 0
+            movedIds[i] = edges.edgeStart[i] == 0
+                ? sourceEdgeId(network, edges.edgeEnd[i])
+                : targetEdgeId(network, edges.edgeStart[i]);
+        }
+        return new Terminals(network, moved, movedIds, starts, ends);
+    }
+
+    /**
+     * The edge ID of the edge from the super-source to the source node.
+     */
+    public static int sourceEdgeId(CSRGraph network, int node) {
+        return network.numEdges + node;
+    }
+
+    /**
+     * The edge ID of the edge from the target node to the super-target.
+     */
+    public static int targetEdgeId(CSRGraph network, int node) {
+        return network.numEdges + network.numNodes + node;
+    }
+}
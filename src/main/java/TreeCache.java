@@ -0,0 +1,216 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shortest path trees shared by the runs of a multi-run over one network.
+ * The tree from the super-source only depends on the network and the source
+ * edges, so it is keyed by the Terminals' sourceKey, and the tree from the
+ * super-sink by the targetKey. A batch with S distinct source sets and T
+ * distinct target sets then does S + T searches instead of two per run.
+ *
+ * That holds as long as the network has no edges out of the super-sink or
+ * into the super-source (nodes named "tf" or "receptor" in the network file).
+ * Otherwise the target edges can change the tree from the super-source away
+ * from the super-sink too, and the other way around, so the keys of both
+ * directions use all of the terminal edges.
+ *
+ * Each tree is searched once, by the first run that needs it; runs that need
+ * it while it is being searched wait for it. The runs a tree will be used by
+ * are counted up front by schedule(), and it is dropped after the last of
+ * them.
+ */
+public class TreeCache {
+    private final CSRGraph network;
+    private final boolean treeSetFrontier;
+    // Distance the searches stop at, the same for every run
+    private final double bound;
+    // Whether each direction's tree depends on the other direction's edges
+    private final boolean forwardUsesTargets;
+    private final boolean backwardUsesSources;
+
+    private final HashMap<String, Entry> entries;
+
+    private static class Entry {
+        // Created by the first run that asks for the tree
+        FutureTask<ShortestPathTree> search;
+        // Runs that have yet to take the tree
+        int uses;
+    }
+
+    public TreeCache(CSRGraph network, boolean treeSetFrontier) {
+        this(network, Dijkstra.NO_BOUND, treeSetFrontier);
+    }
+
+    /**
+     * Same as above, with searches that stop at the given distance bound,
+     * as in Dijkstra.search().
+     */
+    public TreeCache(CSRGraph network, double bound,
+            boolean treeSetFrontier) {
+        this.network = network;
+        this.bound = bound;
+        this.treeSetFrontier = treeSetFrontier;
+        // super-source = 0, super-sink = 1
+        forwardUsesTargets = network.offsets[2] != network.offsets[1];
+        backwardUsesSources =
+            network.reverse.offsets[1] != network.reverse.offsets[0];
+        entries = new HashMap<String, Entry>();
+    }
+
+    /**
+     * Returns the order to run the given runs in, as indices into the list,
+     * and counts the uses of their trees. Runs that share a tree in the
+     * direction with more distinct trees are put next to each other, so only
+     * one of those is kept at a time; the trees of the other direction are
+     * kept from their first run to their last.
+     */
+    public int[] schedule(List<Terminals> runs) {
+        final String[] forwardKeys = new String[runs.size()];
+        final String[] backwardKeys = new String[runs.size()];
+        HashSet<String> distinctForward = new HashSet<String>();
+        HashSet<String> distinctBackward = new HashSet<String>();
+        for (int i = 0; i < runs.size(); i++) {
+            forwardKeys[i] = forwardKey(runs.get(i));
+            backwardKeys[i] = backwardKey(runs.get(i));
+            distinctForward.add(forwardKeys[i]);
+            distinctBackward.add(backwardKeys[i]);
+            expect(forwardKeys[i]);
+            expect(backwardKeys[i]);
+        }
+
+        final String[] outer;
+        final String[] inner;
+        if (distinctForward.size() >= distinctBackward.size()) {
+            outer = forwardKeys;
+            inner = backwardKeys;
+        }
+        else {
+            outer = backwardKeys;
+            inner = forwardKeys;
+        }
+        Integer[] order = new Integer[runs.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Sorting is stable, so runs with the same keys keep the file order
+        Arrays.sort(order, Comparator
+            .<Integer, String>comparing(i -> outer[i])
+            .thenComparing(i -> inner[i]));
+
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the trees from the super-source and from the super-sink for
+     * the given Terminals, searching the ones that are not cached. If both
+     * are searched here, they are searched concurrently, as in
+     * Dijkstra.searchBothWays. A search is timed under the run that asks
+     * for the tree first; a run that reuses a tree reports no search for it.
+     */
+    public ShortestPathTree[] searchBothWays(Terminals terminals) {
+        return searchBothWays(terminals, RunReport.NONE);
+    }
+
+    public ShortestPathTree[] searchBothWays(final Terminals terminals,
+            final RunReport.Run report) {
+        String forwardKey = forwardKey(terminals);
+        String backwardKey = backwardKey(terminals);
+        FutureTask<ShortestPathTree> forward = task(forwardKey,
+            () -> report.time(RunReport.FORWARD_SEARCH,
+                () -> Dijkstra.search(network, terminals.edges,
+                    terminals.edgeIds, 0, bound, treeSetFrontier)));
+        FutureTask<ShortestPathTree> backward = task(backwardKey,
+            () -> report.time(RunReport.REVERSE_SEARCH,
+                () -> Dijkstra.search(network.reverse,
+                    terminals.edges.reverse, terminals.edgeIds, 1, bound,
+                    treeSetFrontier)));
+
+        try {
+            if (!backward.isDone()) {
+                // Does nothing if another run is already searching it
+                Thread thread = new Thread(backward, "dijkstra-backward");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            forward.run();
+            // Waiting for a search of another thread is not charged to any
+            // phase
+            int previous = report.enter(RunReport.NO_PHASE);
+            try {
+                return new ShortestPathTree[] {get(forward), get(backward)};
+            }
+            finally {
+                report.enter(previous);
+            }
+        }
+        finally {
+            release(forwardKey);
+            release(backwardKey);
+        }
+    }
+
+    private String forwardKey(Terminals terminals) {
+        return forwardUsesTargets
+            ? "f" + terminals.sourceKey + "|" + terminals.targetKey
+            : "f" + terminals.sourceKey;
+    }
+
+    private String backwardKey(Terminals terminals) {
+        return backwardUsesSources
+            ? "b" + terminals.sourceKey + "|" + terminals.targetKey
+            : "b" + terminals.targetKey;
+    }
+
+    private synchronized void expect(String key) {
+        entry(key).uses++;
+    }
+
+    private synchronized FutureTask<ShortestPathTree> task(String key,
+            Callable<ShortestPathTree> search) {
+        Entry entry = entry(key);
+        if (entry.search == null) {
+            entry.search = new FutureTask<ShortestPathTree>(search);
+        }
+        return entry.search;
+    }
+
+    private Entry entry(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    // Gives up one use of the tree, dropping it after its last use
+    private synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && --entry.uses <= 0) {
+            entries.remove(key);
+        }
+    }
+
+    private static ShortestPathTree get(FutureTask<ShortestPathTree> task) {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
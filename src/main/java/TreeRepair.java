@@ -0,0 +1,212 @@
+import java.util.Arrays;
+
+/**
+ * Repairs a shortest path tree after some edges of the graph it was searched
+ * over changed cost, instead of searching the whole graph again (dynamic
+ * SSSP, in the style of Ramalingam and Reps). Only the nodes whose distance
+ * or tree path can change are visited:
+ *
+ * - The nodes below a tree edge that got more expensive (or was removed)
+ *   lose their distance. Each starts over from the best distance it can get
+ *   through the nodes that kept theirs.
+ * - The head of an edge that got cheaper (or was added) starts over from
+ *   the distance it gets through that edge, if that is shorter.
+ *
+ * Those nodes then go through a Dijkstra's frontier of their own, which
+ * spreads to the nodes they give a shorter distance. Costs must not be
+ * negative, as with a bounded search.
+ */
+public class TreeRepair {
+    private static final double INF = Dijkstra.INF;
+
+    // The graph searched, and an overlay graph on the same nodes, which may
+    // be null. Overlay edge i has edge ID overlayEdgeIds[i] in the tree.
+    final CSRGraph graph;
+    final CSRGraph overlay;
+    final int[] overlayEdgeIds;
+    // Tail and head of each edge of the graph, in the direction searched
+    final int[] tails;
+    final int[] heads;
+    // Nodes at this distance or more are left unreached; see Dijkstra.search
+    final double bound;
+
+    // Nodes whose distance was changed by the last repair()
+    int[] changed;
+    int numChanged;
+
+    // Nodes visited by the last repair(), which may have changed
+    private int[] visited;
+    private int numVisited;
+    private boolean[] isVisited;
+
+    public TreeRepair(CSRGraph graph, CSRGraph overlay,
+            int[] overlayEdgeIds, int[] tails, int[] heads, double bound) {
+        this.graph = graph;
+        this.overlay = overlay;
+        this.overlayEdgeIds = overlayEdgeIds;
+        this.tails = tails;
+        this.heads = heads;
+        this.bound = bound;
+    }
+
+    /**
+     * Returns the tree for the graph's current costs, given the tree
+     * searched from the same start when the given edges of the graph had
+     * the given previous costs instead. Added edges had a previous cost of
+     * infinity. The given tree is not modified.
+     */
+    public ShortestPathTree repair(ShortestPathTree tree, int[] edges,
+            double[] previousCost) {
+        int numNodes = graph.numNodes;
+        double[] dist = Arrays.copyOf(tree.dist, numNodes);
+        int[] path = Arrays.copyOf(tree.path, numNodes);
+        int[] pathEdge = Arrays.copyOf(tree.pathEdge, numNodes);
+        visited = new int[16];
+        numVisited = 0;
+        isVisited = new boolean[numNodes];
+
+        // The subtrees below the tree edges that got more expensive
+        boolean[] affected = new boolean[numNodes];
+        for (int i = 0; i < edges.length; i++) {
+            int e = edges[i];
+            int v = heads[e];
+            if (graph.edgeCost[e] > previousCost[i] && path[v] == tails[e] &&
+                    pathEdge[v] == e && !affected[v]) {
+                affected[v] = true;
+                visit(v);
+            }
+        }
+        // visited grows as the subtrees are walked
+        for (int i = 0; i < numVisited; i++) {
+            int w = visited[i];
+            addChildren(graph, null, w, path, pathEdge, affected);
+            if (overlay != null) {
+                addChildren(overlay, overlayEdgeIds, w, path, pathEdge,
+                    affected);
+            }
+        }
+        int numAffected = numVisited;
+        for (int i = 0; i < numAffected; i++) {
+            dist[visited[i]] = INF;
+            path[visited[i]] = -3;
+        }
+
+        IndexedHeap frontier = new IndexedHeap(numNodes);
+        for (int i = 0; i < numAffected; i++) {
+            int w = visited[i];
+            seed(graph.reverse, null, w, dist, path, pathEdge, affected);
+            if (overlay != null) {
+                seed(overlay.reverse, overlayEdgeIds, w, dist, path,
+                    pathEdge, affected);
+            }
+            if (dist[w] != INF) {
+                frontier.insertOrDecrease(w, dist[w]);
+            }
+        }
+
+        // The heads of the edges that got cheaper
+        for (int i = 0; i < edges.length; i++) {
+            int e = edges[i];
+            int u = tails[e];
+            int v = heads[e];
+            double uv = graph.edgeCost[e];
+            if (uv < previousCost[i] && dist[u] != INF &&
+                    dist[u] + uv < dist[v]) {
+                dist[v] = dist[u] + uv;
+                path[v] = u;
+                pathEdge[v] = e;
+                visit(v);
+                frontier.insertOrDecrease(v, dist[v]);
+            }
+        }
+
+        while (!frontier.isEmpty() && frontier.minKey() < bound) {
+            int u = frontier.poll();
+            relaxArcs(graph, null, u, dist, path, pathEdge, frontier);
+            if (overlay != null) {
+                relaxArcs(overlay, overlayEdgeIds, u, dist, path, pathEdge,
+                    frontier);
+            }
+        }
+        // Nodes left in the frontier are at the bound or past it
+        while (!frontier.isEmpty()) {
+            int u = frontier.poll();
+            dist[u] = INF;
+            path[u] = -3;
+        }
+
+        changed = new int[numVisited];
+        numChanged = 0;
+        for (int i = 0; i < numVisited; i++) {
+            int v = visited[i];
+            if (dist[v] != tree.dist[v]) {
+                changed[numChanged++] = v;
+            }
+        }
+        visited = null;
+        isVisited = null;
+        return new ShortestPathTree(dist, path, pathEdge);
+    }
+
+    // Marks the nodes whose tree edge is an arc of w as affected
+    private void addChildren(CSRGraph graph, int[] edgeIds, int w,
+            int[] path, int[] pathEdge, boolean[] affected) {
+        for (int arc = graph.offsets[w]; arc < graph.offsets[w + 1]; arc++) {
+            int x = graph.arcEnd[arc];
+            int edge = edgeIds == null
+                ? graph.arcEdge[arc] : edgeIds[graph.arcEdge[arc]];
+            if (!affected[x] && path[x] == w && pathEdge[x] == edge) {
+                affected[x] = true;
+                visit(x);
+            }
+        }
+    }
+
+    // Gives the affected node w its best distance through the unaffected
+    // nodes with arcs to it, which are its arcs in the reversed graph
+    private static void seed(CSRGraph reverse, int[] edgeIds, int w,
+            double[] dist, int[] path, int[] pathEdge, boolean[] affected) {
+        for (int arc = reverse.offsets[w]; arc < reverse.offsets[w + 1];
+                arc++) {
+            int a = reverse.arcEnd[arc];
+            double aw = reverse.arcCost[arc];
+            if (affected[a] || dist[a] == INF || aw == INF) {
+                continue;
+            }
+            if (dist[a] + aw < dist[w]) {
+                dist[w] = dist[a] + aw;
+                path[w] = a;
+                pathEdge[w] = edgeIds == null
+                    ? reverse.arcEdge[arc] : edgeIds[reverse.arcEdge[arc]];
+            }
+        }
+    }
+
+    private void relaxArcs(CSRGraph graph, int[] edgeIds, int u,
+            double[] dist, int[] path, int[] pathEdge,
+            IndexedHeap frontier) {
+        for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+            double uv = graph.arcCost[arc];
+            int v = graph.arcEnd[arc];
+            if (uv != INF && dist[u] + uv < dist[v]) {
+                dist[v] = dist[u] + uv;
+                path[v] = u;
+                pathEdge[v] = edgeIds == null
+                    ? graph.arcEdge[arc] : edgeIds[graph.arcEdge[arc]];
+                visit(v);
+                frontier.insertOrDecrease(v, dist[v]);
+            }
+        }
+    }
+
+    private void visit(int v) {
+        if (isVisited[v]) {
+            return;
+        }
+        isVisited[v] = true;
+        if (numVisited == visited.length) {
+            visited = Arrays.copyOf(visited, numVisited * 2);
+        }
+        visited[numVisited++] = v;
+    }
+}
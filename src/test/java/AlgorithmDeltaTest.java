@@ -0,0 +1,192 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that ranking again after --delta files gives the same files as a
+ * full run over the network file with the deltas applied in place: new
+ * weights on the lines of the edges they change, 0 on the lines of the
+ * edges they remove, and added edges at the end. Removing those lines
+ * instead, or reordering them, numbers the nodes differently, and edges of
+ * equal cost can then be ranked in another order.
+ */
+public class AlgorithmDeltaTest {
+    private static final int NODES = 2000;
+    private static final int EDGES = 12000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(25);
+    // Lines of the network file, as tail, head and weight
+    private final List<String[]> network = new ArrayList<String[]>();
+    private File nodeTypes;
+
+    @Test
+    public void weightChangesMatchARerun() throws Exception {
+        checkDeltas(false, "-k", "200");
+    }
+
+    @Test
+    public void removedAndAddedEdgesMatchARerun() throws Exception {
+        checkDeltas(true);
+    }
+
+    @Test
+    public void deltasUnderAThresholdMatchARerun() throws Exception {
+        checkDeltas(true, "-threshold", "4");
+    }
+
+    @Test
+    public void penalizedDeltasMatchARerun() throws Exception {
+        checkDeltas(true, "-e", "1.5");
+    }
+
+    // Runs with two deltas, then runs again over the network file with
+    // first one and then both applied, with the given options
+    private void checkDeltas(boolean removeAndAdd, String... options)
+            throws Exception {
+        writeNetwork();
+        File edges = writeEdges("edges.txt");
+        File delta1 = writeDelta("delta1.txt", removeAndAdd);
+        File applied1 = writeEdges("applied1.txt");
+        File delta2 = writeDelta("delta2.txt", removeAndAdd);
+        File applied2 = writeEdges("applied2.txt");
+
+        String prefix = run(edges, "run", options, "-delta",
+            delta1.getPath(), "-delta", delta2.getPath());
+        // The deltas reach the ranking
+        assertNotEquals(read(prefix + "-ranked-edges.txt"),
+            read(prefix + "-delta1-ranked-edges.txt"));
+        assertSameFiles(run(applied1, "rerun1", options), prefix + "-delta1");
+        assertSameFiles(run(applied2, "rerun2", options), prefix + "-delta2");
+    }
+
+    private void writeNetwork() throws IOException {
+        for (int i = 0; i < EDGES; i++) {
+            network.add(new String[] {node(random.nextInt(NODES)),
+                node(random.nextInt(NODES)), weight(0.5)});
+        }
+        nodeTypes = folder.newFile("nodes.txt");
+        try (Writer out = Files.newBufferedWriter(nodeTypes.toPath(),
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 20; i++) {
+                out.write(node(i) + "\treceptor\n");
+                out.write(node(NODES - 1 - i) + "\ttf\n");
+            }
+        }
+    }
+
+    // Writes a delta that changes the weights of some edges, and with
+    // removeAndAdd, removes some and adds some, a few at new nodes. It is
+    // also applied to the network lines.
+    private File writeDelta(String name, boolean removeAndAdd)
+            throws IOException {
+        Map<String, String[]> lines = new LinkedHashMap<String, String[]>();
+        for (int i = 0; i < 150; i++) {
+            String[] edge = network.get(random.nextInt(network.size()));
+            String weight = removeAndAdd && i % 3 == 0 ? "0"
+                : i % 2 == 0 ? weight(0.01) : weight(0.9);
+            lines.put(edge[0] + "\t" + edge[1],
+                new String[] {edge[0], edge[1], weight});
+        }
+        if (removeAndAdd) {
+            for (int i = 0; i < 40; i++) {
+                String tail = i % 8 == 0 ? "New" + name + i
+                    : node(random.nextInt(NODES));
+                String head = node(random.nextInt(NODES));
+                lines.put(tail + "\t" + head,
+                    new String[] {tail, head, weight(0.6)});
+            }
+        }
+
+        File file = folder.newFile(name);
+        try (Writer out = Files.newBufferedWriter(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            out.write("#Tail\tHead\tWeight\n");
+            for (String[] line : lines.values()) {
+                out.write(line[0] + "\t" + line[1] + "\t" + line[2] + "\n");
+                apply(line);
+            }
+        }
+        return file;
+    }
+
+    // Gives the line's weight to each of its edges in the network, or
+    // adds it at the end
+    private void apply(String[] line) {
+        boolean found = false;
+        for (String[] edge : network) {
+            if (edge[0].equals(line[0]) && edge[1].equals(line[1])) {
+                edge[2] = line[2];
+                found = true;
+            }
+        }
+        if (!found && !line[2].equals("0")) {
+            network.add(Arrays.copyOf(line, 3));
+        }
+    }
+
+    private File writeEdges(String name) throws IOException {
+        File file = folder.newFile(name);
+        try (Writer out = Files.newBufferedWriter(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            out.write("#Tail\tHead\tWeight\n");
+            for (String[] edge : network) {
+                out.write(edge[0] + "\t" + edge[1] + "\t" + edge[2] + "\n");
+            }
+        }
+        return file;
+    }
+
+    // Runs QuickLinker over the edges, and returns its output prefix
+    private String run(File edges, String name, String[] options,
+            String... more) throws Exception {
+        String prefix = new File(folder.getRoot(), name).getPath();
+        List<String> args = new ArrayList<String>(Arrays.asList("-n",
+            edges.getPath(), "-nodeTypes", nodeTypes.getPath(),
+            "-o", prefix));
+        args.addAll(Arrays.asList(options));
+        args.addAll(Arrays.asList(more));
+        new Parser(args.toArray(new String[0])).parse();
+        return prefix;
+    }
+
+    private static void assertSameFiles(String expected, String actual)
+            throws IOException {
+        for (String suffix : new String[] {"-ranked-edges.txt",
+                "-paths.txt"}) {
+            assertEquals(expected + suffix, read(expected + suffix),
+                read(actual + suffix));
+        }
+    }
+
+    private String weight(double least) {
+        return String.valueOf(least + random.nextInt(1000) / 1000.0 *
+            (0.99 - least));
+    }
+
+    private static String node(int i) {
+        return "N" + i;
+    }
+
+    private static String read(String file) throws IOException {
+        return new String(Files.readAllBytes(new File(file).toPath()),
+            StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * RLCSP runs, over the product built in full and searched as it is
+ * explored, checked against their golden files; see GoldenFiles.
+ */
+public class AlgorithmRLCSPTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ranksTheBuiltProduct() throws Exception {
+        checkNetwork(false);
+    }
+
+    @Test
+    public void ranksTheImplicitProduct() throws Exception {
+        checkNetwork(true);
+    }
+
+    @Test
+    public void findsThreePaths() throws Exception {
+        checkTestFiles("3-paths", false);
+        checkTestFiles("3-paths", true);
+    }
+
+    @Test
+    public void findsNoPaths() throws Exception {
+        checkTestFiles("no-paths", false);
+        checkTestFiles("no-paths", true);
+    }
+
+    @Test
+    public void ranksParallelEdgesAsTheirNodePair() throws Exception {
+        for (boolean implicit : new boolean[] {false, true}) {
+            String prefix = GoldenFiles.run(folder,
+                "parallel" + (implicit ? "-implicit" : ""),
+                args(implicit, "-n", GoldenFiles.PARALLEL_NETWORK,
+                    "-nodeTypes", GoldenFiles.NODE_TYPES,
+                    "-dfa", GoldenFiles.DFA,
+                    "-dfaNodeTypes", GoldenFiles.DFA_NODE_TYPES));
+            GoldenFiles.assertGolden("parallel-rlcsp", prefix,
+                GoldenFiles.RLCSP_FILES);
+        }
+    }
+
+    @Test
+    public void writesOnlyPathsBelowTheThreshold() throws Exception {
+        for (boolean implicit : new boolean[] {false, true}) {
+            String prefix = GoldenFiles.run(folder,
+                "threshold" + (implicit ? "-implicit" : ""),
+                args(implicit, "-n", GoldenFiles.NETWORK,
+                    "-nodeTypes", GoldenFiles.NODE_TYPES,
+                    "-dfa", GoldenFiles.DFA,
+                    "-dfaNodeTypes", GoldenFiles.DFA_NODE_TYPES,
+                    "-threshold", "3"));
+            GoldenFiles.assertGoldenBelow("rlcsp", 3, prefix,
+                GoldenFiles.RLCSP_FILES);
+        }
+    }
+
+    private void checkNetwork(boolean implicit) throws Exception {
+        String prefix = GoldenFiles.run(folder, "rlcsp",
+            args(implicit, "-n", GoldenFiles.NETWORK,
+                "-nodeTypes", GoldenFiles.NODE_TYPES,
+                "-dfa", GoldenFiles.DFA,
+                "-dfaNodeTypes", GoldenFiles.DFA_NODE_TYPES));
+        GoldenFiles.assertGolden("rlcsp", prefix, GoldenFiles.RLCSP_FILES);
+    }
+
+    // The networks of test-files/run.bash
+    private void checkTestFiles(String network, boolean implicit)
+            throws Exception {
+        String prefix = GoldenFiles.run(folder,
+            network + (implicit ? "-implicit" : ""),
+            args(implicit, "-n", "test-files/" + network + "/edges.txt",
+                "-nodeTypes", "test-files/" + network + "/nodes.txt",
+                "-dfa", "test-files/dfa-edges.txt",
+                "-dfaNodeTypes", "test-files/dfa-nodes.txt"));
+        GoldenFiles.assertGolden(network, prefix, GoldenFiles.RLCSP_FILES);
+    }
+
+    private static String[] args(boolean implicit, String... args) {
+        String[] all = new String[args.length + (implicit ? 2 : 1)];
+        System.arraycopy(args, 0, all, 0, args.length);
+        all[args.length] = "-rlcsp";
+        if (implicit) {
+            all[args.length + 1] = "-implicitProduct";
+        }
+        return all;
+    }
+}
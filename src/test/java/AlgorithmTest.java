@@ -0,0 +1,60 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * QuickLinker runs without a DFA, checked against their golden files; see
+ * GoldenFiles.
+ */
+public class AlgorithmTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ranksAllEdges() throws Exception {
+        String prefix = GoldenFiles.run(folder, "default",
+            "-n", GoldenFiles.NETWORK, "-nodeTypes", GoldenFiles.NODE_TYPES);
+        GoldenFiles.assertGolden("default", prefix, GoldenFiles.FILES);
+    }
+
+    @Test
+    public void stopsAfterMaxK() throws Exception {
+        String prefix = GoldenFiles.run(folder, "k",
+            "-n", GoldenFiles.NETWORK, "-nodeTypes", GoldenFiles.NODE_TYPES,
+            "-k", "20");
+        GoldenFiles.assertGolden("k", prefix, GoldenFiles.FILES);
+    }
+
+    @Test
+    public void ranksTheSameWithATreeSetFrontier() throws Exception {
+        String prefix = GoldenFiles.run(folder, "treeset",
+            "-n", GoldenFiles.NETWORK, "-nodeTypes", GoldenFiles.NODE_TYPES,
+            "-frontier", "treeset");
+        GoldenFiles.assertGolden("default", prefix, GoldenFiles.FILES);
+    }
+
+    @Test
+    public void writesOnlyPathsBelowTheThreshold() throws Exception {
+        String prefix = GoldenFiles.run(folder, "threshold",
+            "-n", GoldenFiles.NETWORK, "-nodeTypes", GoldenFiles.NODE_TYPES,
+            "-threshold", "2.5");
+        GoldenFiles.assertGoldenBelow("default", 2.5, prefix,
+            GoldenFiles.FILES);
+    }
+
+    @Test
+    public void ranksParallelEdgesAsTheirNodePair() throws Exception {
+        String prefix = GoldenFiles.run(folder, "parallel",
+            "-n", GoldenFiles.PARALLEL_NETWORK,
+            "-nodeTypes", GoldenFiles.NODE_TYPES);
+        GoldenFiles.assertGolden("parallel", prefix, GoldenFiles.FILES);
+    }
+
+    @Test
+    public void stopsAfterMaxKWithParallelEdges() throws Exception {
+        String prefix = GoldenFiles.run(folder, "parallel-k",
+            "-n", GoldenFiles.PARALLEL_NETWORK,
+            "-nodeTypes", GoldenFiles.NODE_TYPES, "-k", "20");
+        GoldenFiles.assertGolden("parallel-k", prefix, GoldenFiles.FILES);
+    }
+}
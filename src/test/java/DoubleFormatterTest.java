@@ -0,0 +1,99 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that DoubleFormatter writes what Double.toString of the running JDK
+ * does, for random doubles and for the ones whose format is easy to get
+ * wrong.
+ */
+public class DoubleFormatterTest {
+    private static final long SEED = 19;
+
+    private final byte[] buffer = new byte[32];
+
+    @Test
+    public void writesRandomBitPatterns() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 200000; i++) {
+            check(Double.longBitsToDouble(random.nextLong()));
+        }
+    }
+
+    @Test
+    public void writesRandomScores() {
+        // Path scores are e^-cost, in (0, 1]
+        Random random = new Random(SEED);
+        for (int i = 0; i < 200000; i++) {
+            check(Math.exp(-random.nextDouble() * 50));
+        }
+    }
+
+    @Test
+    public void writesShortDecimals() {
+        for (int e = -325; e <= 310; e++) {
+            for (int m = 1; m < 1000; m++) {
+                check(Double.parseDouble(m + "E" + e));
+            }
+        }
+    }
+
+    @Test
+    public void writesZeroesAndSpecialValues() {
+        check(0.0);
+        check(-0.0);
+        check(Double.NaN);
+        check(Double.POSITIVE_INFINITY);
+        check(Double.NEGATIVE_INFINITY);
+        check(Double.MAX_VALUE);
+        check(Double.MIN_VALUE);
+    }
+
+    @Test
+    public void writesValuesAroundTheLimits() {
+        // Values from 1e15 up and subnormal ones are written by
+        // Double.toString, the others by DoubleFormatter
+        for (double limit : new double[] {1e15, Double.MIN_NORMAL}) {
+            double below = limit;
+            double above = limit;
+            for (int i = 0; i < 1000; i++) {
+                check(below);
+                check(-below);
+                check(above);
+                check(-above);
+                below = Math.nextDown(below);
+                above = Math.nextUp(above);
+            }
+        }
+    }
+
+    @Test
+    public void switchesNotationAt1eMinus3And1e7() {
+        // Plain notation in [1e-3, 1e7), E notation outside it
+        for (double limit : new double[] {1e-3, 1e7}) {
+            double below = limit;
+            double above = limit;
+            for (int i = 0; i < 1000; i++) {
+                check(below);
+                check(above);
+                below = Math.nextDown(below);
+                above = Math.nextUp(above);
+            }
+        }
+        check(0.001);
+        check(0.00099);
+        check(9999999.0);
+        check(10000000.0);
+        check(1.0);
+        check(100.0);
+    }
+
+    private void check(double value) {
+        int length = DoubleFormatter.format(value, buffer, 0);
+        assertEquals(Double.toString(value),
+            new String(buffer, 0, length, StandardCharsets.US_ASCII));
+    }
+}
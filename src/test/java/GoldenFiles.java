@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs QuickLinker over the networks in test-files and compares the files it
+ * writes with the ones in test-files/golden. Those were written by
+ * QuickLinker as it was before its graphs moved to CSR arrays, and every
+ * change since has kept them byte for byte.
+ *
+ * net-edges.txt and the other net- files are a small labeled network with a
+ * DFA, written by
+ * NetworkGenerator -o net -nodes 200 -edges 1000 -labels 3 -sources 5
+ *     -targets 5 -dfa-states 3 -seed 7
+ *
+ * parallel-edges.txt is net-edges.txt with a second line, of another weight,
+ * for six of the edges on its best paths. Each of those node pairs is one
+ * edge with the weight of its last line.
+ */
+class GoldenFiles {
+    static final String DIR = "test-files/golden/";
+    static final String NETWORK = DIR + "net-edges.txt";
+    static final String NODE_TYPES = DIR + "net-nodes.txt";
+    static final String PARALLEL_NETWORK = DIR + "parallel-edges.txt";
+    static final String DFA = DIR + "net-dfa.txt";
+    static final String DFA_NODE_TYPES = DIR + "net-dfa-nodes.txt";
+
+    static final String[] FILES = {"-ranked-edges.txt", "-paths.txt"};
+    static final String[] RLCSP_FILES =
+        {"-ranked-edges.txt", "-paths.txt", "-projection.txt"};
+
+    private GoldenFiles() {
+    }
+
+    /**
+     * Runs QuickLinker with the given arguments, writing its files to the
+     * folder under the given name, and returns their prefix.
+     */
+    static String run(TemporaryFolder folder, String name, String... args)
+            throws Exception {
+        String prefix = new File(folder.getRoot(), name).getPath();
+        List<String> all = new ArrayList<String>(Arrays.asList(args));
+        all.add("-o");
+        all.add(prefix);
+        new Parser(all.toArray(new String[0])).parse();
+        return prefix;
+    }
+
+    /**
+     * Checks that the files under the prefix are the golden files of the
+     * given name.
+     */
+    static void assertGolden(String golden, String prefix, String[] files)
+            throws IOException {
+        for (String file : files) {
+            assertEquals(golden + file, read(DIR + golden + file),
+                read(prefix + file));
+        }
+    }
+
+    /**
+     * Checks that the files under the prefix are the lines of the golden
+     * files of the given name whose paths cost less than the threshold.
+     */
+    static void assertGoldenBelow(String golden, double threshold,
+            String prefix, String[] files) throws IOException {
+        double leastScore = Math.exp(-threshold);
+        for (String file : files) {
+            // Paths have their score in the second column, edges last
+            boolean paths = file.equals("-paths.txt");
+            StringBuilder expected = new StringBuilder();
+            for (String line : read(DIR + golden + file).split("(?<=\n)")) {
+                String[] columns = line.trim().split("\t");
+                if (line.startsWith("#") || !line.isEmpty() &&
+                        Double.parseDouble(columns[paths ? 1 :
+                            columns.length - 1]) > leastScore) {
+                    expected.append(line);
+                }
+            }
+            assertEquals(golden + file + " below " + threshold,
+                expected.toString(), read(prefix + file));
+        }
+    }
+
+    static String read(String file) throws IOException {
+        return new String(Files.readAllBytes(new File(file).toPath()),
+            StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a run loading a --snapshot writes the same files as the run
+ * that wrote it, and that a snapshot of another network file or edge
+ * penalty is written again instead of loaded.
+ */
+public class GraphSnapshotTest {
+    // Any time the file system keeps exactly
+    private static final long SOURCE_MODIFIED = 1500000000000L;
+    private static final long SNAPSHOT_MODIFIED = 1400000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File network;
+    private File snapshot;
+
+    @Before
+    public void writeSnapshot() throws Exception {
+        network = folder.newFile("edges.txt");
+        Files.write(network.toPath(),
+            Files.readAllBytes(new File(GoldenFiles.NETWORK).toPath()));
+        assertTrue(network.setLastModified(SOURCE_MODIFIED));
+        snapshot = new File(folder.getRoot(), "edges.snapshot");
+
+        String prefix = run("write");
+        assertTrue(snapshot.isFile());
+        GoldenFiles.assertGolden("default", prefix, GoldenFiles.FILES);
+        // Loading the snapshot leaves it as it is, writing it does not
+        assertTrue(snapshot.setLastModified(SNAPSHOT_MODIFIED));
+    }
+
+    @Test
+    public void loadsTheSnapshot() throws Exception {
+        String prefix = run("load");
+        assertEquals(SNAPSHOT_MODIFIED, snapshot.lastModified());
+        GoldenFiles.assertGolden("default", prefix, GoldenFiles.FILES);
+    }
+
+    @Test
+    public void rewritesTheSnapshotOfAChangedNetwork() throws Exception {
+        // Another weight of the same length, on the best path, with the
+        // size and time of the file kept, so only its checksum differs
+        String edges = GoldenFiles.read(network.getPath());
+        String changed = edges.replace("N6\tN69\t0.6", "N6\tN69\t0.2");
+        assertNotEquals(edges, changed);
+        Files.write(network.toPath(),
+            changed.getBytes(StandardCharsets.UTF_8));
+        assertTrue(network.setLastModified(SOURCE_MODIFIED));
+
+        String prefix = run("changed");
+        assertNotEquals(SNAPSHOT_MODIFIED, snapshot.lastModified());
+        assertSameFiles(GoldenFiles.run(folder, "changed-text",
+            "-n", network.getPath(),
+            "-nodeTypes", GoldenFiles.NODE_TYPES), prefix);
+        assertNotEquals(GoldenFiles.read(
+                GoldenFiles.DIR + "default-paths.txt"),
+            GoldenFiles.read(prefix + "-paths.txt"));
+
+        // and the snapshot written is loaded by the next run
+        assertTrue(snapshot.setLastModified(SNAPSHOT_MODIFIED));
+        assertSameFiles(prefix, run("changed-load"));
+        assertEquals(SNAPSHOT_MODIFIED, snapshot.lastModified());
+    }
+
+    @Test
+    public void rewritesTheSnapshotForAnotherEdgePenalty() throws Exception {
+        String prefix = run("penalty", "-e", "1.5");
+        assertNotEquals(SNAPSHOT_MODIFIED, snapshot.lastModified());
+        assertSameFiles(GoldenFiles.run(folder, "penalty-text",
+            "-n", network.getPath(), "-nodeTypes", GoldenFiles.NODE_TYPES,
+            "-e", "1.5"), prefix);
+        assertNotEquals(GoldenFiles.read(
+                GoldenFiles.DIR + "default-ranked-edges.txt"),
+            GoldenFiles.read(prefix + "-ranked-edges.txt"));
+    }
+
+    // Runs over the network with the snapshot and the given options, and
+    // returns the output prefix
+    private String run(String name, String... options) throws Exception {
+        String[] args = new String[6 + options.length];
+        args[0] = "-n";
+        args[1] = network.getPath();
+        args[2] = "-nodeTypes";
+        args[3] = GoldenFiles.NODE_TYPES;
+        args[4] = "-snapshot";
+        args[5] = snapshot.getPath();
+        System.arraycopy(options, 0, args, 6, options.length);
+        return GoldenFiles.run(folder, name, args);
+    }
+
+    private static void assertSameFiles(String expected, String actual)
+            throws Exception {
+        for (String file : GoldenFiles.FILES) {
+            assertEquals(expected + file, GoldenFiles.read(expected + file),
+                GoldenFiles.read(actual + file));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NetworkGeneratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesEachPairOnce() throws Exception {
+        // Pairs of the heaviest nodes come up again and again
+        checkPairs(new NetworkGenerator(1000, 10000, 2.1, 3, 0), 10000);
+    }
+
+    @Test
+    public void writesEveryPairOfASmallNetwork() throws Exception {
+        checkPairs(new NetworkGenerator(5, 20, 2.5, 0, 7), 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesMoreEdgesThanPairs() {
+        new NetworkGenerator(5, 21, 2.5, 0, 7);
+    }
+
+    private void checkPairs(NetworkGenerator generator, int numEdges)
+            throws Exception {
+        File file = new File(folder.getRoot(), "edges.txt");
+        generator.writeNetwork(file.getPath());
+        List<String> lines = Files.readAllLines(file.toPath(),
+            StandardCharsets.UTF_8);
+        assertEquals(numEdges + 1, lines.size());
+
+        HashSet<String> pairs = new HashSet<String>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] columns = line.split("\t");
+            assertNotEquals(line, columns[0], columns[1]);
+            assertTrue(line, pairs.add(columns[0] + "\t" + columns[1]));
+        }
+    }
+}
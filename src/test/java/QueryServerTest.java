@@ -0,0 +1,246 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs a QueryServer over a random network whose answers don't fit in the
+ * server's 1 MB buffers, and checks that every line it sends is a JSON
+ * object of its own, and that they add up to the files a run writes.
+ */
+public class QueryServerTest {
+    private static final int NODES = 5000;
+    private static final int EDGES = 40000;
+    private static final int TERMINALS = 50;
+    // Milliseconds to wait for an answer
+    private static final int TIMEOUT = 30000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File edges;
+    private QueryServer server;
+    private List<String> sources = new ArrayList<String>();
+    private List<String> targets = new ArrayList<String>();
+
+    @Test
+    public void answersMoreThanABufferInWholeLines() throws Exception {
+        writeNetwork();
+        String prefix = new File(folder.getRoot(), "run").getPath();
+        new Parser(new String[] {"-n", edges.getPath(),
+            "-nodeTypes", writeNodeTypes().getPath(), "-o", prefix}).parse();
+        String rankedEdges = read(prefix + "-ranked-edges.txt");
+        String paths = read(prefix + "-paths.txt");
+        assertTrue(rankedEdges.length() + paths.length() > 2 << 20);
+
+        int port = serve(1);
+        StringBuilder rankedEdgeLines = new StringBuilder();
+        StringBuilder pathLines = new StringBuilder();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            socket.setSoTimeout(TIMEOUT);
+            send(socket, "{\"id\": 7, \"sources\": " + list(sources) +
+                ", \"targets\": " + list(targets) + "}");
+            BufferedReader in = reader(socket);
+            while (true) {
+                Map<String, Object> answer = parse(in.readLine());
+                assertEquals(7.0, answer.get("id"));
+                assertEquals(2, answer.size());
+                if (answer.containsKey("done")) {
+                    break;
+                }
+                assertTrue(String.valueOf(answer.get("error")),
+                    !answer.containsKey("error"));
+                if (answer.containsKey("rankedEdge")) {
+                    rankedEdgeLines.append(answer.get("rankedEdge"))
+                        .append('\n');
+                }
+                else {
+                    pathLines.append(answer.get("path")).append('\n');
+                }
+            }
+        }
+        assertEquals(rankedEdges, rankedEdgeLines.toString());
+        assertEquals(paths, pathLines.toString());
+    }
+
+    @Test
+    public void refusesConnectionsPastTheLimit() throws Exception {
+        writeNetwork();
+        int port = serve(1);
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            first.setSoTimeout(TIMEOUT);
+            // Answered, so the first connection has its thread
+            send(first, "{\"id\": 1, \"sources\": [], \"targets\": []}");
+            parse(reader(first).readLine());
+
+            try (Socket second = new Socket(InetAddress.getLoopbackAddress(),
+                    port)) {
+                second.setSoTimeout(TIMEOUT);
+                BufferedReader in = reader(second);
+                Map<String, Object> answer = parse(in.readLine());
+                assertEquals("Too many connections: 1 are already open",
+                    answer.get("error"));
+                assertEquals(null, in.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void answersARequestAfterOneThatFails() throws Exception {
+        writeNetwork();
+        int port = serve(1);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            socket.setSoTimeout(TIMEOUT);
+            BufferedReader in = reader(socket);
+            // The DFA files are missing
+            String missing =
+                string(new File(folder.getRoot(), "missing.txt").getPath());
+            send(socket, "{\"id\": 1, \"sources\": " + list(sources) +
+                ", \"targets\": " + list(targets) + ", \"dfa\": " +
+                missing + ", \"dfaNodeTypes\": " + missing + "}");
+            Map<String, Object> answer = parse(in.readLine());
+            assertEquals(1.0, answer.get("id"));
+            assertTrue(String.valueOf(answer.get("error")),
+                String.valueOf(answer.get("error")).contains("missing.txt"));
+
+            send(socket, "{\"id\": 2, \"sources\": " + list(sources) +
+                ", \"targets\": " + list(targets) + ", \"k\": 1}");
+            while (true) {
+                answer = parse(in.readLine());
+                assertEquals(2.0, answer.get("id"));
+                assertTrue(String.valueOf(answer.get("error")),
+                    !answer.containsKey("error"));
+                if (answer.containsKey("done")) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // A random network with names that need escaping in JSON
+    private void writeNetwork() throws IOException {
+        Random random = new Random(12);
+        edges = folder.newFile("edges.txt");
+        try (Writer out = Files.newBufferedWriter(edges.toPath(),
+                StandardCharsets.UTF_8)) {
+            out.write("#Tail\tHead\tWeight\n");
+            for (int i = 0; i < EDGES; i++) {
+                out.write(name(random.nextInt(NODES)) + "\t" +
+                    name(random.nextInt(NODES)) + "\t" +
+                    (0.5 + random.nextInt(500) / 1000.0) + "\n");
+            }
+        }
+        for (int i = 0; i < TERMINALS; i++) {
+            sources.add(name(i));
+            targets.add(name(NODES - 1 - i));
+        }
+    }
+
+    private File writeNodeTypes() throws IOException {
+        File nodeTypes = folder.newFile("nodes.txt");
+        try (Writer out = Files.newBufferedWriter(nodeTypes.toPath(),
+                StandardCharsets.UTF_8)) {
+            out.write("#Node\tNodeType\n");
+            for (String source : sources) {
+                out.write(source + "\treceptor\n");
+            }
+            for (String target : targets) {
+                out.write(target + "\ttf\n");
+            }
+        }
+        return nodeTypes;
+    }
+
+    private static String name(int node) {
+        return node % 7 == 0 ? "N\"" + node + "\\" : "N" + node;
+    }
+
+    // Starts a server for the network on a free port, and returns the port
+    private int serve(int maxConnections) throws Exception {
+        server = new QueryServer(Collections.singletonList(edges.getPath()),
+            2, 4, maxConnections);
+        int port = server.bind(0);
+        Thread thread = new Thread(() -> {
+            try {
+                server.serve();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return port;
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static void send(Socket socket, String request)
+            throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            socket.getOutputStream(), StandardCharsets.UTF_8));
+        out.print(request + "\n");
+        out.flush();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(String line) {
+        Object parsed = Json.parse(line);
+        assertTrue(line, parsed instanceof Map);
+        return (Map<String, Object>) parsed;
+    }
+
+    private static String list(List<String> names) {
+        StringBuilder list = new StringBuilder("[");
+        for (String name : names) {
+            if (list.length() > 1) {
+                list.append(", ");
+            }
+            list.append(string(name));
+        }
+        return list.append(']').toString();
+    }
+
+    private static String string(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") +
+            '"';
+    }
+
+    private static String read(String file) throws IOException {
+        return new String(Files.readAllBytes(new File(file).toPath()),
+            StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the runs of a multi-run, which share their trees through a
+ * TreeCache, write the same files as a run over each nodetype file alone.
+ * The nodetype files share sources, targets or both, so some trees are
+ * reused, and with --threads some are waited for while another run is
+ * searching them.
+ */
+public class TreeCacheTest {
+    // Sources and targets of each nodetype file, from net-nodes.txt
+    private static final String[][][] RUNS = {
+        {{"N168", "N29", "N186"}, {"N114", "N68", "N71"}},
+        {{"N168", "N29", "N186"}, {"N129", "N191"}},
+        {{"N115", "N137"}, {"N114", "N68", "N71"}},
+        {{"N168", "N29", "N186"}, {"N114", "N68", "N71"}},
+        {{"N115", "N137", "N29"}, {"N68", "N129"}},
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sharedTreesMatchSingleRuns() throws Exception {
+        check(GoldenFiles.NETWORK);
+    }
+
+    @Test
+    public void concurrentlySharedTreesMatchSingleRuns() throws Exception {
+        check(GoldenFiles.NETWORK, "-threads", "4");
+    }
+
+    @Test
+    public void treesOfBothTerminalsMatchSingleRuns() throws Exception {
+        // Edges out of the super-sink and into the super-source make each
+        // tree depend on the sources and the targets
+        check(widenedNetwork());
+    }
+
+    @Test
+    public void concurrentTreesOfBothTerminalsMatchSingleRuns()
+            throws Exception {
+        check(widenedNetwork(), "-threads", "4");
+    }
+
+    // Runs the nodetype files in one multi-run with the given options, and
+    // each one alone, and compares their files
+    private void check(String network, String... options) throws Exception {
+        List<String> nodeTypes = new ArrayList<String>();
+        List<String> prefixes = new ArrayList<String>();
+        for (int i = 0; i < RUNS.length; i++) {
+            nodeTypes.add(writeNodeTypes("nodes" + i + ".txt", RUNS[i]));
+            prefixes.add(new File(folder.getRoot(), "multi" + i).getPath());
+        }
+
+        List<String> args = new ArrayList<String>(Arrays.asList("-n",
+            network, "-multi-run",
+            "-nodeTypes", writeList("nodes.txt", nodeTypes),
+            "-o", writeList("prefixes.txt", prefixes)));
+        args.addAll(Arrays.asList(options));
+        new Parser(args.toArray(new String[0])).parse();
+
+        for (int i = 0; i < RUNS.length; i++) {
+            String single = GoldenFiles.run(folder, "single" + i,
+                "-n", network, "-nodeTypes", nodeTypes.get(i));
+            for (String file : GoldenFiles.FILES) {
+                assertEquals("run " + i + file,
+                    GoldenFiles.read(single + file),
+                    GoldenFiles.read(prefixes.get(i) + file));
+            }
+        }
+    }
+
+    private String widenedNetwork() throws IOException {
+        File file = folder.newFile("widened-edges.txt");
+        Files.copy(new File(GoldenFiles.NETWORK).toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        // Cheap enough to shorten paths between the terminals
+        StringBuilder edges = new StringBuilder();
+        for (int i = 0; i < 200; i += 10) {
+            edges.append("tf\tN" + i + "\t0.99\tb\n");
+            edges.append("N" + (i + 5) + "\treceptor\t0.99\tb\n");
+        }
+        Files.write(file.toPath(),
+            edges.toString().getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+        return file.getPath();
+    }
+
+    private String writeNodeTypes(String name, String[][] terminals)
+            throws IOException {
+        File file = folder.newFile(name);
+        try (Writer out = Files.newBufferedWriter(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            out.write("#Node\tNodeType\n");
+            for (String source : terminals[0]) {
+                out.write(source + "\treceptor\n");
+            }
+            for (String target : terminals[1]) {
+                out.write(target + "\ttf\n");
+            }
+        }
+        return file.getPath();
+    }
+
+    private String writeList(String name, List<String> lines)
+            throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return file.getPath();
+    }
+}